@@ -0,0 +1,1363 @@
+package connectfour;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+The Alpha-Beta pruning algorithm used by the AI. It used to live in the controller
+and started from nothing on every move. The engine is now kept for a whole game
+so that each search starts from what the previous ones learned:
+- the transposition table keeps the scores of positions that were already searched,
+  and older entries are replaced first
+- the principal variation (the line of best moves) is searched first, and the part
+  of the previous line that is still on the board is carried over to the next move
+- killer moves (moves that caused a cutoff at the same ply) and the history table
+  (how often a column caused a cutoff) are used to try the best columns first
+
+The search is deepened one ply at a time up to the maximum depth so that every
+iteration can use the ordering learned by the one before it. Moves ordered late
+are searched less deep first (late move reductions) and again to the full depth
+only if they turn out better than expected; positions near the last ply whose
+score is far outside the window can be pruned as well (futility pruning and
+razoring). If the search runs
+out of time or nodes, or its thread is interrupted, the move of the last iteration
+that finished is played.
+
+Everything a search changes while it runs belongs to that search (see Search),
+and the board it is given is only read, so several threads can search with one
+engine at once. What is carried from one search to the next is copied in when a
+search starts and back when it ends, under a lock, and the transposition table
+can be shared without locks.
+*/
+public class AlphaBetaEngine implements MoveEngine {
+
+	//Represents the deepest ply the search tables are sized for.
+	private static final int MAX_PLY = 43;
+
+	//Represents a score higher than any score() can return.
+	private static final int INFINITY = 1000000;
+
+	//Represents how far from the last score the first window of scoreColumns() reaches.
+	private static final int ASPIRATION_WINDOW = 4;
+
+	//Represents every column, as bit 'col' for each column.
+	private static final int ALL_COLUMNS = (1 << BitBoard.WIDTH) - 1;
+
+	//Represents the most forced moves played past the last ply by default.
+	public static final int DEFAULT_THREAT_EXTENSION = 8;
+
+	//Represents the number of moves at a position searched to the full depth before
+	//late move reductions start, and the fewest plies left for them.
+	private static final int LMR_MOVES = 3;
+	private static final int LMR_DEPTH = 3;
+
+	/*
+	One of the best columns found by searchLines(): its score and the line of
+	best moves that starts with it, for both players in turn.
+	*/
+	public static class Line {
+		//Represents the score of the line for the player to move.
+		private final int score;
+
+		//Represents the moves of the line, the column of the first one first.
+		private final int moves[];
+
+		Line(int score, int moves[]) {
+			this.score = score;
+			this.moves = moves;
+		}
+
+		public int getColumn() {
+			return this.moves[0];
+		}
+
+		public int getScore() {
+			return this.score;
+		}
+
+		public int[] getMoves() {
+			return this.moves.clone();
+		}
+
+		@Override
+		public String toString() {
+			StringBuilder text = new StringBuilder(String.valueOf(this.score));
+			for (int col : this.moves) {
+				text.append(' ').append(col);
+			}
+			return text.toString();
+		}
+	}
+
+	//Represents how positions at the end of the search are scored.
+	private final Evaluator evaluator;
+
+	//Represents the positions already searched, shared by every search.
+	private final TranspositionTable table;
+
+	//Represents the exact results of endgame positions, or null when there are none.
+	private volatile Tablebase tablebase;
+
+	//Represents the most forced moves played past the last ply, 0 for none.
+	private volatile int threatExtension = DEFAULT_THREAT_EXTENSION;
+
+	//Represents whether to keep what was learned between searches.
+	private volatile boolean keepState = true;
+
+	//Represents whether moves ordered late are searched less deep.
+	private volatile boolean reductions = true;
+
+	//Represents the margins of futility pruning and razoring, 0 to turn each off.
+	private volatile int futilityMargin;
+	private volatile int razorMargin;
+
+	//Represents where the counts of the traced searches are added up, or null when tracing is off.
+	private volatile SearchStats stats;
+
+	//Represents tracing one search in every sampleEvery.
+	private volatile int sampleEvery = 1;
+
+	//Represents the number of searches since tracing was turned on.
+	private final AtomicLong searches = new AtomicLong();
+
+	//Represents the counts of the last traced search.
+	private volatile SearchStats lastTrace;
+
+	//Represents the number of positions visited by the last search that finished.
+	private volatile long lastNodes;
+
+	//Represents the lock held while what is carried between searches is read or written.
+	private final Object memoryLock = new Object();
+
+	//Represents the killer moves and history table left by the last search.
+	private final int killers[][];
+	private final int history[][];
+
+	//Represents the color the last search was for.
+	private int player;
+
+	//Represents the board of the previous search, used to carry its line over.
+	private int lastRoot[][];
+
+	//Represents the color to move in the previous search.
+	private int lastRootColor;
+
+	//Represents the best line found by the previous search.
+	private final int lastPv[];
+
+	//Represents the length of lastPv.
+	private int lastPvLength;
+
+	/*
+	Everything one search changes while it runs. Each search makes its own, so
+	searches running at the same time do not get in each other's way.
+	*/
+	private final class Search {
+		//Represents the color the search is for.
+		final int player;
+
+		//Represents the two most recent columns that caused a cutoff at each ply.
+		final int killers[][] = new int[MAX_PLY + 2][2];
+
+		//Represents how often each column caused a cutoff for each color.
+		final int history[][] = new int[3][7];
+
+		//Represents the triangular table of best lines found at each ply.
+		final int pvTable[][] = new int[MAX_PLY + 2][MAX_PLY + 2];
+
+		//Represents where the best line of each ply ends.
+		final int pvLength[] = new int[MAX_PLY + 2];
+
+		//Represents the line to search first, starting at the root, and its length.
+		final int followMoves[] = new int[MAX_PLY + 2];
+		int followLength;
+
+		//Represents whether the current node is still on the line to search first.
+		boolean followPv;
+
+		//Represents the most forced moves played past the last ply.
+		final int threatExtension;
+
+		//Represents whether moves ordered late are searched less deep.
+		final boolean reductions;
+
+		//Represents how far below alpha (or above beta) a position one ply from the
+		//end has to be scored to be pruned, and two plies from the end to be razored,
+		//or 0 for no pruning.
+		final int futilityMargin;
+		final int razorMargin;
+
+		//Represents the counts of the search if it is traced, or null.
+		final SearchStats trace;
+
+		//Represents the number of positions the search may visit, or 0 for no limit.
+		final long nodeLimit;
+
+		//Represents the System.nanoTime() the search has to stop at, or 0 for no limit.
+		final long deadline;
+
+		//Represents the depth of the current iteration.
+		int maxPly;
+
+		//Represents the columns searched at the root, as bit 'col' for each column.
+		//Columns that let the other player win right after are left out.
+		int rootColumns = ALL_COLUMNS;
+
+		//Represents the best column found at the root.
+		int bestMove;
+
+		//Represents the number of positions visited.
+		long nodes;
+
+		//Represents whether the current iteration ran out of time or nodes or its
+		//thread was interrupted, and which.
+		boolean aborted;
+		boolean outOfTime;
+		boolean interrupted;
+
+		//Represents the positions looked up in the transposition table, and those found.
+		long tableProbes;
+		long tableFound;
+
+		//Represents the depth of the last iteration that finished, 0 if none has.
+		int completedDepth;
+
+		//Represents the number of root moves whose exact scores and lines are kept,
+		//or 0 when only the best move is wanted.
+		int multiPv;
+
+		//Represents the best root moves of the current iteration, best first: their
+		//scores and lines (starting with the root move), and how many there are.
+		int lineScores[];
+		int lineMoves[][];
+		int lineCount;
+
+		//Represents the first layer of the network for the root and for each disc
+		//played below it, when positions are scored by a NetworkEvaluator, or null.
+		//Only the first 'accumulated' entries are brought up to date, and only when a
+		//position is scored, so taking a move back costs nothing.
+		final NetworkEvaluator.Accumulator accumulators[];
+		int accumulated;
+
+		//Represents the discs played below the root, as bits of the BitBoard layout
+		//and colors, and how many there are.
+		final int playedBits[] = new int[BitBoard.WIDTH * BitBoard.HEIGHT + 1];
+		final int playedColors[] = new int[BitBoard.WIDTH * BitBoard.HEIGHT + 1];
+		int playedCount;
+
+		Search(int player, ConnectFourModel root, SearchLimits limits, SearchStats trace) {
+			this.player = player;
+			if (evaluator instanceof NetworkEvaluator) {
+				NetworkEvaluator network = (NetworkEvaluator) evaluator;
+				this.accumulators = new NetworkEvaluator.Accumulator[this.playedBits.length];
+				this.accumulators[0] = network.newAccumulator(root);
+				for (int i = 1; i < this.accumulators.length; i++) {
+					this.accumulators[i] = network.newAccumulator();
+				}
+				this.accumulated = 1;
+			} else {
+				this.accumulators = null;
+			}
+			this.threatExtension = AlphaBetaEngine.this.threatExtension;
+			this.reductions = AlphaBetaEngine.this.reductions;
+			this.futilityMargin = AlphaBetaEngine.this.futilityMargin;
+			this.razorMargin = AlphaBetaEngine.this.razorMargin;
+			this.trace = trace;
+			this.nodeLimit = limits.getNodes();
+			this.deadline = limits.getTimeMillis() > 0 ? System.nanoTime() + limits.getTimeMillis() * 1000000L : 0;
+			for (int i = 0; i < this.killers.length; i++) {
+				this.killers[i][0] = -1;
+				this.killers[i][1] = -1;
+			}
+		}
+
+		//Checks every 1024 positions whether the search has run out of time or nodes,
+		//or has been interrupted. The interrupt is left set for the caller to see.
+		boolean outOfBudget() {
+			if ((this.nodes & 1023) != 0) {
+				return this.aborted;
+			}
+			if (Thread.currentThread().isInterrupted()) {
+				this.aborted = true;
+				this.interrupted = true;
+			} else if (this.deadline != 0 && System.nanoTime() - this.deadline > 0) {
+				this.aborted = true;
+				this.outOfTime = true;
+			} else if (this.nodeLimit > 0 && this.nodes >= this.nodeLimit) {
+				this.aborted = true;
+			}
+			return this.aborted;
+		}
+
+		//Notes the disc of 'color' placed at (row, col) for the accumulators.
+		void played(int row, int col, int color) {
+			this.playedBits[this.playedCount] = col * (BitBoard.HEIGHT + 1) + BitBoard.HEIGHT - 1 - row;
+			this.playedColors[this.playedCount++] = color;
+		}
+
+		//Takes back the disc played() noted last.
+		void unplayed() {
+			this.playedCount--;
+			this.accumulated = Math.min(this.accumulated, this.playedCount + 1);
+		}
+
+		//Scores a position the search does not go below, from the accumulators when
+		//there are, so the network's first layer is not worked out from every disc.
+		int evaluate(int player, ConnectFourModel board, int currentPly) {
+			if (this.accumulators == null || board.checkWin() != 0 || board.boardIsFull()) {
+				return evaluator.score(player, board, currentPly);
+			}
+			//Each accumulator is the one before it plus one disc
+			for (; this.accumulated <= this.playedCount; this.accumulated++) {
+				int i = this.accumulated;
+				this.accumulators[i].copyFrom(this.accumulators[i - 1]);
+				this.accumulators[i].play(this.playedBits[i - 1], this.playedColors[i - 1]);
+			}
+			int score = this.accumulators[this.playedCount].evaluate(board.getCurrentColor());
+			return board.getCurrentColor() == player ? score : -score;
+		}
+
+		//The share of the positions looked up since 'probes' and 'found' were the
+		//counts that the transposition table knew.
+		double tableHitRate(long probes, long found) {
+			return this.tableProbes == probes ? 0 : (this.tableFound - found) / (double) (this.tableProbes - probes);
+		}
+
+		//Where the algorithm intitiates according to the current depth. This is designed
+		//to be recursive as each depth calls upon this method until finally the maximum
+		//depth is reached and the final moves are made. Positions that were already
+		//searched deep enough are answered from the transposition table. 'depth' is
+		//the number of plies left to search, which is less than maxPly - currentPly
+		//below a move that was reduced.
+		int alphaBetaPruning(int player, ConnectFourModel board, int alpha, int beta, int currentPly, int depth, long key) {
+			this.nodes++;
+			if (outOfBudget()) {
+				return 0;
+			}
+			if (this.trace != null) {
+				this.trace.increment(currentPly, SearchStats.NODES);
+			}
+
+			//checkWin() != 0 means game has been won  OR every spot is full
+			currentPly++;
+			if (depth == 0 || board.checkWin() != 0 || board.boardIsFull()) {
+				this.pvLength[currentPly] = currentPly;
+				if (this.trace != null) {
+					this.trace.increment(currentPly - 1, SearchStats.LEAVES);
+				}
+				if (board.checkWin() == 0 && !board.boardIsFull()) {
+					return extendThreats(player, board, currentPly, this.threatExtension);
+				}
+				return evaluate(player, board, currentPly);
+			}
+			this.pvLength[currentPly] = currentPly;
+
+			int ttMove = -1;
+			long entry = table.probe(key);
+			this.tableProbes++;
+			if (entry != TranspositionTable.MISSING) {
+				this.tableFound++;
+				ttMove = TranspositionTable.getMove(entry);
+				//The root always has to be searched so that it finds a move
+				if (currentPly > 1 && TranspositionTable.getDepth(entry) >= depth) {
+					int value = TranspositionTable.getValue(entry);
+					int flag = TranspositionTable.getFlag(entry);
+					if (flag == TranspositionTable.EXACT
+							|| (flag == TranspositionTable.LOWER && value >= beta)
+							|| (flag == TranspositionTable.UPPER && value <= alpha)) {
+						if (this.trace != null) {
+							this.trace.increment(currentPly - 1, SearchStats.TABLE_HITS);
+						}
+						return value;
+					}
+				}
+			}
+
+			if (board.getCurrentColor() == player) {
+				return getMax(player, board, alpha, beta, currentPly, depth, key, ttMove);
+			} else {
+				return getMin(player, board, alpha, beta, currentPly, depth, key, ttMove);
+			}
+		}
+
+		//Scores a position at the last ply, but first plays out the moves that are
+		//forced, so that it is not scored in the middle of a fight: a win is taken,
+		//a win of the other player is blocked, and a move that makes two threats at
+		//once (which cannot both be blocked) is played out to the win. Every move
+		//played uses up one of 'extensions', so the line cannot go on for long, and
+		//there is only ever one line, so the search does not branch any further.
+		int extendThreats(int player, ConnectFourModel board, int currentPly, int extensions) {
+			//A move of the line may have ended the game, and then nothing more is forced
+			if (extensions == 0 || board.checkWin() != 0 || board.boardIsFull()) {
+				return evaluate(player, board, currentPly);
+			}
+			BitBoard bits = BitBoard.fromModel(board);
+			long possible = bits.possible();
+
+			//The player to move wins, or has to block the other player's win
+			long forced = bits.winningPositions() & possible;
+			if (forced == 0) {
+				forced = bits.opponentWinningPositions() & possible;
+			}
+			if (forced != 0) {
+				return extendWith(player, board, BitBoard.columnOf(forced), currentPly, extensions);
+			}
+
+			//A move that leaves two wins the other player cannot both block wins in 3 plies
+			if (extensions >= 3) {
+				for (int col = 0; col < board.getCols(); col++) {
+					long move = possible & BitBoard.columnMask(col);
+					if (move == 0) continue;
+					long mine = bits.getPosition() | move;
+					long mask = bits.getMask() | move;
+					long next = (mask + BitBoard.BOTTOM_MASK) & BitBoard.BOARD_MASK;
+					long threats = BitBoard.computeWinningPositions(mine, mask) & next;
+					if (Long.bitCount(threats) >= 2
+							&& (BitBoard.computeWinningPositions(mine ^ mask, mask) & next) == 0) {
+						return extendWith(player, board, col, currentPly, extensions);
+					}
+				}
+			}
+			return evaluate(player, board, currentPly);
+		}
+
+		//Plays a move of the threat extension on a copy of the board and goes on
+		//extending from there.
+		int extendWith(int player, ConnectFourModel board, int col, int currentPly, int extensions) {
+			this.nodes++;
+			if (this.trace != null) {
+				this.trace.increment(this.maxPly, SearchStats.EXTENDED);
+			}
+			int row = dropRow(board, col);
+			ConnectFourModel next = board.copy();
+			next.placeDisc(row, col);
+			next.switchColor();
+			played(row, col, board.getCurrentColor());
+			int score = extendThreats(player, next, currentPly + 1, extensions - 1);
+			unplayed();
+			return score;
+		}
+
+		//Plays the move with the highest score.
+		//If the current score while searching through the possible moves is higher than
+		//the current alpha,that score becomes the current alpha
+		int getMax(int player, ConnectFourModel board, int alpha, int beta, int currentPly, int depth, long key, int ttMove) {
+			int alphaOrig = alpha;
+			//correponds to the column of the best move
+			int indexOfBestMove = -1;
+
+			//Near the last ply, a quiet position scored far below alpha is not worth
+			//searching (futility pruning) or is searched one ply less deep (razoring)
+			boolean quiet = currentPly > 1 && depth <= 2 && (this.futilityMargin > 0 || this.razorMargin > 0) && isQuiet(board);
+			if (quiet) {
+				int staticScore = evaluate(player, board, currentPly);
+				if (depth == 1 && this.futilityMargin > 0 && staticScore + this.futilityMargin <= alpha) {
+					countPruned(currentPly);
+					return alpha;
+				}
+				if (depth == 2 && this.razorMargin > 0 && staticScore + this.razorMargin <= alpha) {
+					countPruned(currentPly);
+					depth = 1;
+				}
+			}
+
+			//The only possible moves are the slots of the columns that are not full
+			int moves[] = orderMoves(board, currentPly, ttMove);
+			boolean reducible = canReduce(board, currentPly, depth, moves.length);
+			if (this.trace != null) {
+				this.trace.increment(currentPly - 1, SearchStats.EXPANDED);
+			}
+			for (int n = 0; n < moves.length; n++) {
+				int i = moves[n];
+				int j = dropRow(board, i);
+				if (this.trace != null) {
+					this.trace.increment(currentPly - 1, SearchStats.MOVES);
+				}
+
+				//Make the move on a copy of the board, then switch the color
+				ConnectFourModel modifiedBoard = board.copy();
+				modifiedBoard.placeDisc(j, i);
+				modifiedBoard.switchColor();
+				played(j, i, board.getCurrentColor());
+				long childKey = TranspositionTable.play(key, j, i, board.getCurrentColor());
+				//Get the score of the next depth level in the series of moves. A move
+				//ordered late is first searched less deep, only to see whether it can
+				//beat alpha, and searched again to the full depth if it does
+				int score;
+				int reduction = reduction(reducible, currentPly, depth, n);
+				if (reduction > 0) {
+					score = alphaBetaPruning(player, modifiedBoard, alpha, alpha + 1, currentPly, depth - 1 - reduction, childKey);
+					if (score > alpha && !this.aborted) {
+						countResearch(currentPly);
+						score = alphaBetaPruning(player, modifiedBoard, alpha, beta, currentPly, depth - 1, childKey);
+					}
+				} else if (currentPly == 1 && this.multiPv > 0) {
+					//At the root only the best multiPv moves need exact scores, so a move
+					//is searched with a window that opens at the one it has to beat
+					score = alphaBetaPruning(player, modifiedBoard, lineAlpha(), beta, currentPly, depth - 1, childKey);
+				} else {
+					score = alphaBetaPruning(player, modifiedBoard, alpha, beta, currentPly, depth - 1, childKey);
+				}
+				unplayed();
+				//Only the first move searched can be on the best line
+				this.followPv = false;
+				//The score of a stopped search is not real
+				if (this.aborted) {
+					return alpha;
+				}
+				if (currentPly == 1 && this.multiPv > 0 && score > lineAlpha()) {
+					addLine(i, score);
+				}
+
+				//Update the best score, alpha, and track of best move
+				if (score > alpha) {
+					alpha = score;
+					indexOfBestMove = i;
+					updatePv(currentPly, i);
+				}
+
+				// Pruning.
+				if (alpha >= beta) {
+					recordCutoff(currentPly, depth, board.getCurrentColor(), i, n);
+					break;
+				}
+			}
+
+			int flag = alpha >= beta ? TranspositionTable.LOWER
+					: alpha > alphaOrig ? TranspositionTable.EXACT : TranspositionTable.UPPER;
+			table.store(key, depth, alpha, flag, indexOfBestMove);
+
+			//If the algorithm comes back to the first instance, that is the initial
+			//move to make. Store the indexOfBestMove to the bestMove so that move
+			//can be made. The board itself is never changed
+			if (currentPly == 1 && indexOfBestMove != -1) {
+				this.bestMove = indexOfBestMove;
+			}
+
+			return alpha;
+		}
+
+		//Plays the move with the lowest score.
+		//If the current score while searching through the possible moves is lower
+		//than the current beta, that score becomes the current beta
+		int getMin(int player, ConnectFourModel board, int alpha, int beta, int currentPly, int depth, long key, int ttMove) {
+			int betaOrig = beta;
+			//correponds to the column of the best move
+			int indexOfBestMove = -1;
+
+			//The same pruning as in getMax(), for a position scored far above beta
+			boolean quiet = currentPly > 1 && depth <= 2 && (this.futilityMargin > 0 || this.razorMargin > 0) && isQuiet(board);
+			if (quiet) {
+				int staticScore = evaluate(player, board, currentPly);
+				if (depth == 1 && this.futilityMargin > 0 && staticScore - this.futilityMargin >= beta) {
+					countPruned(currentPly);
+					return beta;
+				}
+				if (depth == 2 && this.razorMargin > 0 && staticScore - this.razorMargin >= beta) {
+					countPruned(currentPly);
+					depth = 1;
+				}
+			}
+
+			//The only possible moves are the slots of the columns that are not full
+			int moves[] = orderMoves(board, currentPly, ttMove);
+			boolean reducible = canReduce(board, currentPly, depth, moves.length);
+			if (this.trace != null) {
+				this.trace.increment(currentPly - 1, SearchStats.EXPANDED);
+			}
+			for (int n = 0; n < moves.length; n++) {
+				int i = moves[n];
+				int j = dropRow(board, i);
+				if (this.trace != null) {
+					this.trace.increment(currentPly - 1, SearchStats.MOVES);
+				}
+
+				//Makes move on a copy of the board, then switches color
+				ConnectFourModel modifiedBoard = board.copy();
+				modifiedBoard.placeDisc(j, i);
+				modifiedBoard.switchColor();
+				played(j, i, board.getCurrentColor());
+				long childKey = TranspositionTable.play(key, j, i, board.getCurrentColor());
+				//Get the score of the next depth level in the series of moves, searching
+				//a move ordered late less deep first as in getMax()
+				int score;
+				int reduction = reduction(reducible, currentPly, depth, n);
+				if (reduction > 0) {
+					score = alphaBetaPruning(player, modifiedBoard, beta - 1, beta, currentPly, depth - 1 - reduction, childKey);
+					if (score < beta && !this.aborted) {
+						countResearch(currentPly);
+						score = alphaBetaPruning(player, modifiedBoard, alpha, beta, currentPly, depth - 1, childKey);
+					}
+				} else {
+					score = alphaBetaPruning(player, modifiedBoard, alpha, beta, currentPly, depth - 1, childKey);
+				}
+				unplayed();
+				//Only the first move searched can be on the best line
+				this.followPv = false;
+				//The score of a stopped search is not real
+				if (this.aborted) {
+					return beta;
+				}
+
+				//Update the best score, beta, and track of best move
+				if (score < beta) {
+					beta = score;
+					indexOfBestMove = i;
+					updatePv(currentPly, i);
+				}
+
+				// Pruning.
+				if (alpha >= beta) {
+					recordCutoff(currentPly, depth, board.getCurrentColor(), i, n);
+					break;
+				}
+			}
+
+			int flag = alpha >= beta ? TranspositionTable.UPPER
+					: beta < betaOrig ? TranspositionTable.EXACT : TranspositionTable.LOWER;
+			table.store(key, depth, beta, flag, indexOfBestMove);
+
+			return beta;
+		}
+
+		//Returns the columns that are not full, best first: the column on the line
+		//being followed, the column from the transposition table, the killer moves,
+		//and then the rest by their history. Columns that tie keep left to right order.
+		//At the root, columns that let the other player win right after are left out.
+		int[] orderMoves(ConnectFourModel board, int ply, int ttMove) {
+			int pvMove = -1;
+			if (this.followPv && ply - 1 < this.followLength) {
+				pvMove = this.followMoves[ply - 1];
+			}
+
+			int count = 0;
+			int columns[] = new int[board.getCols()];
+			int priority[] = new int[board.getCols()];
+			for (int col = 0; col < board.getCols(); col++) {
+				//If column is full, then no need to look for possible moves as no
+				//discs can be inserted
+				if (board.columnIsFull(col)) {
+					continue;
+				}
+				if (ply == 1 && (this.rootColumns & (1 << col)) == 0) {
+					continue;
+				}
+				int value = this.history[board.getCurrentColor()][col];
+				if (col == pvMove) {
+					value = 1 << 30;
+				} else if (col == ttMove) {
+					value = 1 << 29;
+				} else if (col == this.killers[ply][0]) {
+					value = 1 << 28;
+				} else if (col == this.killers[ply][1]) {
+					value = 1 << 27;
+				}
+
+				//Insertion sort, highest first
+				int k = count++;
+				while (k > 0 && priority[k - 1] < value) {
+					columns[k] = columns[k - 1];
+					priority[k] = priority[k - 1];
+					k--;
+				}
+				columns[k] = col;
+				priority[k] = value;
+			}
+
+			if (count == 0 || columns[0] != pvMove) {
+				this.followPv = false;
+			}
+
+			int moves[] = new int[count];
+			System.arraycopy(columns, 0, moves, 0, count);
+			return moves;
+		}
+
+		//Searches a position one move after the root, first with a narrow window
+		//around 'guess' and again with a wider one if the score falls outside it.
+		int scoreChild(int player, ConnectFourModel child, long key, int guess) {
+			int alpha = guess == Evaluator.NO_MOVE ? -INFINITY : guess - ASPIRATION_WINDOW;
+			int beta = guess == Evaluator.NO_MOVE ? INFINITY : guess + ASPIRATION_WINDOW;
+			while (true) {
+				this.followPv = false;
+				int score = alphaBetaPruning(player, child, alpha, beta, 1, this.maxPly - 1, key);
+				if (this.aborted) {
+					return score;
+				}
+				if (score <= alpha && alpha > -INFINITY) {
+					alpha = -INFINITY;
+				} else if (score >= beta && beta < INFINITY) {
+					beta = INFINITY;
+				} else {
+					return score;
+				}
+			}
+		}
+
+		//Makes 'move' followed by the best line of the next ply the best line of this ply.
+		void updatePv(int ply, int move) {
+			this.pvTable[ply][ply] = move;
+			for (int k = ply + 1; k < this.pvLength[ply + 1]; k++) {
+				this.pvTable[ply][k] = this.pvTable[ply + 1][k];
+			}
+			this.pvLength[ply] = Math.max(this.pvLength[ply + 1], ply + 1);
+		}
+
+		//Remembers a column that caused a cutoff so it is tried early next time.
+		//moveNumber is how many moves were searched before it.
+		void recordCutoff(int ply, int depth, int color, int col, int moveNumber) {
+			if (this.trace != null) {
+				this.trace.increment(ply - 1, SearchStats.CUTOFFS);
+				if (moveNumber == 0) {
+					this.trace.increment(ply - 1, SearchStats.FIRST_MOVE_CUTOFFS);
+				}
+			}
+			if (this.killers[ply][0] != col) {
+				this.killers[ply][1] = this.killers[ply][0];
+				this.killers[ply][0] = col;
+			}
+			this.history[color][col] += depth * depth;
+		}
+
+		//Whether the moves ordered late at a position may be searched less deep: not
+		//at the root, not near the last ply and not when a player can win at once.
+		boolean canReduce(ConnectFourModel board, int ply, int depth, int moves) {
+			return this.reductions && ply > 1 && depth >= LMR_DEPTH && moves > LMR_MOVES && isQuiet(board);
+		}
+
+		//How many plies less deep the move searched 'moveNumber'th is searched: none
+		//for the first LMR_MOVES moves, 1 for the rest and 2 for the last moves of a
+		//deep search.
+		int reduction(boolean reducible, int ply, int depth, int moveNumber) {
+			if (!reducible || moveNumber < LMR_MOVES) {
+				return 0;
+			}
+			if (this.trace != null) {
+				this.trace.increment(ply - 1, SearchStats.REDUCED);
+			}
+			return moveNumber > LMR_MOVES + 1 && depth >= 2 * LMR_DEPTH ? 2 : 1;
+		}
+
+		//Whether neither player can win with the next move.
+		boolean isQuiet(ConnectFourModel board) {
+			BitBoard bits = BitBoard.fromModel(board);
+			return ((bits.winningPositions() | bits.opponentWinningPositions()) & bits.possible()) == 0;
+		}
+
+		//The score a root move has to beat to be one of the best multiPv moves so far.
+		int lineAlpha() {
+			return this.lineCount < this.multiPv ? -INFINITY : this.lineScores[this.multiPv - 1];
+		}
+
+		//Keeps root move 'col' and the line below it, which the search of the move
+		//just left at ply 2, in order among the best moves. The worst one drops out
+		//when there are more than multiPv.
+		void addLine(int col, int score) {
+			int line[] = new int[Math.max(1, this.pvLength[2] - 1)];
+			line[0] = col;
+			for (int k = 2; k < this.pvLength[2]; k++) {
+				line[k - 1] = this.pvTable[2][k];
+			}
+			int n = Math.min(this.lineCount, this.multiPv - 1);
+			while (n > 0 && this.lineScores[n - 1] < score) {
+				this.lineScores[n] = this.lineScores[n - 1];
+				this.lineMoves[n] = this.lineMoves[n - 1];
+				n--;
+			}
+			this.lineScores[n] = score;
+			this.lineMoves[n] = line;
+			this.lineCount = Math.min(this.lineCount + 1, this.multiPv);
+		}
+
+		void countPruned(int ply) {
+			if (this.trace != null) {
+				this.trace.increment(ply - 1, SearchStats.PRUNED);
+			}
+		}
+
+		void countResearch(int ply) {
+			if (this.trace != null) {
+				this.trace.increment(ply - 1, SearchStats.RESEARCHED);
+			}
+		}
+	}
+
+	//Initializes an engine with a transposition table of 2^18 slots.
+	public AlphaBetaEngine() {
+		this(18);
+	}
+
+	//Initializes an engine with a transposition table of 2^tableBits slots.
+	public AlphaBetaEngine(int tableBits) {
+		this(tableBits, new BitBoardEvaluator());
+	}
+
+	//Initializes an engine that scores positions with 'evaluator'.
+	public AlphaBetaEngine(int tableBits, Evaluator evaluator) {
+		this.evaluator = evaluator;
+		this.table = new TranspositionTable(tableBits);
+		this.killers = new int[MAX_PLY + 2][2];
+		this.history = new int[3][7];
+		this.lastPv = new int[MAX_PLY + 2];
+		clear();
+	}
+
+	//Forgets everything learned. Called when a new game starts.
+	public void clear() {
+		this.table.clear();
+		synchronized (this.memoryLock) {
+			forget();
+		}
+	}
+
+	//Forgets what is carried between searches, but not the transposition table.
+	//Only called while holding memoryLock.
+	private void forget() {
+		for (int i = 0; i < this.killers.length; i++) {
+			this.killers[i][0] = -1;
+			this.killers[i][1] = -1;
+		}
+		for (int i = 0; i < this.history.length; i++) {
+			for (int j = 0; j < this.history[i].length; j++) {
+				this.history[i][j] = 0;
+			}
+		}
+		this.lastRoot = null;
+		this.lastPvLength = 0;
+		this.player = 0;
+	}
+
+	//When false, every search starts from an empty state like the old run() did.
+	public void setKeepState(boolean keepState) {
+		this.keepState = keepState;
+	}
+
+	public boolean getKeepState() {
+		return this.keepState;
+	}
+
+	//Sets the most forced moves played after the last ply before a position is scored.
+	public void setThreatExtension(int plies) {
+		if (plies < 0) {
+			throw new IllegalArgumentException("The threat extension cannot be negative.");
+		}
+		this.threatExtension = plies;
+	}
+
+	public int getThreatExtension() {
+		return this.threatExtension;
+	}
+
+	//Turns late move reductions on or off.
+	public void setReductions(boolean reductions) {
+		this.reductions = reductions;
+	}
+
+	public boolean getReductions() {
+		return this.reductions;
+	}
+
+	/**
+	 * Sets how far below alpha (or above beta) the score of a quiet position has
+	 * to be for it to be pruned one ply from the end (futility) or searched one
+	 * ply less deep two plies from the end (razoring). Bigger margins prune less
+	 * and are safer; 0 turns the pruning off, which is the default. Margins of 5
+	 * and 12 cut a few percent of the positions of a depth 8 search.
+	 */
+	public void setPruningMargins(int futilityMargin, int razorMargin) {
+		if (futilityMargin < 0 || razorMargin < 0) {
+			throw new IllegalArgumentException("Pruning margins cannot be negative.");
+		}
+		this.futilityMargin = futilityMargin;
+		this.razorMargin = razorMargin;
+	}
+
+	public int getFutilityMargin() {
+		return this.futilityMargin;
+	}
+
+	public int getRazorMargin() {
+		return this.razorMargin;
+	}
+
+	//Uses the tablebase to play perfectly once every next position is in it.
+	public void setTablebase(Tablebase tablebase) {
+		this.tablebase = tablebase;
+	}
+
+	public Tablebase getTablebase() {
+		return this.tablebase;
+	}
+
+	/**
+	 * Turns tracing on: one search in every 'sampleEvery' counts what it does at
+	 * each ply and adds the counts to 'stats', which can be shared by several
+	 * engines. Passing null turns tracing off, which costs nothing but a check
+	 * at each position.
+	 */
+	public void setStats(SearchStats stats, int sampleEvery) {
+		if (sampleEvery < 1) {
+			throw new IllegalArgumentException("Searches must be sampled at least once in every 1.");
+		}
+		this.sampleEvery = sampleEvery;
+		this.searches.set(0);
+		this.stats = stats;
+	}
+
+	public SearchStats getStats() {
+		return this.stats;
+	}
+
+	//The counts of the last search that was traced, or null if none was.
+	public SearchStats getLastStats() {
+		return this.lastTrace;
+	}
+
+	public Evaluator getEvaluator() {
+		return this.evaluator;
+	}
+
+	//The number of positions visited by the last search that finished.
+	public long getNodes() {
+		return this.lastNodes;
+	}
+
+	@Override
+	public int chooseMove(ConnectFourModel board, int player, SearchLimits limits) {
+		return search(player, board, limits);
+	}
+
+	@Override
+	public void newGame() {
+		clear();
+	}
+
+	/**
+	 * Finds the best column for 'player' on the given board, searching maxPly
+	 * plies deep. The board is not changed.
+	 * @return the best column, or -1 if there is no legal move.
+	 */
+	public int search(int player, ConnectFourModel model, int maxPly) {
+		//Needs to have a depth of at least 1
+		if (maxPly < 1) {
+			throw new IllegalArgumentException("Maximum depth must be greater than 0.");
+		}
+		return search(player, model, SearchLimits.depth(maxPly));
+	}
+
+	/**
+	 * Finds the best column for 'player' on the given board within the limits.
+	 * Without a depth limit the search goes as deep as the time or nodes allow.
+	 * The board is not changed. Several threads can search at once.
+	 * @return the best column, or -1 if there is no legal move.
+	 */
+	public int search(int player, ConnectFourModel model, SearchLimits limits) {
+		int maxDepth = limits.getDepth() > 0 ? Math.min(limits.getDepth(), MAX_PLY - 1) : MAX_PLY - 1;
+		if (limits.getDepth() == 0 && limits.getTimeMillis() == 0 && limits.getNodes() == 0) {
+			throw new IllegalArgumentException("The search needs a depth, time or node limit.");
+		}
+		//A move that is forced needs no search
+		BitBoard bits = BitBoard.fromModel(model);
+		int forced = ForcedMoves.find(bits);
+		if (forced >= 0) {
+			this.lastNodes = 0;
+			return forced;
+		}
+
+		//Near the end of the game the tablebase knows the best move without searching
+		Tablebase tablebase = this.tablebase;
+		if (tablebase != null
+				&& model.getRows() * model.getCols() - model.getDiscCount() <= tablebase.getMaxEmpty() + 1) {
+			int move = tablebase.bestMove(bits);
+			if (move >= 0) {
+				this.lastNodes = 0;
+				return move;
+			}
+		}
+
+		Object event = FlightEvents.SEARCH.begin();
+		SearchStats stats = this.stats;
+		Search search = new Search(player, model, limits,
+				stats != null && this.searches.getAndIncrement() % this.sampleEvery == 0 ? new SearchStats(MAX_PLY + 2) : null);
+		search.rootColumns = ForcedMoves.safeColumns(bits);
+		warmStart(search, model);
+		this.table.newSearch();
+
+		long rootKey = TranspositionTable.forPlayer(TranspositionTable.hash(model.getGameBoard(), model.getCurrentColor()), player);
+		int completedMove = deepen(search, model, rootKey, maxDepth, null);
+
+		//Even the first iteration was stopped: play its best move so far, or any legal move
+		if (completedMove < 0) {
+			completedMove = search.bestMove;
+		}
+		for (int col = 0; completedMove < 0 && col < model.getCols(); col++) {
+			if (!model.columnIsFull(col)) {
+				completedMove = col;
+			}
+		}
+
+		if (search.trace != null) {
+			search.trace.searchDone();
+			stats.addAll(search.trace);
+			this.lastTrace = search.trace;
+		}
+		this.lastNodes = search.nodes;
+		remember(search, model);
+		if (event != null) {
+			commitSearch(event, search, completedMove);
+		}
+		return completedMove;
+	}
+
+	/**
+	 * Finds the 'count' best columns for the player to move, within the limits,
+	 * each with its score and the line of best moves that follows it (Multi-PV).
+	 * It is one search, not one per column: at the root each column only has to
+	 * beat the count-th best score so far, so only those columns get exact
+	 * scores, and their lines come from the same table of best lines the search
+	 * keeps anyway, carried on from the transposition table where that table
+	 * stops. With a count of 1 it searches what search() does. Forced moves and
+	 * the tablebase are not used, so every column can be asked for.
+	 * The board is not changed. Several threads can search at once.
+	 * @return the lines of the last iteration that finished, best first, or an
+	 *         empty list if there is no legal move.
+	 */
+	public List<Line> searchLines(ConnectFourModel model, SearchLimits limits, int count) {
+		if (count < 1) {
+			throw new IllegalArgumentException("At least one line has to be asked for.");
+		}
+		if (limits.getDepth() == 0 && limits.getTimeMillis() == 0 && limits.getNodes() == 0) {
+			throw new IllegalArgumentException("The search needs a depth, time or node limit.");
+		}
+		int maxDepth = limits.getDepth() > 0 ? Math.min(limits.getDepth(), MAX_PLY - 1) : MAX_PLY - 1;
+		int player = model.getCurrentColor();
+		Object event = FlightEvents.SEARCH.begin();
+		Search search = new Search(player, model, limits, null);
+		search.multiPv = Math.min(count, model.getCols());
+		search.lineScores = new int[search.multiPv];
+		search.lineMoves = new int[search.multiPv][];
+		//Columns that let the other player win right after are always the worst, so
+		//they are only searched when there are not enough other columns
+		int safe = ForcedMoves.safeColumns(BitBoard.fromModel(model));
+		if (Integer.bitCount(safe) >= search.multiPv) {
+			search.rootColumns = safe;
+		}
+		warmStart(search, model);
+		this.table.newSearch();
+
+		long rootKey = TranspositionTable.forPlayer(TranspositionTable.hash(model.getGameBoard(), player), player);
+		ArrayList<Line> lines = new ArrayList<Line>();
+		deepen(search, model, rootKey, maxDepth, lines);
+		//Even the first iteration was stopped: give the lines it had found so far
+		int depth = search.completedDepth;
+		if (depth == 0) {
+			depth = 1;
+			keepLines(search, lines);
+		}
+		for (int i = 0; i < lines.size(); i++) {
+			Line line = lines.get(i);
+			lines.set(i, new Line(line.score, extendLine(model, rootKey, line.moves, depth)));
+		}
+		this.lastNodes = search.nodes;
+		remember(search, model);
+		if (event != null) {
+			commitSearch(event, search, lines.isEmpty() ? -1 : lines.get(0).getColumn());
+		}
+		return lines;
+	}
+
+	//Writes the Flight Recorder event of a search that has finished.
+	private static void commitSearch(Object event, Search search, int bestMove) {
+		FlightEvents.SEARCH.commit(event, bestMove, search.completedDepth, search.nodes,
+				search.tableHitRate(0, 0), search.outOfTime,
+				search.aborted && !search.outOfTime && !search.interrupted, search.interrupted);
+	}
+
+	//Deepens the search one ply at a time up to maxDepth or until it runs out of
+	//time or nodes. The lines of every iteration that finishes are put in 'lines'
+	//when it is not null. Returns the best move of the last iteration that
+	//finished, or -1 if none did.
+	private int deepen(Search search, ConnectFourModel model, long rootKey, int maxDepth, List<Line> lines) {
+		int completedMove = -1;
+		for (int depth = 1; depth <= maxDepth; depth++) {
+			search.maxPly = depth;
+			search.followPv = true;
+			search.bestMove = -1;
+			search.lineCount = 0;
+			long iterationStart = search.nodes;
+			long probes = search.tableProbes;
+			long found = search.tableFound;
+			Object iteration = FlightEvents.ITERATION.begin();
+			search.alphaBetaPruning(search.player, model, -INFINITY, INFINITY, 0, depth, rootKey);
+			if (iteration != null) {
+				FlightEvents.ITERATION.commit(iteration, depth, search.nodes - iterationStart,
+						search.tableHitRate(probes, found), search.bestMove, search.aborted);
+			}
+			//An iteration that was stopped part way has not looked at every move
+			if (search.aborted) {
+				break;
+			}
+			completedMove = search.bestMove;
+			search.completedDepth = depth;
+			if (lines != null) {
+				keepLines(search, lines);
+			}
+			if (search.trace != null) {
+				search.trace.add(depth, SearchStats.ITERATION_NODES, search.nodes - iterationStart);
+			}
+
+			//The line just found is searched first by the next iteration
+			search.followLength = Math.max(0, search.pvLength[1] - 1);
+			for (int i = 0; i < search.followLength; i++) {
+				search.followMoves[i] = search.pvTable[1][i + 1];
+			}
+		}
+		return completedMove;
+	}
+
+	//Replaces 'lines' with the best root moves the search has found so far.
+	private static void keepLines(Search search, List<Line> lines) {
+		lines.clear();
+		for (int i = 0; i < search.lineCount; i++) {
+			lines.add(new Line(search.lineScores[i], search.lineMoves[i]));
+		}
+	}
+
+	//Carries a line on from the transposition table, following the best move
+	//stored for each position after it, until it is 'length' moves long, the
+	//game is over or a position is not in the table.
+	private int[] extendLine(ConnectFourModel model, long rootKey, int moves[], int length) {
+		if (moves.length >= length) {
+			return moves;
+		}
+		ConnectFourModel board = model.copy();
+		long key = rootKey;
+		int line[] = Arrays.copyOf(moves, length);
+		int n = 0;
+		while (true) {
+			if (n > 0 && (board.checkWin() != 0 || board.boardIsFull())) {
+				break;
+			}
+			if (n >= moves.length) {
+				if (n == length) {
+					break;
+				}
+				long entry = this.table.probe(key);
+				int col = entry == TranspositionTable.MISSING ? -1 : TranspositionTable.getMove(entry);
+				if (col < 0 || col >= board.getCols() || board.columnIsFull(col)) {
+					break;
+				}
+				line[n] = col;
+			}
+			int row = dropRow(board, line[n]);
+			key = TranspositionTable.play(key, row, line[n], board.getCurrentColor());
+			board.placeDisc(row, line[n]);
+			board.switchColor();
+			n++;
+		}
+		return n == length ? line : Arrays.copyOf(line, Math.max(n, moves.length));
+	}
+
+	/**
+	 * Scores the columns in 'columns' (bit 'col' for each column) for the player
+	 * to move, within the limits. Every column is searched one ply deeper each
+	 * round, using the same transposition table, and from the second round on
+	 * with a narrow window around its score from the round before. The board is
+	 * not changed. Several threads can score columns at once.
+	 * @return the score of each column from the last round that finished, or
+	 *         Evaluator.NO_MOVE for full columns and columns not asked for.
+	 */
+	public int[] scoreColumns(ConnectFourModel model, SearchLimits limits, int columns) {
+		if (limits.getDepth() == 0 && limits.getTimeMillis() == 0 && limits.getNodes() == 0) {
+			throw new IllegalArgumentException("The search needs a depth, time or node limit.");
+		}
+		int maxDepth = limits.getDepth() > 0 ? Math.min(limits.getDepth(), MAX_PLY - 1) : MAX_PLY - 1;
+		int player = model.getCurrentColor();
+		Object event = FlightEvents.SEARCH.begin();
+		Search search = new Search(player, model, limits, null);
+		synchronized (this.memoryLock) {
+			if (this.keepState && player == this.player) {
+				copyHistory(this.history, search.history);
+			}
+		}
+		this.table.newSearch();
+
+		int scores[] = new int[model.getCols()];
+		Arrays.fill(scores, Evaluator.NO_MOVE);
+		int round[] = new int[model.getCols()];
+		long rootKey = TranspositionTable.forPlayer(TranspositionTable.hash(model.getGameBoard(), player), player);
+		for (int depth = 1; depth <= maxDepth && !search.aborted; depth++) {
+			search.maxPly = depth;
+			for (int col = 0; col < model.getCols() && !search.aborted; col++) {
+				if ((columns & (1 << col)) == 0 || model.columnIsFull(col)) {
+					continue;
+				}
+				int row = dropRow(model, col);
+				ConnectFourModel child = model.copy();
+				child.placeDisc(row, col);
+				child.switchColor();
+				long key = TranspositionTable.play(rootKey, row, col, player);
+				search.played(row, col, player);
+				round[col] = search.scoreChild(player, child, key, depth == 1 ? Evaluator.NO_MOVE : scores[col]);
+				search.unplayed();
+			}
+			//A round that was stopped part way is not used
+			if (search.aborted && depth > 1) {
+				break;
+			}
+			for (int col = 0; col < model.getCols(); col++) {
+				if ((columns & (1 << col)) != 0 && !model.columnIsFull(col)) {
+					scores[col] = round[col];
+				}
+			}
+			if (!search.aborted) {
+				search.completedDepth = depth;
+			}
+		}
+		this.lastNodes = search.nodes;
+		if (event != null) {
+			int best = -1;
+			for (int col = 0; col < scores.length; col++) {
+				if (scores[col] != Evaluator.NO_MOVE && (best < 0 || scores[col] > scores[best])) {
+					best = col;
+				}
+			}
+			commitSearch(event, search, best);
+		}
+		return scores;
+	}
+
+	//Copies what the previous search learned into a new search. If the moves played
+	//since the previous search follow its best line, the rest of that line is
+	//searched first and the killer moves move up by the same number of plies. The
+	//history table is halved so that old cutoffs count for less.
+	private void warmStart(Search search, ConnectFourModel model) {
+		synchronized (this.memoryLock) {
+			if (!this.keepState || search.player != this.player) {
+				if (!this.keepState) {
+					this.table.clear();
+				}
+				forget();
+				this.player = search.player;
+				return;
+			}
+			for (int i = 0; i < this.history.length; i++) {
+				for (int j = 0; j < this.history[i].length; j++) {
+					search.history[i][j] = this.history[i][j] / 2;
+				}
+			}
+
+			int played = playedSinceLastRoot(model);
+			if (played < 0) {
+				return;
+			}
+			search.followLength = this.lastPvLength - played;
+			for (int i = 0; i < search.followLength; i++) {
+				search.followMoves[i] = this.lastPv[i + played];
+			}
+			for (int i = 0; i + played < this.killers.length; i++) {
+				search.killers[i][0] = this.killers[i + played][0];
+				search.killers[i][1] = this.killers[i + played][1];
+			}
+		}
+	}
+
+	//Keeps what a search learned, its board and its best line for the next search.
+	private void remember(Search search, ConnectFourModel model) {
+		synchronized (this.memoryLock) {
+			if (search.player != this.player) {
+				return;
+			}
+			for (int i = 0; i < this.killers.length; i++) {
+				this.killers[i][0] = search.killers[i][0];
+				this.killers[i][1] = search.killers[i][1];
+			}
+			copyHistory(search.history, this.history);
+			this.lastRoot = new int[model.getRows()][model.getCols()];
+			for (int x = 0; x < model.getRows(); x++) {
+				for (int y = 0; y < model.getCols(); y++) {
+					this.lastRoot[x][y] = model.getGameBoard()[x][y];
+				}
+			}
+			this.lastRootColor = model.getCurrentColor();
+			this.lastPvLength = search.followLength;
+			for (int i = 0; i < this.lastPvLength; i++) {
+				this.lastPv[i] = search.followMoves[i];
+			}
+		}
+	}
+
+	private static void copyHistory(int from[][], int to[][]) {
+		for (int i = 0; i < from.length; i++) {
+			System.arraycopy(from[i], 0, to[i], 0, from[i].length);
+		}
+	}
+
+	//Returns how many moves of the previous best line lead to this board, or -1
+	//if the board did not come from that line. Only called while holding memoryLock.
+	private int playedSinceLastRoot(ConnectFourModel model) {
+		if (this.lastRoot == null) {
+			return -1;
+		}
+		int played = countDiscs(model.getGameBoard()) - countDiscs(this.lastRoot);
+		if (played < 0 || played > this.lastPvLength) {
+			return -1;
+		}
+
+		int board[][] = new int[model.getRows()][model.getCols()];
+		for (int x = 0; x < model.getRows(); x++) {
+			for (int y = 0; y < model.getCols(); y++) {
+				board[x][y] = this.lastRoot[x][y];
+			}
+		}
+		int color = this.lastRootColor;
+		for (int i = 0; i < played; i++) {
+			int col = this.lastPv[i];
+			int row = model.getRows() - 1;
+			while (row >= 0 && board[row][col] != model.EMPTY) {
+				row--;
+			}
+			if (row < 0) {
+				return -1;
+			}
+			board[row][col] = color;
+			color = (color == model.RED) ? model.BLACK : model.RED;
+		}
+
+		if (color != model.getCurrentColor()) {
+			return -1;
+		}
+		for (int x = 0; x < model.getRows(); x++) {
+			for (int y = 0; y < model.getCols(); y++) {
+				if (board[x][y] != model.getGameBoard()[x][y]) {
+					return -1;
+				}
+			}
+		}
+		return played;
+	}
+
+	private static int countDiscs(int board[][]) {
+		int discs = 0;
+		for (int x = 0; x < board.length; x++) {
+			for (int y = 0; y < board[x].length; y++) {
+				if (board[x][y] != 0) {
+					discs++;
+				}
+			}
+		}
+		return discs;
+	}
+
+	//Returns the row a disc dropped into 'col' lands in, starting from the bottom.
+	private static int dropRow(ConnectFourModel board, int col) {
+		for (int j = board.getRows() - 1; j >= 0; j--) {
+			if (board.getGameBoard()[j][col] == board.EMPTY) {
+				return j;
+			}
+		}
+		return -1;
+	}
+}
@@ -0,0 +1,125 @@
+package connectfour;
+
+import java.awt.GraphicsEnvironment;
+import java.awt.Toolkit;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.util.ArrayList;
+import javax.swing.Timer;
+
+/*
+Runs every animation of the game from one Swing timer. Each time the timer fires,
+every running animation is moved forward by the time that really passed since the
+previous frame, so animations move at the same speed however late the timer fires
+or however busy the event thread is. The timer never fires faster than the frame
+rate it was created with and stops when nothing is animating.
+
+Nothing waits for an animation: each one does its own work (such as placing the
+disc) when it finishes. In instant mode animations are finished as soon as they
+are started and nothing is drawn, which is used when there is no screen or when
+games are played as fast as possible.
+*/
+public class AnimationScheduler implements ActionListener {
+
+	/*
+	Something that moves over time, such as a dropping disc.
+	*/
+	public interface Animation {
+		//Moves the animation forward by 'seconds'. Returns true once it has finished.
+		boolean step(double seconds);
+
+		//Jumps straight to the end of the animation.
+		void finish();
+	}
+
+	//Represents the timer that draws the frames.
+	private final Timer timer;
+
+	//Represents the animations that are running.
+	private final ArrayList<Animation> animations;
+
+	//Represents the time of the previous frame in nanoseconds.
+	private long lastFrame;
+
+	//Represents whether animations are skipped.
+	private boolean instant;
+
+	//Initializes a scheduler that draws at most maxFramesPerSecond frames a second.
+	//It starts in instant mode when there is no screen to draw on.
+	public AnimationScheduler(int maxFramesPerSecond) {
+		this.timer = new Timer(Math.max(1, 1000 / maxFramesPerSecond), this);
+		this.timer.setCoalesce(true);
+		this.animations = new ArrayList<Animation>();
+		this.instant = GraphicsEnvironment.isHeadless();
+	}
+
+	//Starts an animation. Must be called on the event thread.
+	public void start(Animation animation) {
+		if (this.instant) {
+			animation.finish();
+			return;
+		}
+		this.animations.add(animation);
+		if (!this.timer.isRunning()) {
+			this.lastFrame = System.nanoTime();
+			this.timer.start();
+		}
+	}
+
+	//Whether any animation is running.
+	public boolean isAnimating() {
+		return !this.animations.isEmpty();
+	}
+
+	public boolean getInstant() {
+		return this.instant;
+	}
+
+	//Turns instant mode on or off. Turning it on finishes the running animations.
+	public void setInstant(boolean instant) {
+		this.instant = instant;
+		if (instant) {
+			finishAll();
+		}
+	}
+
+	//Finishes every running animation at once.
+	public void finishAll() {
+		this.timer.stop();
+		//Finishing an animation may start another one, which is finished as well
+		while (!this.animations.isEmpty()) {
+			this.animations.remove(0).finish();
+		}
+	}
+
+	//Stops every running animation where it is.
+	public void cancelAll() {
+		this.timer.stop();
+		this.animations.clear();
+	}
+
+	@Override
+	/**
+	 * Called every time the timer fires. Moves every animation forward by the time
+	 * since the previous frame and removes the ones that finished.
+	 */
+	public void actionPerformed(ActionEvent e) {
+		long now = System.nanoTime();
+		double seconds = (now - this.lastFrame) / 1e9;
+		this.lastFrame = now;
+
+		//Animations may start other animations while they are stepped
+		Animation running[] = this.animations.toArray(new Animation[this.animations.size()]);
+		for (Animation animation : running) {
+			if (animation.step(seconds)) {
+				this.animations.remove(animation);
+			}
+		}
+
+		if (this.animations.isEmpty()) {
+			this.timer.stop();
+		}
+		//Flush the frame to the screen now instead of whenever the system gets to it
+		Toolkit.getDefaultToolkit().sync();
+	}
+}
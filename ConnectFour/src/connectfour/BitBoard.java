@@ -0,0 +1,267 @@
+package connectfour;
+
+/*
+A compact copy of the game board held in two 64-bit numbers, used where positions
+have to be played and checked very quickly (random playouts, solvers, keys).
+
+Each column takes 7 bits, one for each of the 6 rows from the bottom up and one
+empty bit on top so that lines cannot wrap from one column into the next:
+
+   6 13 20 27 34 41 48   <- always empty
+   5 12 19 26 33 40 47
+   4 11 18 25 32 39 46
+   3 10 17 24 31 38 45
+   2  9 16 23 30 37 44
+   1  8 15 22 29 36 43
+   0  7 14 21 28 35 42
+
+'mask' has a bit set for every disc and 'position' for every disc of the player
+whose turn it is. Playing a move swaps the players by flipping 'position'.
+*/
+public class BitBoard {
+
+	//Represents the # of columns in the game board.
+	public static final int WIDTH = 7;
+
+	//Represents the # of rows in the game board.
+	public static final int HEIGHT = 6;
+
+	//Represents the bottom tile of every column.
+	public static final long BOTTOM_MASK = bottomMask();
+
+	//Represents every tile of the game board.
+	public static final long BOARD_MASK = BOTTOM_MASK * ((1L << HEIGHT) - 1);
+
+	//Represents the discs of the player whose turn it is.
+	private long position;
+
+	//Represents every disc in the game board.
+	private long mask;
+
+	//Represents the number of discs in the game board.
+	private int moves;
+
+	//Initializes an empty board.
+	public BitBoard() {
+		this(0, 0, 0);
+	}
+
+	public BitBoard(long position, long mask, int moves) {
+		this.position = position;
+		this.mask = mask;
+		this.moves = moves;
+	}
+
+	//Makes a BitBoard of the model's game board, with the model's current color to move.
+	//The model keeps the discs of each color in this layout, so nothing is scanned.
+	public static BitBoard fromModel(ConnectFourModel model) {
+		long red = model.getDiscBits(model.RED);
+		long black = model.getDiscBits(model.BLACK);
+		return new BitBoard(model.getCurrentColor() == model.RED ? red : black, red | black, model.getDiscCount());
+	}
+
+	//Makes this board a copy of 'other'.
+	public void copyFrom(BitBoard other) {
+		this.position = other.position;
+		this.mask = other.mask;
+		this.moves = other.moves;
+	}
+
+	public BitBoard copy() {
+		return new BitBoard(this.position, this.mask, this.moves);
+	}
+
+	public long getPosition() {
+		return this.position;
+	}
+
+	public long getMask() {
+		return this.mask;
+	}
+
+	public int getMoves() {
+		return this.moves;
+	}
+
+	//A number that is different for every position: the discs of the player to move
+	//plus all the discs. Within each column this is the discs of the player to move
+	//plus one less than the bit above the top disc, so no column carries into the
+	//next one and fromKey() can tell how high each column is.
+	public long key() {
+		return this.position + this.mask;
+	}
+
+	//The smaller of key() and the key of the board mirrored left to right. A position
+	//and its mirror have the same result, so they can share one entry.
+	public long canonicalKey() {
+		long key = key();
+		return Math.min(key, mirrorKey(key));
+	}
+
+	//Makes the board that 'key' was taken from with key().
+	public static BitBoard fromKey(long key) {
+		//Adding the bottom tiles sets the bit just above each column's top disc
+		long marked = key + BOTTOM_MASK;
+		long position = 0;
+		long mask = 0;
+		for (int col = 0; col < WIDTH; col++) {
+			int shift = col * (HEIGHT + 1);
+			long column = (marked >>> shift) & ((1L << (HEIGHT + 1)) - 1);
+			int height = 63 - Long.numberOfLeadingZeros(column);
+			long discs = (1L << height) - 1;
+			mask |= discs << shift;
+			position |= (column & discs) << shift;
+		}
+		return new BitBoard(position, mask, Long.bitCount(mask));
+	}
+
+	//The key of the board 'key' was taken from, mirrored left to right.
+	public static long mirrorKey(long key) {
+		long mirrored = 0;
+		for (int col = 0; col < WIDTH; col++) {
+			long column = (key >>> (col * (HEIGHT + 1))) & ((1L << (HEIGHT + 1)) - 1);
+			mirrored |= column << ((WIDTH - 1 - col) * (HEIGHT + 1));
+		}
+		return mirrored;
+	}
+
+	public boolean canPlay(int col) {
+		return (this.mask & topMask(col)) == 0;
+	}
+
+	//Drops a disc of the player to move into 'col' and gives the turn to the other player.
+	public void play(int col) {
+		this.position ^= this.mask;
+		this.mask |= this.mask + bottomMask(col);
+		this.moves++;
+	}
+
+	//Plays the move whose tile is the one bit set in 'move'.
+	public void playMove(long move) {
+		this.position ^= this.mask;
+		this.mask |= move;
+		this.moves++;
+	}
+
+	//Whether the player to move makes a Connect-Four by playing 'col'.
+	public boolean isWinningMove(int col) {
+		return (winningPositions() & possible() & columnMask(col)) != 0;
+	}
+
+	//Whether the player to move can make a Connect-Four with their next disc.
+	public boolean canWinNext() {
+		return (winningPositions() & possible()) != 0;
+	}
+
+	//The tiles of possible() that do not let the other player win right after,
+	//by filling the tile just below one of their wins.
+	public long nonLosingMoves() {
+		return possible() & ~(opponentWinningPositions() >>> 1);
+	}
+
+	//Whether every tile is full.
+	public boolean isFull() {
+		return this.moves == WIDTH * HEIGHT;
+	}
+
+	//The tiles a disc can be dropped into right now, one per column that is not full.
+	public long possible() {
+		return (this.mask + BOTTOM_MASK) & BOARD_MASK;
+	}
+
+	//The empty tiles that would give the player to move a Connect-Four.
+	public long winningPositions() {
+		return computeWinningPositions(this.position, this.mask);
+	}
+
+	//The empty tiles that would give the other player a Connect-Four.
+	public long opponentWinningPositions() {
+		return computeWinningPositions(this.position ^ this.mask, this.mask);
+	}
+
+	//Whether the player who just moved has a Connect-Four.
+	public boolean lastMoveWon() {
+		return alignment(this.position ^ this.mask);
+	}
+
+	//Whether 'position' has 4 discs in a line.
+	public static boolean alignment(long position) {
+		//horizontal
+		long m = position & (position >> (HEIGHT + 1));
+		if ((m & (m >> (2 * (HEIGHT + 1)))) != 0) return true;
+
+		//diagonal 1
+		m = position & (position >> HEIGHT);
+		if ((m & (m >> (2 * HEIGHT))) != 0) return true;
+
+		//diagonal 2
+		m = position & (position >> (HEIGHT + 2));
+		if ((m & (m >> (2 * (HEIGHT + 2)))) != 0) return true;
+
+		//vertical
+		m = position & (position >> 1);
+		if ((m & (m >> 2)) != 0) return true;
+
+		return false;
+	}
+
+	//The empty tiles that complete a line of 4 for the discs in 'position'.
+	public static long computeWinningPositions(long position, long mask) {
+		//vertical
+		long r = (position << 1) & (position << 2) & (position << 3);
+
+		//horizontal
+		long p = (position << (HEIGHT + 1)) & (position << 2 * (HEIGHT + 1));
+		r |= p & (position << 3 * (HEIGHT + 1));
+		r |= p & (position >> (HEIGHT + 1));
+		p = (position >> (HEIGHT + 1)) & (position >> 2 * (HEIGHT + 1));
+		r |= p & (position << (HEIGHT + 1));
+		r |= p & (position >> 3 * (HEIGHT + 1));
+
+		//diagonal 1
+		p = (position << HEIGHT) & (position << 2 * HEIGHT);
+		r |= p & (position << 3 * HEIGHT);
+		r |= p & (position >> HEIGHT);
+		p = (position >> HEIGHT) & (position >> 2 * HEIGHT);
+		r |= p & (position << HEIGHT);
+		r |= p & (position >> 3 * HEIGHT);
+
+		//diagonal 2
+		p = (position << (HEIGHT + 2)) & (position << 2 * (HEIGHT + 2));
+		r |= p & (position << 3 * (HEIGHT + 2));
+		r |= p & (position >> (HEIGHT + 2));
+		p = (position >> (HEIGHT + 2)) & (position >> 2 * (HEIGHT + 2));
+		r |= p & (position << (HEIGHT + 2));
+		r |= p & (position >> 3 * (HEIGHT + 2));
+
+		return r & (BOARD_MASK ^ mask);
+	}
+
+	//The column of the tile that is the lowest bit set in 'tiles'.
+	public static int columnOf(long tiles) {
+		return Long.numberOfTrailingZeros(tiles) / (HEIGHT + 1);
+	}
+
+	//The bottom tile of 'col'.
+	public static long bottomMask(int col) {
+		return 1L << (col * (HEIGHT + 1));
+	}
+
+	//The top tile of 'col'.
+	public static long topMask(int col) {
+		return 1L << (HEIGHT - 1 + col * (HEIGHT + 1));
+	}
+
+	//Every tile of 'col'.
+	public static long columnMask(int col) {
+		return ((1L << HEIGHT) - 1) << (col * (HEIGHT + 1));
+	}
+
+	private static long bottomMask() {
+		long mask = 0;
+		for (int col = 0; col < WIDTH; col++) {
+			mask |= bottomMask(col);
+		}
+		return mask;
+	}
+}
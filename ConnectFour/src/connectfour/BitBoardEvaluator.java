@@ -0,0 +1,132 @@
+package connectfour;
+
+/*
+Gives exactly the same scores as HeuristicEvaluator, but counts the lines of 2 and 3
+on bitboards instead of with checkThree() and checkTwo(). Each color's discs are one
+long (in the BitBoard layout), and shifting it by the distance between two tiles of
+a line lines every tile up with its neighbour, so a single AND finds that line at
+every place on the board at once and Long.bitCount() counts them. The masks keep
+only the places the loops of checkThree() and checkTwo() start from, so their
+counts are reproduced exactly, including the lines of 2 they skip near the edges.
+
+scoreChildren() scores every move from a position in one go for the frontier of
+the search or for batch analysis: the board is read once and the other player's
+lines are only counted once.
+
+HeuristicEvaluator is kept as the plain version of the same scoring.
+*/
+public class BitBoardEvaluator implements Evaluator {
+
+	//Represents the distance between the bits of neighbouring tiles in a column.
+	private static final int UP = 1;
+
+	//Represents the distance between the bits of neighbouring tiles in a row.
+	private static final int RIGHT = BitBoard.HEIGHT + 1;
+
+	//Represents the places the horizontal lines start from: the first 4 columns, every row.
+	private static final long HORIZONTAL = tiles(0, 3, 0, BitBoard.HEIGHT - 1);
+
+	//Represents the places the vertical lines start from: every column, the bottom 3 rows.
+	private static final long VERTICAL = tiles(0, BitBoard.WIDTH - 1, 0, 2);
+
+	//Represents the places the diagonal lines going up to the right start from.
+	private static final long DIAGONAL_UP = tiles(0, 3, 0, 2);
+
+	//Represents the places the diagonal lines going up to the left start from.
+	private static final long DIAGONAL_DOWN = tiles(3, BitBoard.WIDTH - 1, 0, 2);
+
+	//Represents the colors of ConnectFourModel.
+	private static final int RED = 1;
+	private static final int BLACK = 2;
+
+	@Override
+	public int score(int player, ConnectFourModel board, int currentPly) {
+		BitBoard bits = BitBoard.fromModel(board);
+		long mover = bits.getPosition();
+		long other = bits.getPosition() ^ bits.getMask();
+		boolean redToMove = board.getCurrentColor() == board.RED;
+		return score(player == board.RED, redToMove ? mover : other, redToMove ? other : mover, board.checkWin());
+	}
+
+	@Override
+	public void scoreChildren(int player, ConnectFourModel board, int currentPly, int scores[]) {
+		BitBoard bits = BitBoard.fromModel(board);
+		long mover = bits.getPosition();
+		long other = bits.getPosition() ^ bits.getMask();
+		long mask = bits.getMask();
+		boolean redToMove = board.getCurrentColor() == board.RED;
+		boolean forRed = player == board.RED;
+		int moverColor = board.getCurrentColor();
+
+		//The other player's lines are the same after every move
+		int otherThree = countThree(other);
+		int otherTwo = countTwo(other);
+
+		for (int col = 0; col < BitBoard.WIDTH; col++) {
+			if ((mask & BitBoard.topMask(col)) != 0) {
+				scores[col] = NO_MOVE;
+				continue;
+			}
+			long child = mover | ((mask + BitBoard.bottomMask(col)) & BitBoard.columnMask(col));
+			int winner = board.checkWin();
+			if (winner == 0 && BitBoard.alignment(child)) {
+				winner = moverColor;
+			}
+			int childThree = countThree(child);
+			int childTwo = countTwo(child);
+			if (redToMove) {
+				scores[col] = score(forRed, winner, childThree, childTwo, childThree, otherTwo);
+			} else {
+				scores[col] = score(forRed, winner, otherThree, otherTwo, otherThree, childTwo);
+			}
+		}
+	}
+
+	//Scores a position from the red and black discs and the winner (0 for none).
+	public static int score(boolean forRed, long red, long black, int winner) {
+		int redThree = countThree(red);
+		return score(forRed, winner, redThree, countTwo(red), redThree, countTwo(black));
+	}
+
+	//The scoring of HeuristicEvaluator. Like it, black's lines of 3 are counted
+	//with red's (see blackScore there), so that both give the same scores.
+	private static int score(boolean forRed, int winner, int redThree, int redTwo, int blackThreeAsRed, int blackTwo) {
+		int redScore = (winner == RED ? 11 : 0) + redThree * 3 + redTwo;
+		int blackScore = (winner == BLACK ? 11 : 0) + blackThreeAsRed * 3 + blackTwo;
+		if (!forRed) {
+			if (winner == RED) {
+				return -200;
+			}
+			return blackScore - redScore;
+		}
+		return redScore - blackScore;
+	}
+
+	//The number of lines of 3 checkThree() finds in 'discs'.
+	public static int countThree(long discs) {
+		return Long.bitCount(discs & (discs >>> RIGHT) & (discs >>> 2 * RIGHT) & HORIZONTAL)
+				+ Long.bitCount(discs & (discs >>> UP) & (discs >>> 2 * UP) & VERTICAL)
+				+ Long.bitCount(discs & (discs >>> (RIGHT + UP)) & (discs >>> 2 * (RIGHT + UP)) & DIAGONAL_UP)
+				+ Long.bitCount(discs & (discs << (RIGHT - UP)) & (discs << 2 * (RIGHT - UP)) & DIAGONAL_DOWN);
+	}
+
+	//The number of lines of 2 checkTwo() finds in 'discs'.
+	public static int countTwo(long discs) {
+		return Long.bitCount(discs & (discs >>> RIGHT) & HORIZONTAL)
+				+ Long.bitCount(discs & (discs >>> UP) & VERTICAL)
+				+ Long.bitCount(discs & (discs >>> (RIGHT + UP)) & DIAGONAL_UP)
+				+ Long.bitCount(discs & (discs << (RIGHT - UP)) & DIAGONAL_DOWN);
+	}
+
+	//The bits of the tiles in columns firstCol to lastCol and rows firstRow to
+	//lastRow, counting rows from the bottom.
+	private static long tiles(int firstCol, int lastCol, int firstRow, int lastRow) {
+		long tiles = 0;
+		for (int col = firstCol; col <= lastCol; col++) {
+			for (int row = firstRow; row <= lastRow; row++) {
+				tiles |= 1L << (col * RIGHT + row);
+			}
+		}
+		return tiles;
+	}
+}
@@ -0,0 +1,208 @@
+package connectfour;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/*
+Scores every column of a position for the player to move, for hints and analysis,
+instead of only choosing the best one.
+
+With few enough empty tiles the scores are exact, from EndgameSolver: 0 for a draw,
+positive for a win and negative for a loss, bigger the sooner the game is won.
+Otherwise they are the scores of the Alpha-Beta pruning search within the limits,
+which uses one transposition table for all the columns.
+
+With more than one thread the columns are split between the threads and scored at
+the same time. The threads search with one engine, so a position one thread has
+searched is in the transposition table for the others, and each thread has its
+own solver.
+
+An analysis can be stopped by interrupting the thread that asked for it.
+*/
+public class ColumnAnalyzer {
+
+	//Represents the most empty tiles of a position that is solved exactly by default.
+	public static final int DEFAULT_EXACT_EMPTY = 20;
+
+	/*
+	The scores of every column of one position.
+	*/
+	public static class Analysis {
+		//Represents the score of each column, or Evaluator.NO_MOVE if it is full.
+		private final int scores[];
+
+		//Represents whether the scores are exact results rather than heuristic scores.
+		private final boolean exact;
+
+		Analysis(int scores[], boolean exact) {
+			this.scores = scores;
+			this.exact = exact;
+		}
+
+		public int getScore(int col) {
+			return this.scores[col];
+		}
+
+		public int[] getScores() {
+			return this.scores.clone();
+		}
+
+		public boolean isExact() {
+			return this.exact;
+		}
+
+		//The column with the highest score, the one nearest the middle if several
+		//tie, or -1 if every column is full.
+		public int getBestColumn() {
+			int best = -1;
+			for (int col = 0; col < this.scores.length; col++) {
+				if (this.scores[col] == Evaluator.NO_MOVE) continue;
+				if (best < 0 || this.scores[col] > this.scores[best]
+						|| (this.scores[col] == this.scores[best]
+						&& Math.abs(2 * col - this.scores.length + 1) < Math.abs(2 * best - this.scores.length + 1))) {
+					best = col;
+				}
+			}
+			return best;
+		}
+
+		@Override
+		public String toString() {
+			StringBuilder text = new StringBuilder(this.exact ? "exact" : "heuristic");
+			for (int col = 0; col < this.scores.length; col++) {
+				text.append(' ').append(this.scores[col] == Evaluator.NO_MOVE ? "-" : String.valueOf(this.scores[col]));
+			}
+			return text.toString();
+		}
+	}
+
+	//Represents the most empty tiles of a position that is solved exactly.
+	private final int exactEmpty;
+
+	//Represents the number of threads the columns are split between.
+	private final int threads;
+
+	//Represents the engine every thread searches with.
+	private final AlphaBetaEngine engine = new AlphaBetaEngine();
+
+	//Represents the solver of each thread.
+	private final ThreadLocal<EndgameSolver> solvers = new ThreadLocal<EndgameSolver>() {
+		@Override
+		protected EndgameSolver initialValue() {
+			return new EndgameSolver();
+		}
+	};
+
+	//Represents the threads, or null when everything runs on the caller's thread.
+	private final ExecutorService pool;
+
+	//Initializes an analyzer on the caller's thread.
+	public ColumnAnalyzer() {
+		this(DEFAULT_EXACT_EMPTY, 1);
+	}
+
+	public ColumnAnalyzer(int exactEmpty, int threads) {
+		this.exactEmpty = exactEmpty;
+		this.threads = Math.max(1, threads);
+		if (this.threads == 1) {
+			this.pool = null;
+		} else {
+			this.pool = Executors.newFixedThreadPool(this.threads, new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable r) {
+					Thread thread = new Thread(r, "analysis");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+	}
+
+	/**
+	 * Scores every column for the player to move. The limits are used when the
+	 * position is too big to solve exactly; with several threads each thread
+	 * gets the whole limits for its share of the columns.
+	 * @throws InterruptedException if the calling thread is interrupted, in which
+	 *         case the threads stop scoring and nothing is returned.
+	 */
+	public synchronized Analysis analyze(final ConnectFourModel model, final SearchLimits limits)
+			throws InterruptedException {
+		final BitBoard board = BitBoard.fromModel(model);
+		final boolean exact = BitBoard.WIDTH * BitBoard.HEIGHT - board.getMoves() <= this.exactEmpty;
+
+		//Deals the columns out to the threads, middle columns first since they take longest
+		final int shares[] = new int[this.threads];
+		int order[] = {3, 2, 4, 1, 5, 0, 6};
+		int next = 0;
+		for (int col : order) {
+			if (board.canPlay(col)) {
+				shares[next++ % this.threads] |= 1 << col;
+			}
+		}
+
+		final int scores[] = new int[BitBoard.WIDTH];
+		Arrays.fill(scores, Evaluator.NO_MOVE);
+		if (this.pool == null) {
+			scoreShare(model, board, limits, exact, shares[0], scores);
+			if (Thread.interrupted()) {
+				throw new InterruptedException();
+			}
+			return new Analysis(scores, exact);
+		}
+
+		ArrayList<Future<?>> workers = new ArrayList<Future<?>>();
+		for (int t = 0; t < this.threads; t++) {
+			if (shares[t] == 0) continue;
+			final int share = shares[t];
+			final ConnectFourModel copy = model.copy();
+			workers.add(this.pool.submit(new Callable<Void>() {
+				@Override
+				public Void call() {
+					scoreShare(copy, board, limits, exact, share, scores);
+					return null;
+				}
+			}));
+		}
+		try {
+			for (Future<?> worker : workers) {
+				worker.get();
+			}
+		} catch (InterruptedException e) {
+			//The scores of the columns not finished are not worth anything
+			for (Future<?> worker : workers) {
+				worker.cancel(true);
+			}
+			throw e;
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("Analysis failed", e.getCause());
+		}
+		return new Analysis(scores, exact);
+	}
+
+	//Scores the columns in 'columns' on the current thread. Each thread writes only
+	//its own columns of 'scores'. Stops early if the thread is interrupted.
+	private void scoreShare(ConnectFourModel model, BitBoard board, SearchLimits limits,
+			boolean exact, int columns, int scores[]) {
+		if (exact) {
+			EndgameSolver solver = this.solvers.get();
+			for (int col = 0; col < BitBoard.WIDTH && !Thread.currentThread().isInterrupted(); col++) {
+				if ((columns & (1 << col)) != 0) {
+					scores[col] = solver.solveMove(board, col);
+				}
+			}
+			return;
+		}
+		int share[] = this.engine.scoreColumns(model, limits, columns);
+		for (int col = 0; col < BitBoard.WIDTH; col++) {
+			if ((columns & (1 << col)) != 0) {
+				scores[col] = share[col];
+			}
+		}
+	}
+}
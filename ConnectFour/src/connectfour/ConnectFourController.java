@@ -1,18 +1,26 @@
 package connectfour;
 
+import java.awt.AlphaComposite;
 import java.awt.BorderLayout;
 import java.awt.Dimension;
 import java.awt.Font;
 import java.awt.Graphics;
+import java.awt.Graphics2D;
 import java.awt.List;
 import java.awt.Point;
+import java.awt.Transparency;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.awt.event.InputEvent;
+import java.awt.event.KeyEvent;
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseListener;
 import java.awt.event.MouseMotionListener;
+import java.awt.image.BufferedImage;
+import javax.swing.AbstractAction;
+import javax.swing.JComponent;
 import javax.swing.JPanel;
-import javax.swing.Timer;
+import javax.swing.KeyStroke;
 import javax.swing.WindowConstants;
 
 /*
@@ -22,12 +30,12 @@ Contains a nested class 'Panel' that draws all the components of the board and d
 and the appropriate headings.
 
 Alpha-Beta pruning algorithm is initiated via the run() method. Intiates with the
-maximum depth for this algorithm (in this case 4). This in turn triggers the alphaBetaPruning()
-method with the first depth being used. This triggers the getMax() or getMin() methods that
-find the maximum and minimum score respectaviley. Each instance triggers another 
-alphaBetaPrunign() algorithm with the next depth until the max depth is reached, after which
-the preceding methods can find the best move that either achieve the maximum or
-minimum score.
+maximum depth for this algorithm (in this case 4). The search itself lives in
+AlphaBetaEngine, which is kept for the whole game so that it can reuse what it learned
+on previous moves. Each search keeps its own state inside the engine, so the controller
+only passes the board and the depth and gets the best column back. The search finds the
+maximum and minimum score on alternating depths until the max depth is reached, after which
+the best move that achieves the maximum score is played.
 The score is calculated by figuring out if there will be a connect 4 (and rewarding
 the AI with 11, or punishing the AI with 11 if it is the player who wins). In addition,
 the number of lines of 3 and 2 are found and added/subtracted to the score. There
@@ -35,12 +43,18 @@ is an intervention in case the subsequent move the player makes results in a con
 which the score is set to a low value of -200 so that the AI will not look too far 
 into the future.
 */
-public class ConnectFourController implements ActionListener {
+public class ConnectFourController {
 	//Represents the view or what the user sees.
 	private final ConnectFourView view;
 	
 	//Represents the model or the data for the game.
 	private final ConnectFourModel model;
+	
+	//Represents the panel the board is drawn on.
+	private final Panel panel;
+	
+	//Represents the scheduler that runs the dropping disc animation.
+	private final AnimationScheduler animations;
         
 	//Initializes the controller with view and model
 	public ConnectFourController(final ConnectFourView view, final ConnectFourModel model) {
@@ -74,47 +88,67 @@ public class ConnectFourController implements ActionListener {
 		this.view.addRestartButtonListener(new RestartButtonListener());
 		this.view.addMouseListener(new PanelListener());
 		this.view.addMouseMotionListener(new CursorListener());
-		this.view.addPanel(new Panel());
+		this.animations = new AnimationScheduler(60);
+		this.view.scaleImages(this.model.getTileSize());
+		this.panel = new Panel();
+		this.view.addPanel(this.panel);
+		
+		//Setup Undo (Ctrl+Z) and Redo (Ctrl+Y)
+		this.panel.getInputMap(JComponent.WHEN_IN_FOCUSED_WINDOW)
+				.put(KeyStroke.getKeyStroke(KeyEvent.VK_Z, InputEvent.CTRL_DOWN_MASK), "undo");
+		this.panel.getInputMap(JComponent.WHEN_IN_FOCUSED_WINDOW)
+				.put(KeyStroke.getKeyStroke(KeyEvent.VK_Y, InputEvent.CTRL_DOWN_MASK), "redo");
+		this.panel.getActionMap().put("undo", new HistoryAction(false));
+		this.panel.getActionMap().put("redo", new HistoryAction(true));
+		
+		//Records the events that keep the window from being redrawn, such as the AI's
+		//search, when Flight Recorder is running
+		FlightEvents.watchEventThread();
 		
 		this.view.setVisible(true);
 	}
 	
         //Paints all the components of the board incuding the discs, board, and win sequence
 	class Panel extends JPanel {
+		
+		//Represents the discs placed in the board with the grid drawn over them.
+		//It only changes when a disc lands or the game restarts, so it is drawn
+		//once into an image and that image is drawn on every repaint.
+		private BufferedImage boardLayer;
+		
+		//Represents whether the board layer has to be drawn again.
+		private boolean boardChanged = true;
 
                 /*
                 Responsible for updating the view.
-		 * Draws the dropping disc if a timer is running and then draws the game board
+		 * Draws the dropping disc if a disc is dropping and then draws the game board
 		 * to simulate the disc dropping inside the game board.
-		 * Draws a disc which follows the user's cursor if no timer is running.
+		 * Draws a disc which follows the user's cursor if no disc is dropping.
 		 * Draws the win sequence when a Connect Four is found.
                 */
 		@Override		
 		public void paintComponent(Graphics g) {
 			super.paintComponent(g);
 			//Set color of dropping disc to be the current players color
+			BufferedImage currImage;
 			if (model.getCurrentColor() == model.RED) {
-				view.setCurrIcon(view.getRedDiscIcon());
+				currImage = view.getRedDiscImage();
 			} else {
-				view.setCurrIcon(view.getBlackDiscIcon());
+				currImage = view.getBlackDiscImage();
 			}
 			
-			if (model.getTimer().isRunning()) {
+			if (model.isDiscDropping()) {
 				//Draw falling disc                                
-				g.drawImage (view.getCurrIcon().getImage(), 
+				g.drawImage (currImage, 
 						model.getMargin() + model.getDroppingDisc().getX(),
 						model.getDroppingDisc().getY(), 
-						model.getTileSize(), 
-						model.getTileSize(), 
 						null);
 			} else {
 				//Draw disc that follows mouse cursor at top only if red disc
 				if (!model.getWinSequence() && model.getCurrentColor()==1){
-                                    g.drawImage (view.getCurrIcon().getImage(), 
+                                    g.drawImage (currImage, 
 							model.getMousePoint().x - (model.getTileSize() / 2),
 							0, 
-							model.getTileSize(), 
-							model.getTileSize(), 
 							null);
                                 }					
                                 else if(!model.getWinSequence() && model.getCurrentColor()==2){
@@ -123,40 +157,70 @@ public class ConnectFourController implements ActionListener {
                                 }
 			}
 			
+			//Draw the discs and the default grid
+			g.drawImage(getBoardLayer(), model.getMargin(), 2 * model.getMargin(), null);
+			
+			if (model.getWinSequence()) drawWinSequence(g);
+                        
+                        if(!model.getWinSequence() && model.getCurrentColor()==2)
+                            drawAItext(g);
+                        
+		}
+		
+		//Tells the panel a disc was placed or removed, and repaints all of it.
+		public void boardChanged() {
+			this.boardChanged = true;
+			repaint();
+		}
+		
+		//Returns the image of the discs and grid, drawing it again if the board changed.
+		private BufferedImage getBoardLayer() {
+			int width = model.getCols() * model.getTileSize();
+			int height = model.getRows() * model.getTileSize();
+			if (this.boardLayer == null) {
+				this.boardLayer = getGraphicsConfiguration().createCompatibleImage(width, height, Transparency.TRANSLUCENT);
+				this.boardChanged = true;
+			}
+			if (!this.boardChanged) {
+				return this.boardLayer;
+			}
+			
+			Graphics2D g = this.boardLayer.createGraphics();
+			g.setComposite(AlphaComposite.Clear);
+			g.fillRect(0, 0, width, height);
+			g.setComposite(AlphaComposite.SrcOver);
 			for (int i = 0; i < model.getRows(); i++) {
 				for (int j = 0; j < model.getCols(); j++) {
+					int x = j * model.getTileSize();
+					int y = i * model.getTileSize();
 					if (model.getGameBoard()[i][j]== model.RED) {
 						//Draw Red Discs
-						g.drawImage (view.getRedDiscIcon().getImage(), 
-								model.getMargin() + j * model.getTileSize(),
-								2 * model.getMargin() + i * model.getTileSize(), 
-								model.getTileSize(), 
-								model.getTileSize(), 
-								null);
+						g.drawImage(view.getRedDiscImage(), x, y, null);
 					} else if (model.getGameBoard()[i][j]== model.BLACK) {
 						//Draw Black Discs
-						g.drawImage (view.getBlackDiscIcon().getImage(), 
-								model.getMargin() + j * model.getTileSize(),
-								2 * model.getMargin() + i * model.getTileSize(), 
-								model.getTileSize(), 
-								model.getTileSize(), 
-								null);
+						g.drawImage(view.getBlackDiscImage(), x, y, null);
 					}
 					//Draw the default grid
-					g.drawImage (view.getDefaultIcon().getImage(), 
-							model.getMargin() + (j * model.getTileSize()),
-							2 * model.getMargin() + i * model.getTileSize(), 
-							model.getTileSize(), 
-							model.getTileSize(), 
-							null);
+					g.drawImage(view.getDefaultImage(), x, y, null);
 				}
 			}
-			
-			if (model.getWinSequence()) drawWinSequence(g);
-                        
-                        if(!model.getWinSequence() && model.getCurrentColor()==2)
-                            drawAItext(g);
-                        
+			g.dispose();
+			this.boardChanged = false;
+			return this.boardLayer;
+		}
+		
+		//Repaints only the strip at the top where the disc following the cursor is drawn,
+		//where it was and where it is now.
+		public void repaintHover(int oldX, int newX) {
+			int half = model.getTileSize() / 2;
+			int left = Math.min(oldX, newX) - half - 1;
+			int right = Math.max(oldX, newX) + half + 1;
+			repaint(left, 0, right - left, model.getTileSize());
+		}
+		
+		//Repaints only the column the dropping disc falls through.
+		public void repaintDroppingColumn() {
+			repaint(model.getMargin() + model.getDroppingDisc().getX(), 0, model.getTileSize(), getHeight());
 		}
 	}
 	
@@ -169,6 +233,26 @@ public class ConnectFourController implements ActionListener {
 		}
 	}
 	
+	//Takes back the last move, or redoes the last move taken back, from the keyboard
+	class HistoryAction extends AbstractAction {
+		
+		//Represents whether the action redoes a move rather than taking one back.
+		private final boolean redo;
+		
+		HistoryAction(boolean redo) {
+			this.redo = redo;
+		}
+		
+		@Override
+		public void actionPerformed(ActionEvent e) {
+			if (this.redo) {
+				redo();
+			} else {
+				undo();
+			}
+		}
+	}
+	
 	class PanelListener implements MouseListener {
 		
 		@Override
@@ -190,7 +274,7 @@ public class ConnectFourController implements ActionListener {
                         //If color is red
                          if(getCurrColor()==1 ){
                         //If a disc is currently falling...return.
-			if (model.getTimer().isRunning()) return;
+			if (model.isDiscDropping()) return;
 			
 			//If the user clicks outside the game board...return.
 			if (e.getX() < model.getMargin() 
@@ -208,15 +292,17 @@ public class ConnectFourController implements ActionListener {
 			
 			setupDroppingDisc();
                         
-			//Begin the timer.
-			model.getTimer().start();
+			//Begin the animation.
+			startDroppingDisc();
+			//The disc following the cursor is not drawn while a disc falls
+			panel.repaintHover(model.getMousePoint().x, model.getMousePoint().x);
                         
                     }
                     //If it is black's turn.
                     else{
                         //Wait for the previous disc to stop falling. Run the
                         //AI alpha-beta pruning algorithm with depth of 4
-                        if(!model.getTimer().isRunning())
+                        if(!model.isDiscDropping())
                             run(model.getCurrentColor(), 4);
                     }
                     }
@@ -232,42 +318,79 @@ public class ConnectFourController implements ActionListener {
                 //Allows the red disc to move along with the cursor's x position
 		@Override
 		public void mouseMoved(MouseEvent e) {
+			int oldX = model.getMousePoint().x;
 			model.getMousePoint().x = e.getX();
-			view.repaint();
+			//The disc only follows the cursor on red's turn
+			if (!model.isDiscDropping() && !model.getWinSequence() && model.getCurrentColor() == model.RED)
+				panel.repaintHover(oldX, e.getX());
 		}
 		
 		@Override
 		public void mouseDragged(MouseEvent e) {}
 	}
 
-	@Override
-	/**
-	 * Called every time the timer fires. Updates the location of the dropping
-	 * disc and tells the view to redraw the screen. Stops the timer once
-	 * it has reached it's stopping y-coordinate and checks for Connect-Fours
-	 * otherwise it switches player turns.
-	 */
-	public void actionPerformed(ActionEvent e) {
-		//Increment Y-coordinate of falling disc.
-		this.model.getDroppingDisc().setY(this.model.getDroppingDisc().getY()+10);
-		this.view.repaint();
+	/*
+	Drops the disc at the speed of the disc in pixels per second, however often
+	the animation scheduler manages to draw a frame.
+	*/
+	class DropAnimation implements AnimationScheduler.Animation {
 		
-		//Check if dropping disc has reached bottom of game board.
-		if (this.model.getDroppingDisc().getY() >= this.model.getDroppingDisc().getStopY() + this.model.getDiscSize()) {
-			int row = this.model.getDroppingDisc().getStopY() / this.model.getTileSize();
-			int col = this.model.getClickPoint().x;
-			//Place a disc where the falling disc landed.
-			this.model.getGameBoard()[row][col] = this.model.getCurrentColor();
-			//Stop the timer.
-			this.model.getTimer().stop();
+		//Represents the exact y-coordinate of the disc, which moves less than a pixel on fast frames.
+		private double y = model.getDroppingDisc().getY();
+		
+		/**
+		 * Called every frame. Updates the location of the dropping
+		 * disc and tells the view to redraw its column. Lands the disc once
+		 * it has reached it's stopping y-coordinate.
+		 */
+		@Override
+		public boolean step(double seconds) {
+			//Increment Y-coordinate of falling disc.
+			this.y += model.getDroppingDisc().getYVelocity() * seconds;
+			model.getDroppingDisc().setY((int) this.y);
+			panel.repaintDroppingColumn();
 			
-			//Check if a Connect-Four is found. Else Switch turns.
-			if (checkWin() > 0)
-				this.model.setWinSequence(true);
-			else
-				switchColor();
+			//Check if dropping disc has reached bottom of game board.
+			if (model.getDroppingDisc().getY() >= model.getDroppingDisc().getStopY() + model.getDiscSize()) {
+				landDisc();
+				return true;
+			}
+			return false;
+		}
+		
+		@Override
+		public void finish() {
+			landDisc();
 		}
+	}
+	
+	/**
+	 * Starts dropping the disc that was setup by setupDroppingDisc().
+	 */
+	public void startDroppingDisc() {
+		this.model.setDiscDropping(true);
+		this.animations.start(new DropAnimation());
+	}
+	
+	/**
+	 * Places the dropping disc where it landed and checks for Connect-Fours,
+	 * otherwise it switches player turns.
+	 */
+	public void landDisc() {
+		int row = this.model.getDroppingDisc().getStopY() / this.model.getTileSize();
+		int col = this.model.getClickPoint().x;
+		this.model.getDroppingDisc().setY(this.model.getDroppingDisc().getStopY() + this.model.getDiscSize());
+		//Place a disc where the falling disc landed.
+		this.model.placeDisc(row, col);
+		//Stop the animation.
+		this.model.setDiscDropping(false);
+		this.panel.boardChanged();
 		
+		//Check if a Connect-Four is found. Else Switch turns.
+		if (this.model.checkWin() > 0)
+			this.model.setWinSequence(true);
+		else
+			switchColor();
 	}
 	
 	/**
@@ -276,11 +399,9 @@ public class ConnectFourController implements ActionListener {
 	public void drawWinSequence(Graphics g) {
 		//Draw Connect Four
 		for (int i = 0; i < this.model.getConnectFour().length; i++) {
-			g.drawImage (view.getWinFlashIcon().getImage(), 
+			g.drawImage (view.getWinFlashImage(), 
 					this.model.getMargin() + (this.model.getConnectFour()[i].y * this.model.getTileSize()),
 					2 * this.model.getMargin() + this.model.getConnectFour()[i].x * this.model.getTileSize(), 
-					this.model.getTileSize(), 
-					this.model.getTileSize(), 
 					null);
 		}		
 		drawWinText(g);
@@ -321,8 +442,6 @@ public class ConnectFourController implements ActionListener {
 	 * Sets the location where it should be dropped and where it should stop dropping.
 	 */
 	public void setupDroppingDisc() {
-		//Setup the timer.
-		this.model.setTimer(new Timer(this.model.getDroppingDisc().getYVelocity(), this));
 		//Set the X-Coordinate of disc as the clicked column
 		this.model.getDroppingDisc().setX(this.model.getClickPoint().x * this.model.getTileSize());
 		//Set Y-Coordinate as top of screen.
@@ -333,8 +452,6 @@ public class ConnectFourController implements ActionListener {
 		for (int i = this.model.getRows() - 1; i >= 0; i--) {
 			if (this.model.getGameBoard()[i][this.model.getClickPoint().x] == this.model.EMPTY) {
 				this.model.getDroppingDisc().setStopY(i * this.model.getTileSize());
-                                System.out.println("Clicked: " + this.model.getClickPoint().x);
-                                System.out.println("Rows:" + this.model.getRows());
 				break;
 			}
 		}
@@ -348,8 +465,8 @@ public class ConnectFourController implements ActionListener {
             model.getClickPoint().x = (int) Math.floor(x);
             //Drop the disc like the human player would
             setupDroppingDisc();        
-            //Begin the timer.
-            model.getTimer().start();
+            //Begin the animation.
+            startDroppingDisc();
 	}
 	
 	/**
@@ -364,93 +481,38 @@ public class ConnectFourController implements ActionListener {
 	}
 	
 	/**
-	 * Checks for Connect-Fours. Accomplishes this by comparing every possible
-	 * starting location for a Connect-Four with its succeeding discs.
-	 * @return The color of the connect four or 0 if none was found.
+	 * Restarts the game by setting all the tiles in the game board to empty and 
+	 * sets the current turn to red by default.
 	 */
-	public int checkWin() {
-		int start = 0;
-		//Check horizontal win
-		for (int row = this.model.getRows() - 1; row >= 0; row--) {
-			for (int col = 0; col < this.model.getCols() - 3; col++) {
-				start = this.model.getGameBoard()[row][col];
-				if (start != this.model.EMPTY 
-						&& start == this.model.getGameBoard()[row][col + 1]
-						&& start == this.model.getGameBoard()[row][col + 2]
-						&& start == this.model.getGameBoard()[row][col + 3]) {
-					for (int i = 0; i < 4; i++) {
-						this.model.getConnectFour()[i] = new Point(row, col + i);
-					}
-					return start;
-				}
-			}
-		}
-		
-		//Check vertical win
-		for (int row = this.model.getRows() - 1; row >= 3; row--) {
-			for (int col = 0; col < this.model.getCols(); col++) {
-				start = this.model.getGameBoard()[row][col];
-				if (start != this.model.EMPTY 
-						&& start == this.model.getGameBoard()[row - 1][col]
-						&& start == this.model.getGameBoard()[row - 2][col]
-						&& start == this.model.getGameBoard()[row - 3][col]) {
-					for (int i = 0; i < 4; i++) {
-						this.model.getConnectFour()[i] = new Point(row - i, col);
-					}
-					return start;
-				}
-			}
-		}
-		
-		//Check diagonal win from bottom left to top right
-		for (int row = this.model.getRows() - 1; row >= 3; row--) {
-			for (int col = 0; col < this.model.getCols() - 3; col++) {
-				start = this.model.getGameBoard()[row][col];
-				if (start != this.model.EMPTY 
-						&& start == this.model.getGameBoard()[row - 1][col + 1]
-						&& start == this.model.getGameBoard()[row - 2][col + 2]
-						&& start == this.model.getGameBoard()[row - 3][col + 3]) {
-					for (int i = 0; i < 4; i++) {
-						this.model.getConnectFour()[i] = new Point(row - i, col + i);
-					}
-					return start;
-				}
-			}
-		}
-		
-		//Check diagonal win from bottom right to top left
-		for (int row = this.model.getRows() - 1; row >= 3; row--) {
-			for (int col = this.model.getCols() - 1; col >= 3; col--) {
-				start = this.model.getGameBoard()[row][col];
-				if (start != this.model.EMPTY 
-						&& start == this.model.getGameBoard()[row-1][col-1]
-						&& start == this.model.getGameBoard()[row-2][col-2]
-						&& start == this.model.getGameBoard()[row-3][col-3]) {
-					for (int i = 0; i < 4; i++) {
-						this.model.getConnectFour()[i] = new Point(row - i, col - i);
-					}
-					return start;
-				}
-			}
-		}
-		
-		return 0;
+	public void restart() {
+		animations.cancelAll();
+		model.setDiscDropping(false);
+		engine.newGame();
+		model.clear();
+		panel.boardChanged();
+	}
+
+	/**
+	 * Takes back the last disc placed, by either player, and gives the turn back
+	 * to its color. Nothing happens while a disc is dropping.
+	 */
+	public void undo() {
+		if (this.model.isDiscDropping()) return;
+		if (this.model.undo())
+			this.panel.boardChanged();
 	}
 	
 	/**
-	 * Restarts the game by setting all the tiles in the game board to empty and 
-	 * sets the current turn to red by default.
+	 * Places the last disc taken back again, showing the win sequence if it
+	 * made a Connect-Four. Nothing happens while a disc is dropping.
 	 */
-	public void restart() {
-		for (int i = 0; i < model.getRows(); i++) {
-			for (int j = 0; j < model.getCols(); j++) {
-				model.getGameBoard()[i][j] = model.EMPTY;
-			}
+	public void redo() {
+		if (this.model.isDiscDropping()) return;
+		if (this.model.redo()) {
+			if (this.model.checkWin() > 0)
+				this.model.setWinSequence(true);
+			this.panel.boardChanged();
 		}
-			
-		model.setCurrentColor(model.RED);
-		model.setWinSequence(false);
-		view.repaint();
 	}
 
     //This turn's color
@@ -463,10 +525,15 @@ public class ConnectFourController implements ActionListener {
     //***********************Alpha-Beta Pruning Algorithm********************************
     //***********************************************************************************
     
-    //Global varibale that keeps track of the AI's initial best move
-    int AIbestmove;
-    //The maximum depth the algorithm will to through
-    double maxPly;
+    //The AI that chooses the moves. It is kept for the whole game so every move
+    //starts from what the previous searches learned, and is told on restart
+    private MoveEngine engine = new AlphaBetaEngine();
+    
+    //Plugs in the AI that chooses the moves
+    public void setEngine(MoveEngine engine) {
+        this.engine = engine;
+        engine.newGame();
+    }
     
     //Starts the algorithm off
     public void run(int player, double maxPly){
@@ -474,247 +541,13 @@ public class ConnectFourController implements ActionListener {
         if (maxPly < 1) {
             throw new IllegalArgumentException("Maximum depth must be greater than 0.");
         }        
-        this.maxPly = maxPly;
-        
-        //Do not want to actually make a move with the model, so make a copy of the model
-        ConnectFourModel deepCopy = new ConnectFourModel();
-        for(int x=0; x<this.model.getRows(); x++){
-                for(int y=0; y<this.model.getCols(); y++){
-                    deepCopy.getGameBoard()[x][y] = this.model.getGameBoard()[x][y];
-                }
-            }        
-        deepCopy.setCurrentColor(this.model.getCurrentColor());
         
-        //Starts the algorithm off with a negative Alpha and positive Beta
-        alphaBetaPruning(player, deepCopy, Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY, 0);        
+        //The engine only reads the model, so the board is not changed
+        int bestMove = engine.chooseMove(this.model, player, SearchLimits.depth((int) maxPly));
+        if (bestMove < 0) return;
         //Once algorithm completed, make the AI move onto the main board
-        setupDroppingDisc2(AIbestmove);
-        System.out.println("THE MOVE " + AIbestmove);        
-        
-    }
-    
-    //Where the algorithm intitiates according to the current depth. This is designed
-    //to be recursive as each depth calls upon this method until finally the maximum
-    //depth is reached and the final moves are made. The initial move is kept track
-    //of via the global varibale 'AIbestmove'
-    public int alphaBetaPruning (int player, ConnectFourModel board, double alpha, double beta, int currentPly) {
-        
-        //checkWin() == 0 means game has been won  OR every spot is full
-        if (currentPly++ == maxPly || board.checkWin() != 0 || board.boardIsFull()) {
-            //System.out.println("PRUNED with: " + score(player, board));      
-            return score(player, board, currentPly);
-        }
-
-        if (board.getCurrentColor() == player) {
-            return getMax(player, board, alpha, beta, currentPly);
-        } else {
-            return getMin(player, board, alpha, beta, currentPly);
-        }
-    }
-
-    //Plays the move with the highest score.
-    //If the current score while searching through the possible moves is higher than
-    //the current alpha,that score becomes the current alpha
-    public int getMax (int player, ConnectFourModel board, double alpha, double beta, int currentPly) {
-        
-        //correponds to the column of the best move
-        int indexOfBestMove = -1;
-        //correpodns to the row where the move is to be placed
-        int rowOfBestMove = -1;
-        
-        //The only possible moves are the slots in each of the columns
-        for(int i=0; i<board.getCols(); i++){
-            
-            //If column is full, then no need to look for possible moves as no 
-            //discs can be inserted
-            if(!board.columnIsFull(i)){
-                
-                //Create a copy of the board...
-                ConnectFourModel modifiedBoard = new ConnectFourModel();                
-                //and copy the current game board to the copy...
-            for(int x=0; x<modifiedBoard.getRows(); x++){
-                for(int y=0; y<modifiedBoard.getCols(); y++){
-                    modifiedBoard.getGameBoard()[x][y] = board.getGameBoard()[x][y];
-                }
-            }
-            //copy the color over as well
-            modifiedBoard.setCurrentColor(board.getCurrentColor());
-            
-            //Starts j from the bottom
-            for (int j = modifiedBoard.getRows() - 1; j >= 0; j--){
-                //Once an empty slot is found (from the bottom to top) insert the disc
-                if (modifiedBoard.getGameBoard()[j][i] == modifiedBoard.EMPTY) {
-                    
-                                modifiedBoard.getGameBoard()[j][i] = modifiedBoard.getCurrentColor();
-                                modifiedBoard.switchColor();
-                                //Get the score of the next depth level in the series of moves
-                                int score = alphaBetaPruning(player, modifiedBoard, alpha, beta, currentPly);
-                                
-                                //Update the best score, alpha, and track of best move
-                                if (score > alpha) {
-                                      alpha = score;
-                                      indexOfBestMove = i;
-                                      rowOfBestMove = j;
-                                 }
-				break;  //Breaks when we find an empty one
-			}
-            }
-            
-                // Pruning.
-                if (alpha >= beta) {
-                    System.out.println("BROKEN MAX at " + i + " at ply " + currentPly);
-                    break;
-                }
-            
-            }
-            
-        }
-
-        //If indexOfBestMove is not -1, then at least one viable move was found
-        if (indexOfBestMove != -1) {
-            //Set the best move's positon to that of the board's current color...
-            board.getGameBoard()[rowOfBestMove][indexOfBestMove] = board.getCurrentColor();
-            //then switch the color as it is now the other player's turn
-            board.switchColor();
-            
-            System.out.println("Index of Best Move (MAX) " + indexOfBestMove 
-                + " currentPly: " + currentPly + " score(alpha): " + alpha);
-            
-            //If the algorithm comes back to the first instance, that is the initial
-            //move to make. Store the indexOfBestMove to the AIbestmove so that move
-            //can be made
-            if(currentPly==1){
-                AIbestmove = indexOfBestMove;
-                
-                //This just prints the state of the board so that it can be compared
-                //to what is being displayed, just in case a disc becomes erroneously 
-                //switched
-                for(int j=0; j<board.getRows(); j++){
-                    for(int i=0; i<board.getCols(); i++){
-                        System.out.print(" " + board.getGameBoard()[j][i]);
-                    }
-                    System.out.println("");
-                }
-                
-            }
-                
-        }
-        
-        return (int)alpha;
-    }
-
-    //Plays the move with the lowest score.
-    //If the current score while searching through the possible moves is lower
-    //than the current beta, that score becomes the current beta
-    public int getMin (int player, ConnectFourModel board, double alpha, double beta, int currentPly) {
-        
-        //correponds to the column of the best move
-        int indexOfBestMove = -1;
-        //correpodns to the row where the move is to be placed
-        int rowOfBestMove = -1;
-        
-        //The only possible moves are the slots in each of the columns
-        for(int i=0; i<board.getCols(); i++){
-            
-            //If column is full, then no need to look for possible moves as no 
-            //discs can be inserted
-            if(!board.columnIsFull(i)){
-               
-                //Create a copy of the board...
-                ConnectFourModel modifiedBoard = new ConnectFourModel();                
-                //and copy the current game board to the copy...
-            for(int x=0; x<modifiedBoard.getRows(); x++){
-                for(int y=0; y<modifiedBoard.getCols(); y++){
-                    modifiedBoard.getGameBoard()[x][y] = board.getGameBoard()[x][y];
-                }
-            }
-            //copy the color over as well
-            modifiedBoard.setCurrentColor(board.getCurrentColor());
-            
-            //Starts j from the bottom
-            for (int j = modifiedBoard.getRows() - 1; j >= 0; j--){
-                //Once an empty slot is found (from the bottom to top) insert the disc
-                if (modifiedBoard.getGameBoard()[j][i] == modifiedBoard.EMPTY) {
-				
-                                //Makes move, then switches color
-                                modifiedBoard.getGameBoard()[j][i] = modifiedBoard.getCurrentColor();
-                                modifiedBoard.switchColor();
-                                //Get the score of the next depth level in the series of moves
-                                int score = alphaBetaPruning(player, modifiedBoard, alpha, beta, currentPly);
-                                
-                                //Update the best score, alpha, and track of best move
-                                if (score < beta) {
-                                    beta = score;
-                                    indexOfBestMove = i;
-                                    rowOfBestMove = j;
-                                }
-				break;  //Breaks when we find an empty one
-			} 
-            }
-            
-                                // Pruning.
-                                if (alpha >= beta) {
-                                    break;
-                                }
-            
-           }
-            
-        }
-
-        //If indexOfBestMove is not -1, then at least one viable move was found
-        if (indexOfBestMove != -1) {
-            //Set the best move's positon to that of the board's current color...
-            board.getGameBoard()[rowOfBestMove][indexOfBestMove] = board.getCurrentColor();
-            //then switch the color as it is now the other player's turn
-            board.switchColor();
-        }
-        return (int)beta;
-    }
-
-    //The score to be returned. Wins (connect 4) score the most points, followed
-    //by rows of 3, followed by rows of 2. There is an intervention if the human
-    //can win in the next following move. The score is set to -200 in that case
-    //so the AI doesn't look too far ahead with the possibility that the player can
-    //instantly win
-    public int score (int player, ConnectFourModel Board, int currentPly) {
-        
-        //Initialize the score to be returned
-        int theScore = 0;
-        
-        //If the board shows red wins, add 11 to the red score
-        int redWin = 0;
-        if(Board.checkWin()==Board.RED)
-            redWin = 11;
-        
-        //If the board shows black wins, add 11 to the black score
-        int blackWin =0;
-        if(Board.checkWin()==Board.BLACK)
-            blackWin = 11;
-        
-        //Add the winning score (of 0 or 11) to the number of discs that have 3 aligned and
-        //multiply it by 3 and the number of discs that have 2 aligned
-        int redScore = redWin + Board.checkThree(Board.RED)*3 + Board.checkTwo(Board.RED);
-        int blackScore = blackWin + Board.checkThree(Board.RED)*3 + Board.checkTwo(Board.BLACK);
-        
-        //Decrement the redScore and Increment the blackScore to total score if the current
-        //player is the Black piece. Reverse if the current player is the Red piece
-        if(player == Board.BLACK){
-            
-            //If the opponenet (the human player) wins, that takes immediate priority
-            //or else AI will think too far ahead on a future win when the human can
-            //immediately end the game
-            if(Board.checkWin()==Board.RED)
-                return -200;
-            
-            theScore -= redScore;
-            theScore += blackScore;
-        }
-        else{
-            theScore += redScore;
-            theScore -= blackScore;
-        }
+        setupDroppingDisc2(bestMove);
         
-        return theScore;        
     }
         
 }
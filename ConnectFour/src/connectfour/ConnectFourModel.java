@@ -1,7 +1,6 @@
 package connectfour;
 
 import java.awt.Point;
-import javax.swing.Timer;
 
 /*The model of the board that contains the 2d array of the board and its discs.
 1 is red, 2 is black, 0 is empty. Has methods to tell who won, how many 3 in a 
@@ -24,13 +23,42 @@ public class ConnectFourModel {
 	private Point mousePoint;
 	
 	//Represents the location of 4 discs which make up the Connect-Four.
+	//Only worked out when it is asked for.
 	private Point connectFour[];
 	
+	//Represents whether connectFour holds the line of the current winner.
+	private boolean connectFourFound;
+	
+	//Represents the row and column of the disc placed last, or -1.
+	private int lastRow;
+	private int lastCol;
+	
+	//Represents the color that made a Connect-Four, or EMPTY.
+	private int winner;
+	
+	//Represents the number of discs in the game board.
+	private int discCount;
+	
+	//Represents every disc placed, in order, as its color, row and column (see move()).
+	//The first discCount are on the board; the rest were taken back and can be redone.
+	private int history[];
+	
+	//Represents the number of moves in history, on the board or taken back.
+	private int historyLength;
+	
+	//Represents the move that made the Connect-Four, counting from 1, or 0.
+	private int winningMove;
+	
+	//Represents the discs of each color in the layout of BitBoard, kept up to date
+	//as discs are placed and taken back so that a BitBoard is made without a scan.
+	private long redDiscs;
+	private long blackDiscs;
+	
 	//Represents whether or not to begin drawing the win Sequence.
 	private boolean winSequence;
 	
-	//Represents timer for the dropping disc.
-	private Timer timer;
+	//Represents whether a disc is dropping into the game board.
+	private boolean discDropping;
 	
 	//Represents the size of the disc.
 	private final int DISC_SIZE = 75;
@@ -59,8 +87,8 @@ public class ConnectFourModel {
 	//Represents the # of columns in the game board.
 	private final int COLS = 7;
 	
-	//Represents the speed in which the timer fires for the dropping disc.
-	private final int Y_DISC_VELOCITY = 5;
+	//Represents the speed of the dropping disc in pixels per second.
+	private final int Y_DISC_VELOCITY = 2000;
 	
 	//Represents the color of the current turn.
 	private int currentColor = RED;
@@ -81,7 +109,15 @@ public class ConnectFourModel {
 		
 		this.droppingDisc = new Disc(0, 0, 0, Y_DISC_VELOCITY);
 		this.winSequence = false;
-		this.timer = new Timer(0, null);
+		this.discDropping = false;
+		this.connectFourFound = false;
+		this.lastRow = -1;
+		this.lastCol = -1;
+		this.winner = EMPTY;
+		this.discCount = 0;
+		this.history = new int[ROWS * COLS];
+		this.historyLength = 0;
+		this.winningMove = 0;
 		this.clickPoint = new Point(0,0);
 		this.mousePoint = new Point(0,0);
 	}
@@ -125,12 +161,12 @@ public class ConnectFourModel {
 		return this.droppingDisc;
 	}
 	
-	public Timer getTimer(){
-		return this.timer;
+	public boolean isDiscDropping() {
+		return this.discDropping;
 	}
 	
-	public void setTimer(Timer timer) {
-		this.timer = timer;
+	public void setDiscDropping(boolean discDropping) {
+		this.discDropping = discDropping;
 	}
 	
 	public Point getClickPoint() {
@@ -149,78 +185,183 @@ public class ConnectFourModel {
 		this.winSequence = winSequence;
 	}
         
+	//Returns the 4 discs of the Connect-Four as Points of (row, column),
+	//working them out from the last disc placed the first time they are asked for.
 	public Point[] getConnectFour() {
+		if (this.winner != EMPTY && !this.connectFourFound) {
+			this.connectFourFound = WinDetector.findLine(this.gameBoard, this.lastRow, this.lastCol, this.connectFour);
+		}
 		return this.connectFour;
 	}
-        
-        //Checks if there is a Connect 4 win
-        public int checkWin() {
-		int start = 0;
-		//Check horizontal win
-		for (int row = this.getRows() - 1; row >= 0; row--) {
-			for (int col = 0; col < this.getCols() - 3; col++) {
-				start = this.getGameBoard()[row][col];
-				if (start != this.EMPTY 
-						&& start == this.getGameBoard()[row][col + 1]
-						&& start == this.getGameBoard()[row][col + 2]
-						&& start == this.getGameBoard()[row][col + 3]) {
-					for (int i = 0; i < 4; i++) {
-						this.getConnectFour()[i] = new Point(row, col + i);
-					}
-					return start;
-				}
-			}
+	
+	public int getLastRow() {
+		return this.lastRow;
+	}
+	
+	public int getLastCol() {
+		return this.lastCol;
+	}
+	
+	public int getDiscCount() {
+		return this.discCount;
+	}
+	
+	//Returns the discs of 'color' as the bits of BitBoard's layout.
+	public long getDiscBits(int color) {
+		return color == RED ? this.redDiscs : this.blackDiscs;
+	}
+	
+	//Places a disc of the current color at (row, col) and checks if it made a
+	//Connect-Four. Discs have to be placed with this method (or dropDisc) for
+	//checkWin(), boardIsFull() and undo() to know about them.
+	//A disc other than the next one that can be redone drops the moves that were taken back.
+	public void placeDisc(int row, int col) {
+		int move = move(this.currentColor, row, col);
+		if (this.discCount == this.historyLength || this.history[this.discCount] != move) {
+			this.history[this.discCount] = move;
+			this.historyLength = this.discCount + 1;
 		}
-		
-		//Check vertical win
-		for (int row = this.getRows() - 1; row >= 3; row--) {
-			for (int col = 0; col < this.getCols(); col++) {
-				start = this.getGameBoard()[row][col];
-				if (start != this.EMPTY 
-						&& start == this.getGameBoard()[row - 1][col]
-						&& start == this.getGameBoard()[row - 2][col]
-						&& start == this.getGameBoard()[row - 3][col]) {
-					for (int i = 0; i < 4; i++) {
-						this.getConnectFour()[i] = new Point(row - i, col);
-					}
-					return start;
-				}
-			}
+		this.gameBoard[row][col] = this.currentColor;
+		if (this.currentColor == RED) {
+			this.redDiscs |= bit(row, col);
+		} else {
+			this.blackDiscs |= bit(row, col);
 		}
-		
-		//Check diagonal win from bottom left to top right
-		for (int row = this.getRows() - 1; row >= 3; row--) {
-			for (int col = 0; col < this.getCols() - 3; col++) {
-				start = this.getGameBoard()[row][col];
-				if (start != this.EMPTY 
-						&& start == this.getGameBoard()[row - 1][col + 1]
-						&& start == this.getGameBoard()[row - 2][col + 2]
-						&& start == this.getGameBoard()[row - 3][col + 3]) {
-					for (int i = 0; i < 4; i++) {
-						this.getConnectFour()[i] = new Point(row - i, col + i);
-					}
-					return start;
-				}
+		this.lastRow = row;
+		this.lastCol = col;
+		this.discCount++;
+		if (this.winner == EMPTY && WinDetector.isWin(this.gameBoard, row, col)) {
+			this.winner = this.currentColor;
+			this.winningMove = this.discCount;
+			this.connectFourFound = false;
+		}
+	}
+	
+	//Takes back the last disc placed and gives the turn back to its color, undoing
+	//the Connect-Four if it made one. Returns false if the board is empty.
+	public boolean undo() {
+		if (this.discCount == 0) {
+			return false;
+		}
+		int move = this.history[--this.discCount];
+		int row = (move >> 8) & 0xff;
+		int col = move & 0xff;
+		this.gameBoard[row][col] = EMPTY;
+		this.redDiscs &= ~bit(row, col);
+		this.blackDiscs &= ~bit(row, col);
+		this.currentColor = move >> 16;
+		if (this.winningMove > this.discCount) {
+			this.winner = EMPTY;
+			this.winningMove = 0;
+			this.winSequence = false;
+			this.connectFourFound = false;
+		}
+		if (this.discCount == 0) {
+			this.lastRow = -1;
+			this.lastCol = -1;
+		} else {
+			this.lastRow = (this.history[this.discCount - 1] >> 8) & 0xff;
+			this.lastCol = this.history[this.discCount - 1] & 0xff;
+		}
+		return true;
+	}
+	
+	//Places the last disc taken back again and switches the turn, as dropDisc() does.
+	//Returns false if there is none.
+	public boolean redo() {
+		if (this.discCount == this.historyLength) {
+			return false;
+		}
+		int move = this.history[this.discCount];
+		this.currentColor = move >> 16;
+		placeDisc((move >> 8) & 0xff, move & 0xff);
+		switchColor();
+		return true;
+	}
+	
+	//Takes back or redoes moves until 'ply' discs are on the board.
+	public void goToPly(int ply) {
+		if (ply < 0 || ply > this.historyLength) {
+			throw new IllegalArgumentException("No ply " + ply + " in a game of " + this.historyLength + " moves");
+		}
+		while (this.discCount > ply) {
+			undo();
+		}
+		while (this.discCount < ply) {
+			redo();
+		}
+	}
+	
+	//The number of moves that can be gone to: those on the board and those taken back.
+	public int getHistoryLength() {
+		return this.historyLength;
+	}
+	
+	//The column of move 'ply', counting from 0.
+	public int getHistoryColumn(int ply) {
+		if (ply < 0 || ply >= this.historyLength) {
+			throw new IllegalArgumentException("No ply " + ply + " in a game of " + this.historyLength + " moves");
+		}
+		return this.history[ply] & 0xff;
+	}
+	
+	private static int move(int color, int row, int col) {
+		return color << 16 | row << 8 | col;
+	}
+	
+	//The bit of (row, col) in BitBoard's layout, where rows count from the bottom.
+	private long bit(int row, int col) {
+		return 1L << (col * (ROWS + 1) + (ROWS - 1 - row));
+	}
+	
+	//Drops a disc of the current color into 'col', then switches the turn.
+	//Returns the row the disc landed in, or -1 if the column is full.
+	public int dropDisc(int col) {
+		for (int row = this.getRows() - 1; row >= 0; row--) {
+			if (this.gameBoard[row][col] == EMPTY) {
+				placeDisc(row, col);
+				switchColor();
+				return row;
 			}
 		}
-		
-		//Check diagonal win from bottom right to top left
-		for (int row = this.getRows() - 1; row >= 3; row--) {
-			for (int col = this.getCols() - 1; col >= 3; col--) {
-				start = this.getGameBoard()[row][col];
-				if (start != this.EMPTY 
-						&& start == this.getGameBoard()[row-1][col-1]
-						&& start == this.getGameBoard()[row-2][col-2]
-						&& start == this.getGameBoard()[row-3][col-3]) {
-					for (int i = 0; i < 4; i++) {
-						this.getConnectFour()[i] = new Point(row - i, col - i);
-					}
-					return start;
-				}
+		return -1;
+	}
+	
+	//Empties the game board and gives the turn to red. Only the tiles with discs
+	//are emptied, and the moves cannot be redone afterwards.
+	public void clear() {
+		goToPly(0);
+		this.historyLength = 0;
+		this.currentColor = RED;
+		this.winSequence = false;
+	}
+	
+	//Makes a copy of the game board, the current turn, the winner and the moves.
+	public ConnectFourModel copy() {
+		ConnectFourModel copy = new ConnectFourModel();
+		for (int i = 0; i < ROWS; i++) {
+			for (int j = 0; j < COLS; j++) {
+				copy.gameBoard[i][j] = this.gameBoard[i][j];
 			}
 		}
-		
-		return 0;
+		copy.currentColor = this.currentColor;
+		copy.lastRow = this.lastRow;
+		copy.lastCol = this.lastCol;
+		copy.winner = this.winner;
+		copy.discCount = this.discCount;
+		System.arraycopy(this.history, 0, copy.history, 0, this.historyLength);
+		copy.historyLength = this.historyLength;
+		copy.winningMove = this.winningMove;
+		copy.redDiscs = this.redDiscs;
+		copy.blackDiscs = this.blackDiscs;
+		return copy;
+	}
+        
+        //Checks if there is a Connect 4 win. Only the last disc placed can make
+        //one, so this is worked out by placeDisc() and does not scan the board.
+        //Returns the color of the connect four or 0 if none was found.
+        public int checkWin() {
+		return this.winner;
 	}
         
         
@@ -264,7 +405,6 @@ public class ConnectFourModel {
 				}
 			}
 		}
-		System.out.println("THE IT IS " + start);
 		//Check diagonal win from bottom right to top left
 		for (int row = this.getRows() - 1; row >= 3; row--) {
 			for (int col = this.getCols() - 1; col >= 3; col--) {
@@ -317,7 +457,6 @@ public class ConnectFourModel {
 				}
 			}
 		}
-		System.out.println("THE IT IS " + start);
 		//Check diagonal win from bottom right to top left
 		for (int row = this.getRows() - 1; row >= 3; row--) {
 			for (int col = this.getCols() - 1; col >= 3; col--) {
@@ -341,16 +480,7 @@ public class ConnectFourModel {
 	}
         
         public boolean boardIsFull(){
-            
-            for(int x=0; x<getRows(); x++){
-                for(int y=0; y<getCols(); y++){
-                    if(getGameBoard()[x][y] == EMPTY)
-                        return false;                    
-                }
-            }
-            
-            return true;           
-            
+            return this.discCount == ROWS * COLS;
         }
         
         //If 0 (top) row is not empty, it is safe to assume that column is full
@@ -4,31 +4,23 @@ import javax.swing.*;
 
 import java.awt.*;
 import java.awt.event.ActionListener;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
 
 /*
-Loads the images of the discs and tiles of the board. Initializes the controller
-with model and view variables
+Holds the images of the discs and tiles of the board, which SpriteSet loads from
+the classpath. Initializes the controller with model and view variables
 */
 public class ConnectFourView extends JFrame{
 	
-	//Represents the Red Disc.
-	private ImageIcon redDiscIcon;
-	
-	//Represents the Black Disc.
-	private ImageIcon blackDiscIcon;
-	
-	//Represents a tile of the game board. 
-	private ImageIcon defaultIcon;
-	
-	//Represents the current disc which can be red or black. 
-	private ImageIcon currIcon;
-	
-	//Represents the image drawn over the winning Connect-Four
-	private ImageIcon winFlashTileIcon;
-	
 	//Represents image of the restart button.
 	private ImageIcon restartIcon;
 	
+	//Represents the disc and tile images scaled to the size of a tile. They are scaled
+	//once so that drawing them does not scale them again on every repaint.
+	private SpriteSet sprites;
+	
 	//Represents the restart button which the user can click to reset the game.
 	private JButton restartButton;
 	
@@ -36,15 +28,17 @@ public class ConnectFourView extends JFrame{
 	private Font font;
 	
 	//Initializes a new instance of COnnectFourView with default values.
-        //Loads the images from the 'images' folder
+        //The images are loaded by scaleImages()
 	public ConnectFourView() {
-		this.redDiscIcon = new ImageIcon("images/RedDisc.png");
-		this.blackDiscIcon = new ImageIcon("images/BlackDisc.png");
-		this.defaultIcon = new ImageIcon("images/DefaultGameBoardPiece.png");
-		this.winFlashTileIcon = new ImageIcon("images/WinFlashTile.png");
-		this.restartIcon = new ImageIcon("images/RestartButton.png");	
-                    
-		this.restartButton = new JButton(this.restartIcon);
+		this.restartButton = new JButton();
+	}
+
+	//Scales the disc and tile images to the size of a tile, or waits for
+	//SpriteSet.preload() to finish doing so, and puts the image on the restart button.
+	public void scaleImages(int tileSize) {
+		this.sprites = SpriteSet.forTileSize(tileSize);
+		this.restartIcon = new ImageIcon(this.sprites.getRestartButton());
+		this.restartButton.setIcon(this.restartIcon);
 	}
 
 	public void addRestartButtonListener(ActionListener l) {
@@ -63,28 +57,20 @@ public class ConnectFourView extends JFrame{
 		return this.restartIcon;
 	}
 	
-	public ImageIcon getRedDiscIcon() {
-		return this.redDiscIcon;
-	}
-	
-	public ImageIcon getBlackDiscIcon() {
-		return this.blackDiscIcon;
-	}
-	
-	public ImageIcon getDefaultIcon() {
-		return this.defaultIcon;
+	public BufferedImage getRedDiscImage() {
+		return this.sprites.getRedDisc();
 	}
 	
-	public ImageIcon getCurrIcon() {
-		return this.currIcon;
+	public BufferedImage getBlackDiscImage() {
+		return this.sprites.getBlackDisc();
 	}
 	
-	public void setCurrIcon(ImageIcon icon){
-		this.currIcon = icon;
+	public BufferedImage getDefaultImage() {
+		return this.sprites.getTile();
 	}
 	
-	public ImageIcon getWinFlashIcon() {
-		return this.winFlashTileIcon;
+	public BufferedImage getWinFlashImage() {
+		return this.sprites.getWinFlashTile();
 	}
 	
 	public Font getFont() {
@@ -95,10 +81,25 @@ public class ConnectFourView extends JFrame{
 		this.font = font;
 	}
         
-        //Starts the game from here by initializing the controller with the model and view
+        //Starts the game from here by initializing the controller with the model and view.
+        //Run with -Dconnectfour.engine=mcts to play against Monte Carlo Tree Search,
+        //or -Dconnectfour.tablebase=<file> to let the AI use an endgame tablebase
 	public static void main (String args[]) {
 		ConnectFourModel model = new ConnectFourModel();
+		//Decode the images while the window is being made
+		SpriteSet.preload(model.getTileSize());
 		ConnectFourView view = new ConnectFourView();
 		ConnectFourController controller = new ConnectFourController(view, model);
+		if ("mcts".equals(System.getProperty("connectfour.engine"))) {
+			controller.setEngine(new MctsEngine());
+		} else if (System.getProperty("connectfour.tablebase") != null) {
+			AlphaBetaEngine engine = new AlphaBetaEngine();
+			try {
+				engine.setTablebase(new Tablebase(new File(System.getProperty("connectfour.tablebase"))));
+			} catch (IOException e) {
+				System.err.println("Could not open the tablebase: " + e.getMessage());
+			}
+			controller.setEngine(engine);
+		}
 	}
 }
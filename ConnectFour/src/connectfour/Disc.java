@@ -20,7 +20,7 @@ public class Disc {
 	private int stopY;
 	
 	/**
-	 * Represents the velocity of the ball or speed in which the timer fires.
+	 * Represents the velocity of the disc in pixels per second.
 	 */
 	private int yVelocity;
 	
@@ -0,0 +1,735 @@
+package connectfour;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.concurrent.TimeUnit;
+
+/*
+Solves a position on several worker JVMs (SolveWorker), on this machine or on
+others, for solves too big for one process.
+
+The game tree is split 'split' plies below the root. Every position at that ply
+is a job, sent once however many ways it can be reached (mirror images count as
+the same). Positions above it that are won at once or full are scored on the
+spot. Workers connect to the coordinator and are sent jobs up to one more than
+they have threads, so they never wait for the next one. When there are no jobs
+left to send and a worker is idle, a job another worker has not started yet is
+taken back from it and given to the idle one (work stealing).
+
+Results are backed up the split tree as they arrive. As soon as a position is
+settled (a move wins as fast as it possibly could there, or for a weak solve a
+move wins at all), the jobs under it that nothing else needs are cancelled, on
+the workers too. If a worker goes away its jobs are sent to the others.
+
+Usage: java connectfour.DistributedSolver [options] <moves>
+   <moves>          the columns played from the empty board, such as 3323 (0 to 6)
+   --port P         the port workers connect to (default 7070)
+   --spawn N        starts N workers on this machine (default 0: wait for workers)
+   --threads T      threads of each spawned worker (default 1)
+   --split K        the ply the tree is split at (default 2)
+   --weak           only whether the position is won, drawn or lost
+Workers elsewhere are started with: java connectfour.SolveWorker <host:port> [threads]
+*/
+public class DistributedSolver {
+
+	//Represents the messages. A worker sends HELLO once, then STARTED and RESULT
+	//for its jobs; the coordinator sends JOB, CANCEL, STEAL and SHUTDOWN.
+	static final byte HELLO = 1;
+	static final byte JOB = 2;
+	static final byte CANCEL = 3;
+	static final byte STEAL = 4;
+	static final byte SHUTDOWN = 5;
+	static final byte STARTED = 6;
+	static final byte RESULT = 7;
+
+	//Represents how a job ended, sent with RESULT.
+	static final byte SOLVED = 0;
+	static final byte CANCELLED = 1;
+	static final byte RETURNED = 2;
+
+	//Represents how long close() waits for spawned workers that have not connected yet.
+	private static final long CONNECT_WAIT_MILLIS = 10000;
+
+	/*
+	A position of the split tree. Positions reached in several ways are one node
+	with several parents.
+	*/
+	private static final class Node {
+		final BitBoard board;
+		final ArrayList<Node> parents = new ArrayList<Node>();
+		Node children[];
+
+		//Represents the children that have no score yet.
+		int pending;
+
+		//Represents the best score found so far for the player to move.
+		int best = Integer.MIN_VALUE;
+
+		//Represents the highest score the player to move could get.
+		int upperBound;
+
+		//Represents whether the score is known.
+		boolean settled;
+
+		//Represents the job that solves the position, or null above the split ply.
+		Job job;
+
+		//Represents the last settle pass the node was found needed in (see isNeeded()),
+		//and whether it has been found not needed, which it then stays.
+		int neededPass;
+		boolean unneeded;
+
+		//Represents whether the jobs under the node have been cancelled.
+		boolean dropped;
+
+		Node(BitBoard board) {
+			this.board = board;
+		}
+	}
+
+	/*
+	A position sent to a worker to be solved.
+	*/
+	private static final class Job {
+		final int id;
+		final Node node;
+
+		//Represents the worker the job was sent to, or null while it waits to be sent.
+		Worker worker;
+
+		//Represents whether the worker has started it, so it cannot be taken back.
+		boolean started;
+
+		//Represents whether a cancel or steal has been sent and not answered yet,
+		//and whether it was a steal.
+		boolean recalled;
+		boolean stealing;
+
+		Job(int id, Node node) {
+			this.id = id;
+			this.node = node;
+		}
+	}
+
+	/*
+	A connected worker.
+	*/
+	private final class Worker implements Runnable {
+		final Socket socket;
+		final DataInputStream in;
+		final DataOutputStream out;
+		int threads;
+
+		//Represents the jobs sent to the worker and not answered yet.
+		final HashSet<Job> jobs = new HashSet<Job>();
+
+		//Represents the jobs the worker solved and the positions it visited.
+		long nodes;
+		int solved;
+
+		Worker(Socket socket) throws IOException {
+			this.socket = socket;
+			this.socket.setTcpNoDelay(true);
+			this.in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+			this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+		}
+
+		@Override
+		public void run() {
+			try {
+				if (this.in.readByte() != HELLO) {
+					throw new IOException("Expected HELLO");
+				}
+				this.threads = Math.max(1, this.in.readInt());
+				synchronized (DistributedSolver.this) {
+					DistributedSolver.this.workers.add(this);
+					DistributedSolver.this.connected++;
+					//close() may be waiting for the spawned workers to connect
+					DistributedSolver.this.notifyAll();
+					dispatch();
+				}
+				while (true) {
+					int type = this.in.readByte();
+					int id = this.in.readInt();
+					if (type == STARTED) {
+						synchronized (DistributedSolver.this) {
+							Job job = find(id);
+							if (job != null) {
+								job.started = true;
+								//Too late to take it back
+								if (job.stealing) {
+									job.recalled = false;
+									job.stealing = false;
+								}
+							}
+						}
+					} else if (type == RESULT) {
+						byte status = this.in.readByte();
+						int score = this.in.readInt();
+						long nodes = this.in.readLong();
+						synchronized (DistributedSolver.this) {
+							finished(this, id, status, score, nodes);
+						}
+					} else {
+						throw new IOException("Unknown message " + type);
+					}
+				}
+			} catch (IOException e) {
+				//The worker went away: its jobs go back in the queue
+			} finally {
+				synchronized (DistributedSolver.this) {
+					DistributedSolver.this.workers.remove(this);
+					for (Job job : this.jobs) {
+						job.worker = null;
+						job.started = false;
+						job.recalled = false;
+						job.stealing = false;
+						if (DistributedSolver.this.jobs.get(job.id) == job) {
+							DistributedSolver.this.queue.addFirst(job);
+						}
+					}
+					this.jobs.clear();
+					dispatch();
+				}
+				try {
+					this.socket.close();
+				} catch (IOException e) {
+					//Already closed
+				}
+			}
+		}
+
+		//Sends a message with a job id. Only called while holding the coordinator's lock.
+		void send(byte type, Job job) {
+			try {
+				this.out.writeByte(type);
+				this.out.writeInt(job.id);
+				if (type == JOB) {
+					this.out.writeLong(job.node.board.key());
+					this.out.writeBoolean(DistributedSolver.this.weak);
+				}
+				this.out.flush();
+			} catch (IOException e) {
+				//The reading thread finds out and gives the jobs to other workers
+				try {
+					this.socket.close();
+				} catch (IOException closing) {
+					//Already closed
+				}
+			}
+		}
+
+		//The job sent to this worker with the given id, or null.
+		Job find(int id) {
+			for (Job job : this.jobs) {
+				if (job.id == id) return job;
+			}
+			return null;
+		}
+
+		//The number of jobs the worker has that it will solve.
+		int load() {
+			int load = 0;
+			for (Job job : this.jobs) {
+				if (!job.recalled) load++;
+			}
+			return load;
+		}
+	}
+
+	//Represents the socket workers connect to.
+	private final ServerSocket server;
+
+	//Represents the connected workers.
+	private final ArrayList<Worker> workers = new ArrayList<Worker>();
+
+	//Represents the worker processes started for spawnWorkers(), and how many
+	//more to start, with how many threads, once a solve has jobs for them.
+	private final ArrayList<Process> processes = new ArrayList<Process>();
+	private int spawnCount;
+	private int spawnThreads;
+
+	//Represents the number of workers that have ever connected.
+	private int connected;
+
+	//Represents the jobs of the current solve by id, and those not sent yet.
+	private final HashMap<Integer, Job> jobs = new HashMap<Integer, Job>();
+	private final ArrayDeque<Job> queue = new ArrayDeque<Job>();
+
+	//Represents the id of the next job. Ids are never reused, so late answers
+	//about the jobs of an earlier solve cannot be taken for the current one.
+	private int nextId;
+
+	//Represents whether the split tree is being built, when nothing is cancelled yet.
+	private boolean building;
+
+	//Represents the number of times a node has been settled, which is when the
+	//nodes that are needed can change. isNeeded() remembers its answers until then.
+	private int settlePass = 1;
+
+	//Represents the root of the current solve, or null between solves.
+	private Node root;
+
+	//Represents whether the current solve is weak.
+	private boolean weak;
+
+	//Represents the counts of the last solve.
+	private int jobCount;
+	private int cancelledCount;
+	private int stolenCount;
+	private long nodes;
+
+	//Starts listening for workers on 'port' (0 for any free port).
+	public DistributedSolver(int port) throws IOException {
+		this.server = new ServerSocket(port);
+		Thread acceptor = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				acceptWorkers();
+			}
+		}, "solve-coordinator");
+		acceptor.setDaemon(true);
+		acceptor.start();
+	}
+
+	public int getPort() {
+		return this.server.getLocalPort();
+	}
+
+	public synchronized int getWorkerCount() {
+		return this.workers.size();
+	}
+
+	//Has 'count' SolveWorker JVMs started on this machine that connect to this
+	//coordinator. They are started by the first solve that has jobs for them, so
+	//none are started for a position that is settled while its tree is built.
+	public synchronized void spawnWorkers(int count, int threads) {
+		this.spawnCount += count;
+		this.spawnThreads = threads;
+	}
+
+	//Starts the workers asked for by spawnWorkers() that have not been started yet.
+	private void startSpawned() throws IOException {
+		String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+		for (; this.spawnCount > 0; this.spawnCount--) {
+			ProcessBuilder builder = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+					SolveWorker.class.getName(), "localhost:" + getPort(), String.valueOf(this.spawnThreads));
+			builder.redirectErrorStream(true);
+			builder.redirectOutput(ProcessBuilder.Redirect.INHERIT);
+			this.processes.add(builder.start());
+		}
+	}
+
+	/**
+	 * Solves 'board' on the workers, splitting the tree 'split' plies below it.
+	 * Waits for a worker to connect if there is none.
+	 * @return the score for the player to move, as EndgameSolver.solve() gives it,
+	 *         or for a weak solve 1, 0 or -1 for a win, draw or loss.
+	 * @throws IOException if the workers asked for by spawnWorkers() cannot be started.
+	 */
+	public synchronized int solve(BitBoard board, int split, boolean weak) throws InterruptedException, IOException {
+		if (split < 0) {
+			throw new IllegalArgumentException("The split ply cannot be negative.");
+		}
+		this.weak = weak;
+		this.jobs.clear();
+		this.queue.clear();
+		this.jobCount = 0;
+		this.cancelledCount = 0;
+		this.stolenCount = 0;
+		this.nodes = 0;
+
+		this.building = true;
+		this.root = buildTree(board.copy(), split, new HashMap<Long, Node>());
+		this.building = false;
+		this.settlePass++;
+		if (!this.root.settled) {
+			startSpawned();
+		}
+		for (Job job : new ArrayList<Job>(this.jobs.values())) {
+			if (!isNeeded(job.node)) {
+				cancel(job);
+			}
+		}
+		dispatch();
+		try {
+			while (!this.root.settled) {
+				wait();
+			}
+			return this.root.best;
+		} finally {
+			//Whatever is still running is not needed any more
+			for (Job job : this.jobs.values()) {
+				if (job.worker != null && !job.recalled) {
+					job.recalled = true;
+					job.worker.send(CANCEL, job);
+				}
+			}
+			this.queue.clear();
+			this.root = null;
+		}
+	}
+
+	//Tells every worker to stop and stops listening. Workers started for
+	//spawnWorkers() that have not connected yet are given CONNECT_WAIT_MILLIS to
+	//connect first, so that they are told to stop rather than refused.
+	public synchronized void close() throws IOException {
+		long deadline = System.nanoTime() + CONNECT_WAIT_MILLIS * 1000000L;
+		try {
+			while (this.connected < this.processes.size() && anySpawnedAlive()) {
+				long left = (deadline - System.nanoTime()) / 1000000L;
+				if (left <= 0) {
+					break;
+				}
+				wait(left);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		for (Worker worker : this.workers) {
+			try {
+				worker.out.writeByte(SHUTDOWN);
+				worker.out.flush();
+			} catch (IOException e) {
+				//Already gone
+			}
+		}
+		this.server.close();
+		for (Process process : this.processes) {
+			try {
+				if (!process.waitFor(5, TimeUnit.SECONDS)) {
+					process.destroy();
+				}
+			} catch (InterruptedException e) {
+				process.destroy();
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	private boolean anySpawnedAlive() {
+		for (Process process : this.processes) {
+			if (process.isAlive()) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	public synchronized int getJobCount() {
+		return this.jobCount;
+	}
+
+	public synchronized int getCancelledCount() {
+		return this.cancelledCount;
+	}
+
+	public synchronized int getStolenCount() {
+		return this.stolenCount;
+	}
+
+	//The positions the workers visited in the last solve.
+	public synchronized long getNodes() {
+		return this.nodes;
+	}
+
+	//One line per worker: its threads, jobs solved and positions visited.
+	public synchronized String workerSummary() {
+		StringBuilder summary = new StringBuilder();
+		for (Worker worker : this.workers) {
+			summary.append(String.format("%s  %d threads  %d jobs  %d nodes%n",
+					worker.socket.getRemoteSocketAddress(), worker.threads, worker.solved, worker.nodes));
+		}
+		return summary.toString();
+	}
+
+	private void acceptWorkers() {
+		while (!this.server.isClosed()) {
+			try {
+				Socket socket = this.server.accept();
+				Thread thread = new Thread(new Worker(socket), "solve-worker-connection");
+				thread.setDaemon(true);
+				thread.start();
+			} catch (IOException e) {
+				//The server was closed, or one connection failed
+			}
+		}
+	}
+
+	//Builds the split tree below 'board', scoring the positions that are over or
+	//won at once and making a job for every position at the split ply. 'nodes'
+	//holds the nodes already made by canonical key.
+	private Node buildTree(BitBoard board, int split, HashMap<Long, Node> nodes) {
+		Long key = board.canonicalKey();
+		Node node = nodes.get(key);
+		if (node != null) {
+			return node;
+		}
+		node = new Node(board);
+		nodes.put(key, node);
+		node.upperBound = this.weak ? 1 : (BitBoard.WIDTH * BitBoard.HEIGHT - 1 - board.getMoves()) / 2;
+
+		if (board.isFull()) {
+			node.best = 0;
+			node.settled = true;
+		} else if (board.canWinNext()) {
+			node.best = this.weak ? 1 : (BitBoard.WIDTH * BitBoard.HEIGHT + 1 - board.getMoves()) / 2;
+			node.settled = true;
+		} else if (split == 0) {
+			node.job = new Job(this.nextId++, node);
+			this.jobCount++;
+			this.jobs.put(node.job.id, node.job);
+			this.queue.addLast(node.job);
+		} else {
+			ArrayList<Node> children = new ArrayList<Node>();
+			for (int col = 0; col < BitBoard.WIDTH; col++) {
+				if (!board.canPlay(col)) continue;
+				BitBoard next = board.copy();
+				next.play(col);
+				Node child = buildTree(next, split - 1, nodes);
+				if (!children.contains(child)) {
+					children.add(child);
+					child.parents.add(node);
+				}
+			}
+			node.children = children.toArray(new Node[children.size()]);
+			node.pending = node.children.length;
+			for (Node child : node.children) {
+				if (child.settled) {
+					childSettled(node, child);
+				}
+			}
+		}
+		return node;
+	}
+
+	//Handles a RESULT from a worker. Only called while holding the lock.
+	private void finished(Worker worker, int id, byte status, int score, long nodes) {
+		Job job = worker.find(id);
+		if (job == null) {
+			return;
+		}
+		worker.jobs.remove(job);
+		job.worker = null;
+		job.recalled = false;
+		job.stealing = false;
+		if (this.jobs.get(id) != job) {
+			//A job of an earlier solve
+			return;
+		}
+		if (status == SOLVED) {
+			worker.solved++;
+			worker.nodes += nodes;
+			this.nodes += nodes;
+			this.jobs.remove(id);
+			settle(job.node, score);
+		} else if (status == CANCELLED) {
+			this.cancelledCount++;
+			this.jobs.remove(id);
+		} else if (isNeeded(job.node)) {
+			this.stolenCount++;
+			this.queue.addFirst(job);
+		} else {
+			this.cancelledCount++;
+			this.jobs.remove(id);
+		}
+		dispatch();
+	}
+
+	//Gives a node its score and backs it up to the parents that are waiting for it.
+	private void settle(Node node, int score) {
+		if (node.settled) {
+			return;
+		}
+		node.best = score;
+		node.settled = true;
+		this.settlePass++;
+		for (Node parent : node.parents) {
+			childSettled(parent, node);
+		}
+		if (this.root != null && this.root.settled) {
+			notifyAll();
+		}
+		cancelBelow(node);
+	}
+
+	private void childSettled(Node parent, Node child) {
+		if (parent.settled) {
+			return;
+		}
+		parent.best = Math.max(parent.best, -child.best);
+		parent.pending--;
+		if (parent.pending == 0 || parent.best >= parent.upperBound) {
+			settle(parent, parent.best);
+		}
+	}
+
+	//Whether the score of a node can still change the score of the root. A node
+	//found needed is not looked at again until the next node is settled, and one
+	//found not needed never is, as settled nodes stay settled. So each node is
+	//looked at once per settle pass however many paths lead to it.
+	private boolean isNeeded(Node node) {
+		if (node.settled || node.unneeded) {
+			return false;
+		}
+		if (node == this.root || node.neededPass == this.settlePass) {
+			return true;
+		}
+		for (Node parent : node.parents) {
+			if (isNeeded(parent)) {
+				node.neededPass = this.settlePass;
+				return true;
+			}
+		}
+		node.unneeded = true;
+		return false;
+	}
+
+	//Cancels the jobs under a node that has just been settled or found not needed.
+	//Only the nodes under it can have stopped being needed, and the walk stops at
+	//those that still are.
+	private void cancelBelow(Node node) {
+		if (this.building || node.children == null) {
+			return;
+		}
+		for (Node child : node.children) {
+			if (child.settled || child.dropped || isNeeded(child)) continue;
+			child.dropped = true;
+			if (child.job != null) {
+				cancel(child.job);
+			} else {
+				cancelBelow(child);
+			}
+		}
+	}
+
+	//Cancels a job on its worker, or drops it if it is waiting to be sent.
+	private void cancel(Job job) {
+		if (job.recalled && !job.stealing) {
+			return;
+		}
+		if (job.worker != null) {
+			job.recalled = true;
+			job.stealing = false;
+			job.worker.send(CANCEL, job);
+		} else if (this.jobs.remove(job.id) == job) {
+			//dispatch() skips it when it comes to it in the queue
+			this.cancelledCount++;
+		}
+	}
+
+	//Sends jobs to the workers that have room for more, the least busy first, and
+	//if none are left to send, takes back jobs that have not been started from
+	//busy workers for the idle ones.
+	private void dispatch() {
+		if (this.root == null || this.root.settled) {
+			return;
+		}
+		while (!this.queue.isEmpty()) {
+			Worker worker = leastLoaded();
+			if (worker == null || worker.load() > worker.threads) {
+				break;
+			}
+			Job job = this.queue.removeFirst();
+			if (this.jobs.get(job.id) != job) {
+				//Cancelled while it waited
+				continue;
+			}
+			if (!isNeeded(job.node)) {
+				this.jobs.remove(job.id);
+				this.cancelledCount++;
+				continue;
+			}
+			job.worker = worker;
+			job.started = false;
+			worker.jobs.add(job);
+			worker.send(JOB, job);
+		}
+		if (!this.queue.isEmpty()) {
+			return;
+		}
+
+		//Threads with nothing to do, less the jobs already being taken back for them
+		int idle = 0;
+		for (Worker worker : this.workers) {
+			idle += Math.max(0, worker.threads - worker.load());
+			for (Job job : worker.jobs) {
+				if (job.stealing) idle--;
+			}
+		}
+		//Only workers with more jobs than threads have jobs waiting to be started
+		for (Worker busy : this.workers) {
+			for (Job job : busy.jobs) {
+				if (idle <= 0) {
+					return;
+				}
+				if (!job.started && !job.recalled && busy.load() > busy.threads) {
+					job.recalled = true;
+					job.stealing = true;
+					busy.send(STEAL, job);
+					idle--;
+				}
+			}
+		}
+	}
+
+	private Worker leastLoaded() {
+		Worker least = null;
+		for (Worker worker : this.workers) {
+			if (least == null || worker.load() < least.load()) {
+				least = worker;
+			}
+		}
+		return least;
+	}
+
+	public static void main(String args[]) throws IOException, InterruptedException {
+		int port = 7070;
+		int spawn = 0;
+		int threads = 1;
+		int split = 2;
+		boolean weak = false;
+		String moves = null;
+		for (int i = 0; i < args.length; i++) {
+			if (args[i].equals("--port")) port = Integer.parseInt(args[++i]);
+			else if (args[i].equals("--spawn")) spawn = Integer.parseInt(args[++i]);
+			else if (args[i].equals("--threads")) threads = Integer.parseInt(args[++i]);
+			else if (args[i].equals("--split")) split = Integer.parseInt(args[++i]);
+			else if (args[i].equals("--weak")) weak = true;
+			else moves = args[i];
+		}
+		if (moves == null) {
+			System.err.println("Usage: java connectfour.DistributedSolver [--port P] [--spawn N] [--threads T] [--split K] [--weak] <moves>");
+			System.exit(2);
+		}
+		BitBoard board = new BitBoard();
+		for (char c : moves.toCharArray()) {
+			int col = c - '0';
+			if (col < 0 || col >= BitBoard.WIDTH || !board.canPlay(col) || board.isWinningMove(col)) {
+				throw new IllegalArgumentException("Cannot play column " + c + " in " + moves);
+			}
+			board.play(col);
+		}
+
+		DistributedSolver solver = new DistributedSolver(port);
+		solver.spawnWorkers(spawn, threads);
+		long start = System.nanoTime();
+		int score = solver.solve(board, split, weak);
+		System.out.printf("Score %d (%s) in %.1f s%n", score, score > 0 ? "win" : score < 0 ? "loss" : "draw",
+				(System.nanoTime() - start) / 1e9);
+		System.out.printf("%d jobs, %d cancelled, %d stolen, %d nodes%n",
+				solver.getJobCount(), solver.getCancelledCount(), solver.getStolenCount(), solver.getNodes());
+		System.out.print(solver.workerSummary());
+		solver.close();
+	}
+}
@@ -0,0 +1,154 @@
+package connectfour;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/*
+Works out the exact result of a position by searching every move to the end of
+the game. Only practical with few empty tiles; used to build the tablebase.
+
+Scores are from the point of view of the player to move: 0 for a draw, positive
+for a win and negative for a loss. The sooner the game is won the bigger the
+score: winning with your last disc of the game scores 1, winning with the
+disc before it scores 2, and so on.
+*/
+public class EndgameSolver {
+
+	//Represents the order the columns are tried in, middle first since those make the most lines.
+	private static final int ORDER[] = {3, 2, 4, 1, 5, 0, 6};
+
+	//Represents a score that is exact.
+	private static final int EXACT = 0;
+
+	//Represents a score that is at least the stored value.
+	private static final int LOWER = 1;
+
+	//Represents a score that is at most the stored value.
+	private static final int UPPER = 2;
+
+	//Represents the number of positions remembered before the cache is emptied.
+	private final int cacheLimit;
+
+	//Represents the positions already solved by canonical key, packed as (flag << 8) | (score & 0xff).
+	private final LongIntMap cache = new LongIntMap(1 << 16);
+
+	//Represents the number of positions visited.
+	private long nodes;
+
+	//Represents the flag that stops the search when set, or null.
+	private volatile AtomicBoolean cancelled;
+
+	public EndgameSolver() {
+		this(1 << 22);
+	}
+
+	public EndgameSolver(int cacheLimit) {
+		this.cacheLimit = cacheLimit;
+	}
+
+	public long getNodes() {
+		return this.nodes;
+	}
+
+	//Makes solve() and solveWeak() throw a CancellationException soon after
+	//'cancelled' is set. Passing null means they always finish.
+	public void setCancelFlag(AtomicBoolean cancelled) {
+		this.cancelled = cancelled;
+	}
+
+	//Only whether 'board' is won (1), drawn (0) or lost (-1) for the player to move,
+	//which is much faster than the exact score.
+	public int solveWeak(BitBoard board) {
+		return Integer.signum(negamax(board, -1, 1));
+	}
+
+	//The exact score of 'board' for the player to move. Rather than one search with
+	//a wide window, it asks "is the score above x?" with null windows (alpha and
+	//beta one apart), which cut off far more, and narrows down the range of
+	//possible scores until one is left. The cache is shared by all the searches.
+	public int solve(BitBoard board) {
+		int min = -(BitBoard.WIDTH * BitBoard.HEIGHT - board.getMoves()) / 2;
+		int max = (BitBoard.WIDTH * BitBoard.HEIGHT + 1 - board.getMoves()) / 2;
+		while (min < max) {
+			int middle = min + (max - min) / 2;
+			//Checking near 0 first tells win, draw or loss sooner
+			if (middle <= 0 && min / 2 < middle) {
+				middle = min / 2;
+			} else if (middle >= 0 && max / 2 > middle) {
+				middle = max / 2;
+			}
+			int value = negamax(board, middle, middle + 1);
+			if (value <= middle) {
+				max = value;
+			} else {
+				min = value;
+			}
+		}
+		return min;
+	}
+
+	//The exact score for the player to move on 'board' after playing 'col'.
+	public int solveMove(BitBoard board, int col) {
+		if (board.isWinningMove(col)) {
+			return (BitBoard.WIDTH * BitBoard.HEIGHT + 1 - board.getMoves()) / 2;
+		}
+		BitBoard child = board.copy();
+		child.play(col);
+		return child.isFull() ? 0 : -solve(child);
+	}
+
+	private int negamax(BitBoard board, int alpha, int beta) {
+		this.nodes++;
+		if ((this.nodes & 4095) == 0 && this.cancelled != null && this.cancelled.get()) {
+			throw new CancellationException("The solve was cancelled");
+		}
+		if (board.isFull()) {
+			return 0;
+		}
+		for (int col = 0; col < BitBoard.WIDTH; col++) {
+			if (board.canPlay(col) && board.isWinningMove(col)) {
+				return (BitBoard.WIDTH * BitBoard.HEIGHT + 1 - board.getMoves()) / 2;
+			}
+		}
+
+		int alphaOrig = alpha;
+		long key = board.canonicalKey();
+		int entry = this.cache.get(key, -1);
+		if (entry >= 0) {
+			int value = (byte) (entry & 0xff);
+			int flag = entry >> 8;
+			if (flag == EXACT) return value;
+			if (flag == LOWER) alpha = Math.max(alpha, value);
+			if (flag == UPPER) beta = Math.min(beta, value);
+			if (alpha >= beta) return value;
+		}
+
+		//The best possible score: winning with the next disc after this one
+		int max = (BitBoard.WIDTH * BitBoard.HEIGHT - 1 - board.getMoves()) / 2;
+		if (alpha >= max) {
+			return max;
+		}
+		if (beta > max) {
+			beta = max;
+		}
+
+		int best = -BitBoard.WIDTH * BitBoard.HEIGHT;
+		for (int i = 0; i < ORDER.length; i++) {
+			int col = ORDER[i];
+			if (!board.canPlay(col)) continue;
+			BitBoard child = board.copy();
+			child.play(col);
+			int value = -negamax(child, -beta, -alpha);
+			if (value > best) best = value;
+			if (value > alpha) alpha = value;
+			if (alpha >= beta) break;
+		}
+
+		if (this.cache.size() >= this.cacheLimit) {
+			this.cache.clear();
+		}
+		int flag = best <= alphaOrig ? UPPER : best >= beta ? LOWER : EXACT;
+		this.cache.put(key, (flag << 8) | (best & 0xff));
+		return best;
+	}
+}
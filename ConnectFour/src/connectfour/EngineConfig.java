@@ -0,0 +1,156 @@
+package connectfour;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+
+/*
+Describes an engine and its search limits in one short string, so that engines
+can be chosen on the command line, for example:
+
+   ab:depth=4                     Alpha-Beta pruning, 4 plies
+   ab:time=50,eval=heuristic      Alpha-Beta pruning, 50 ms a move, scored with checkThree() and
+                                  checkTwo() instead of the default eval=bitboard
+   mcts:time=50,threads=1         Monte Carlo Tree Search, 50 ms a move on one thread
+   mcts:nodes=20000               Monte Carlo Tree Search, 20000 playouts a move
+   ab:depth=4,tablebase=tb.bin    Alpha-Beta pruning with an endgame tablebase
+   ab:time=10,futility=5,razor=12 Alpha-Beta pruning that also prunes near the last ply
+   ab:depth=8,lmr=0               Alpha-Beta pruning that searches every move to the full depth
+   ab:depth=4,eval=network,weights=net.bin
+                                  Alpha-Beta pruning scored by the network NetworkTrainer wrote
+   mcts:time=50,eval=network,weights=net.bin
+                                  Monte Carlo Tree Search that averages the network's estimate
+                                  with each random game
+
+Options are depth, time (ms) and nodes for the limits, eval (random or network
+for Monte Carlo Tree Search), weights (the file of eval=network), table, extend
+(the most forced moves played past the last ply, 0 for none), lmr (0 turns late
+move reductions off), futility and razor (pruning margins, 0 for none) and
+tablebase for Alpha-Beta pruning and threads and capacity for Monte Carlo Tree
+Search.
+*/
+public class EngineConfig {
+
+	//Represents the string the config was made from.
+	private final String spec;
+
+	//Represents the kind of engine: "ab" or "mcts".
+	private final String type;
+
+	//Represents the options after the kind of engine.
+	private final HashMap<String, String> options;
+
+	//Represents the limits of every move.
+	private final SearchLimits limits;
+
+	private EngineConfig(String spec, String type, HashMap<String, String> options) {
+		this.spec = spec;
+		this.type = type;
+		this.options = options;
+		this.limits = new SearchLimits(getInt("depth", 0), getInt("time", 0), getInt("nodes", 0));
+		if (this.limits.getDepth() == 0 && this.limits.getTimeMillis() == 0 && this.limits.getNodes() == 0
+				&& type.equals("ab")) {
+			throw new IllegalArgumentException("Alpha-Beta pruning needs a depth, time or nodes: " + spec);
+		}
+	}
+
+	//Reads a config such as "ab:depth=4".
+	public static EngineConfig parse(String spec) {
+		String type = spec;
+		HashMap<String, String> options = new HashMap<String, String>();
+		int colon = spec.indexOf(':');
+		if (colon >= 0) {
+			type = spec.substring(0, colon);
+			for (String option : spec.substring(colon + 1).split(",")) {
+				if (option.isEmpty()) continue;
+				int equals = option.indexOf('=');
+				if (equals < 0) {
+					throw new IllegalArgumentException("Expected key=value but got '" + option + "' in " + spec);
+				}
+				options.put(option.substring(0, equals), option.substring(equals + 1));
+			}
+		}
+		if (!type.equals("ab") && !type.equals("mcts")) {
+			throw new IllegalArgumentException("Unknown engine '" + type + "' in " + spec);
+		}
+		return new EngineConfig(spec, type, options);
+	}
+
+	//Makes a new engine as described.
+	public MoveEngine create() {
+		if (this.type.equals("mcts")) {
+			String eval = getString("eval", "random");
+			if (!eval.equals("random") && !eval.equals("network")) {
+				throw new IllegalArgumentException("Monte Carlo Tree Search takes eval=random or eval=network: " + this.spec);
+			}
+			return new MctsEngine(getInt("capacity", 1 << 20), getInt("threads", 1),
+					eval.equals("network") ? loadNetwork() : null);
+		}
+		Evaluator evaluator;
+		if (getString("eval", "bitboard").equals("network")) {
+			evaluator = loadNetwork();
+		} else {
+			evaluator = createEvaluator(getString("eval", "bitboard"));
+		}
+		AlphaBetaEngine engine = new AlphaBetaEngine(getInt("table", 18), evaluator);
+		engine.setThreatExtension(getInt("extend", AlphaBetaEngine.DEFAULT_THREAT_EXTENSION));
+		engine.setReductions(getInt("lmr", 1) != 0);
+		engine.setPruningMargins(getInt("futility", 0), getInt("razor", 0));
+		String tablebase = getString("tablebase", null);
+		if (tablebase != null) {
+			try {
+				engine.setTablebase(new Tablebase(new File(tablebase)));
+			} catch (IOException e) {
+				throw new IllegalArgumentException("Could not open the tablebase in " + this.spec, e);
+			}
+		}
+		return engine;
+	}
+
+	//Reads the network of eval=network from the file in weights.
+	private NetworkEvaluator loadNetwork() {
+		String weights = getString("weights", null);
+		if (weights == null) {
+			throw new IllegalArgumentException("eval=network needs weights=<file> in " + this.spec);
+		}
+		try {
+			return NetworkEvaluator.load(new File(weights));
+		} catch (IOException e) {
+			throw new IllegalArgumentException("Could not read the network weights in " + this.spec, e);
+		}
+	}
+
+	//Makes the evaluator with the given name.
+	public static Evaluator createEvaluator(String name) {
+		if (name.equals("heuristic")) {
+			return new HeuristicEvaluator();
+		}
+		if (name.equals("bitboard")) {
+			return new BitBoardEvaluator();
+		}
+		throw new IllegalArgumentException("Unknown evaluator '" + name + "'");
+	}
+
+	public String getName() {
+		return this.spec;
+	}
+
+	public SearchLimits getLimits() {
+		return this.limits;
+	}
+
+	public String getString(String key, String defaultValue) {
+		String value = this.options.get(key);
+		return value == null ? defaultValue : value;
+	}
+
+	public int getInt(String key, int defaultValue) {
+		String value = this.options.get(key);
+		return value == null ? defaultValue : Integer.parseInt(value);
+	}
+
+	@Override
+	public String toString() {
+		return this.spec;
+	}
+}
@@ -0,0 +1,37 @@
+package connectfour;
+
+/*
+Scores a position at the end of the Alpha-Beta pruning search. Higher scores are
+better for 'player', the color the AI is playing for.
+*/
+public interface Evaluator {
+
+	//Scores 'board' for 'player'. currentPly is how many plies below the root it is.
+	int score(int player, ConnectFourModel board, int currentPly);
+
+	//Represents the score of a column that is full, in scoreChildren().
+	int NO_MOVE = Integer.MIN_VALUE;
+
+	/**
+	 * Scores the board after each move of the player to move, as score() scores
+	 * it after placeDisc() and switchColor(). Evaluators that can share work
+	 * between the moves do it all at once; this version scores them one by one.
+	 * @param scores filled in by column; full columns get NO_MOVE.
+	 */
+	default void scoreChildren(int player, ConnectFourModel board, int currentPly, int scores[]) {
+		for (int col = 0; col < board.getCols(); col++) {
+			int row = board.getRows() - 1;
+			while (row >= 0 && board.getGameBoard()[row][col] != board.EMPTY) {
+				row--;
+			}
+			if (row < 0) {
+				scores[col] = NO_MOVE;
+				continue;
+			}
+			ConnectFourModel child = board.copy();
+			child.placeDisc(row, col);
+			child.switchColor();
+			scores[col] = score(player, child, currentPly);
+		}
+	}
+}
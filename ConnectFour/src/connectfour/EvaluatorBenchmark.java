@@ -0,0 +1,188 @@
+package connectfour;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+
+/*
+Checks that BitBoardEvaluator gives exactly the scores of HeuristicEvaluator and
+measures how many positions a second each of them scores, one at a time and with
+scoreChildren(). The positions come from random games stopped at random points.
+
+Given a weights file, NetworkEvaluator is measured as well, also with
+scoreBatch(), and its scoreChildren() and scoreBatch() are checked against
+score().
+
+Usage: java connectfour.EvaluatorBenchmark [positions] [rounds] [weights file]
+*/
+public class EvaluatorBenchmark {
+
+	//Represents the number of positions given to scoreBatch() at once.
+	private static final int BATCH = 256;
+
+	public static void main(String args[]) throws IOException {
+		int count = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+		int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+		NetworkEvaluator network = args.length > 2 ? NetworkEvaluator.load(new File(args[2])) : null;
+
+		ArrayList<ConnectFourModel> positions = randomPositions(count, new Random(42));
+		Evaluator scalar = new HeuristicEvaluator();
+		Evaluator bitboard = new BitBoardEvaluator();
+
+		//Every position and every move from it must score the same
+		int mismatches = 0;
+		int children = 0;
+		int scalarScores[] = new int[BitBoard.WIDTH];
+		int bitboardScores[] = new int[BitBoard.WIDTH];
+		for (ConnectFourModel position : positions) {
+			for (int player = position.RED; player <= position.BLACK; player++) {
+				if (scalar.score(player, position, 0) != bitboard.score(player, position, 0)) {
+					mismatches++;
+				}
+				scalar.scoreChildren(player, position, 0, scalarScores);
+				bitboard.scoreChildren(player, position, 0, bitboardScores);
+				for (int col = 0; col < BitBoard.WIDTH; col++) {
+					if (scalarScores[col] != bitboardScores[col]) {
+						mismatches++;
+					}
+					if (scalarScores[col] != Evaluator.NO_MOVE) {
+						children++;
+					}
+				}
+			}
+		}
+
+		long scalarSingle = Long.MAX_VALUE, bitboardSingle = Long.MAX_VALUE;
+		long scalarBatch = Long.MAX_VALUE, bitboardBatch = Long.MAX_VALUE;
+		//Adding up the scores keeps the JIT from dropping the calls
+		long sink = 0;
+		for (int round = 0; round < rounds; round++) {
+			long start = System.nanoTime();
+			sink += scoreAll(scalar, positions);
+			scalarSingle = Math.min(scalarSingle, System.nanoTime() - start);
+
+			start = System.nanoTime();
+			sink += scoreAll(bitboard, positions);
+			bitboardSingle = Math.min(bitboardSingle, System.nanoTime() - start);
+
+			start = System.nanoTime();
+			sink += scoreChildren(scalar, positions, scalarScores);
+			scalarBatch = Math.min(scalarBatch, System.nanoTime() - start);
+
+			start = System.nanoTime();
+			sink += scoreChildren(bitboard, positions, bitboardScores);
+			bitboardBatch = Math.min(bitboardBatch, System.nanoTime() - start);
+		}
+
+		System.out.println("Positions: " + positions.size() + ", moves from them: " + children / 2
+				+ ", mismatches: " + mismatches + ", checksum: " + sink);
+		System.out.printf("score()          heuristic %10.0f/s  bitboard %12.0f/s  %6.1fx%n",
+				positions.size() / (scalarSingle / 1e9), positions.size() / (bitboardSingle / 1e9),
+				(double) scalarSingle / bitboardSingle);
+		System.out.printf("scoreChildren()  heuristic %10.0f/s  bitboard %12.0f/s  %6.1fx%n",
+				children / 2 / (scalarBatch / 1e9), children / 2 / (bitboardBatch / 1e9),
+				(double) scalarBatch / bitboardBatch);
+		if (network != null) {
+			mismatches += measureNetwork(network, positions, rounds);
+		}
+		System.exit(mismatches == 0 ? 0 : 1);
+	}
+
+	//Checks and times NetworkEvaluator. Returns the number of scores that differ.
+	private static int measureNetwork(NetworkEvaluator network, ArrayList<ConnectFourModel> positions, int rounds) {
+		long movers[] = new long[positions.size()];
+		long masks[] = new long[positions.size()];
+		for (int i = 0; i < positions.size(); i++) {
+			BitBoard bits = BitBoard.fromModel(positions.get(i));
+			movers[i] = bits.getPosition();
+			masks[i] = bits.getMask();
+		}
+
+		int mismatches = 0;
+		int children = 0;
+		int scores[] = new int[BitBoard.WIDTH];
+		int batch[] = new int[positions.size()];
+		network.scoreBatch(movers, masks, positions.size(), batch);
+		for (int i = 0; i < positions.size(); i++) {
+			ConnectFourModel position = positions.get(i);
+			int color = position.getCurrentColor();
+			if (!position.boardIsFull() && batch[i] != network.score(color, position, 0)) {
+				mismatches++;
+			}
+			network.scoreChildren(color, position, 0, scores);
+			for (int col = 0; col < BitBoard.WIDTH; col++) {
+				if (scores[col] == Evaluator.NO_MOVE) continue;
+				ConnectFourModel child = position.copy();
+				child.dropDisc(col);
+				if (scores[col] != network.score(color, child, 0)) {
+					mismatches++;
+				}
+				children++;
+			}
+		}
+
+		long single = Long.MAX_VALUE, childTime = Long.MAX_VALUE, batchTime = Long.MAX_VALUE;
+		long sink = 0;
+		for (int round = 0; round < rounds; round++) {
+			long start = System.nanoTime();
+			sink += scoreAll(network, positions);
+			single = Math.min(single, System.nanoTime() - start);
+
+			start = System.nanoTime();
+			sink += scoreChildren(network, positions, scores);
+			childTime = Math.min(childTime, System.nanoTime() - start);
+
+			start = System.nanoTime();
+			for (int first = 0; first < positions.size(); first += BATCH) {
+				int size = Math.min(BATCH, positions.size() - first);
+				network.scoreBatch(Arrays.copyOfRange(movers, first, first + size),
+						Arrays.copyOfRange(masks, first, first + size), size, batch);
+				sink += batch[0];
+			}
+			batchTime = Math.min(batchTime, System.nanoTime() - start);
+		}
+		System.out.println("Network of " + network.getHidden1() + " and " + network.getHidden2() + " units, mismatches: "
+				+ mismatches + ", checksum: " + sink);
+		System.out.printf("network          score() %10.0f/s  scoreChildren() %10.0f/s  scoreBatch() %10.0f/s%n",
+				positions.size() / (single / 1e9), children / (childTime / 1e9), positions.size() / (batchTime / 1e9));
+		return mismatches;
+	}
+
+	private static long scoreAll(Evaluator evaluator, ArrayList<ConnectFourModel> positions) {
+		long total = 0;
+		for (ConnectFourModel position : positions) {
+			total += evaluator.score(position.RED, position, 0);
+		}
+		return total;
+	}
+
+	private static long scoreChildren(Evaluator evaluator, ArrayList<ConnectFourModel> positions, int scores[]) {
+		long total = 0;
+		for (ConnectFourModel position : positions) {
+			evaluator.scoreChildren(position.RED, position, 0, scores);
+			total += scores[3];
+		}
+		return total;
+	}
+
+	//Random positions of games that are not over, with between 0 and 41 discs.
+	private static ArrayList<ConnectFourModel> randomPositions(int count, Random random) {
+		ArrayList<ConnectFourModel> positions = new ArrayList<ConnectFourModel>();
+		while (positions.size() < count) {
+			ConnectFourModel board = new ConnectFourModel();
+			int discs = random.nextInt(board.getRows() * board.getCols());
+			while (board.getDiscCount() < discs && board.checkWin() == 0) {
+				int col = random.nextInt(board.getCols());
+				if (!board.columnIsFull(col)) {
+					board.dropDisc(col);
+				}
+			}
+			if (board.checkWin() == 0) {
+				positions.add(board);
+			}
+		}
+		return positions;
+	}
+}
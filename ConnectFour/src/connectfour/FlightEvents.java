@@ -0,0 +1,253 @@
+package connectfour;
+
+import java.awt.AWTEvent;
+import java.awt.EventQueue;
+import java.awt.Toolkit;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+JDK Flight Recorder events of the AI, to tell why a move was slow in a game that
+is already running, without a debugger and without printing anything:
+- connectfour.Search: one search of AlphaBetaEngine, with the depth it finished,
+  the positions it visited, how often the transposition table knew a position,
+  the move it chose and whether it ran out of time, ran out of nodes or was
+  cancelled by an interrupt of its thread.
+- connectfour.SearchIteration: one iteration of the same search, one ply deeper
+  than the one before.
+- connectfour.EventThreadStall: an event of the Swing event thread that took
+  longer than EDT_STALL_THRESHOLD to handle, such as a click that made the AI
+  search on that thread. Recorded once watchEventThread() has been called.
+Every event has its start time, its duration and the thread it ran on, so a
+recording shows a slow search next to the garbage collections and the other
+threads of the same moment.
+
+The game is built for Java 8, which has no jdk.jfr to compile against, so the
+event types are made when the class is loaded, with jdk.jfr.EventFactory, and
+reached through reflection. On a Java without Flight Recorder nothing is made
+and every event is skipped.
+
+Nothing is measured unless a recording that has the event turned on is running:
+begin() only asks Flight Recorder whether the event is on and returns null if it
+is not, and the fields are only filled in for an event that will be written. So
+the events can stay in the game:
+
+   java -XX:StartFlightRecording=filename=game.jfr -jar ConnectFour.jar
+   jfr print --events connectfour.Search game.jfr
+*/
+public class FlightEvents {
+
+	//Represents how long an event of the event thread may take before it is recorded.
+	public static final String EDT_STALL_THRESHOLD = "20 ms";
+
+	//Represents the jdk.jfr methods the events are made and written with, or null
+	//when there is no Flight Recorder.
+	private static Method newEvent;
+	private static Method isEnabled;
+	private static Method begin;
+	private static Method end;
+	private static Method shouldCommit;
+	private static Method set;
+	private static Method commit;
+
+	//Represents the event of a whole search: chosen column, completed depth, nodes,
+	//share of positions found in the transposition table, whether it ran out of
+	//time, whether it ran out of nodes and whether it was cancelled.
+	public static final FlightEvents SEARCH = new FlightEvents("connectfour.Search", "Search",
+			"A search of the AI for a move", null,
+			field(int.class, "bestMove", "Best Move", null),
+			field(int.class, "depth", "Depth", "The depth of the last iteration that finished"),
+			field(long.class, "nodes", "Nodes", "The positions visited"),
+			field(double.class, "tableHitRate", "Table Hit Rate", "The share of positions found in the transposition table"),
+			field(boolean.class, "outOfTime", "Out Of Time", null),
+			field(boolean.class, "outOfNodes", "Out Of Nodes", null),
+			field(boolean.class, "cancelled", "Cancelled", "Whether the search stopped because its thread was interrupted"));
+
+	//Represents the event of one iteration of a search: its depth, nodes, share of
+	//positions found in the transposition table, best column and whether it was
+	//stopped before it finished.
+	public static final FlightEvents ITERATION = new FlightEvents("connectfour.SearchIteration", "Search Iteration",
+			"One iteration of a search of the AI, one ply deeper than the one before", null,
+			field(int.class, "depth", "Depth", null),
+			field(long.class, "nodes", "Nodes", "The positions visited by this iteration"),
+			field(double.class, "tableHitRate", "Table Hit Rate", "The share of positions found in the transposition table"),
+			field(int.class, "bestMove", "Best Move", "The best column found, or -1"),
+			field(boolean.class, "stopped", "Stopped", "Whether the iteration ran out of time or nodes before it finished"));
+
+	//Represents the event of a slow event of the Swing event thread: what kind of
+	//event it was and what it was sent to.
+	public static final FlightEvents EDT_STALL = new FlightEvents("connectfour.EventThreadStall", "Event Thread Stall",
+			"An event the Swing event thread took long to handle, while the window could not be redrawn",
+			EDT_STALL_THRESHOLD,
+			field(String.class, "event", "Event", null),
+			field(String.class, "source", "Source", null));
+
+	//Represents whether watchEventThread() has pushed its queue.
+	private static boolean watching;
+
+	//Represents the name of the event.
+	private final String name;
+
+	//Represents the jdk.jfr.EventFactory and jdk.jfr.EventType of the event, or null.
+	private final Object factory;
+	private final Object type;
+
+	private FlightEvents(String name, String label, String description, String threshold, Object[]... fields) {
+		this.name = name;
+		Object made[] = make(name, label, description, threshold, fields);
+		this.factory = made[0];
+		this.type = made[1];
+	}
+
+	public String getName() {
+		return this.name;
+	}
+
+	/**
+	 * Starts timing an event, if a recording wants it.
+	 * @return the event to give to commit(), or null if the event is off.
+	 */
+	public Object begin() {
+		if (this.type == null) {
+			return null;
+		}
+		try {
+			if (!(Boolean) isEnabled.invoke(this.type)) {
+				return null;
+			}
+			Object event = newEvent.invoke(this.factory);
+			begin.invoke(event);
+			return event;
+		} catch (IllegalAccessException e) {
+			return null;
+		} catch (InvocationTargetException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Stops timing an event started by begin() and writes it with the values of its
+	 * fields, in the order they are listed above, unless it was too short to record.
+	 * Does nothing if 'event' is null.
+	 */
+	public void commit(Object event, Object... values) {
+		if (event == null) {
+			return;
+		}
+		try {
+			end.invoke(event);
+			if (!(Boolean) shouldCommit.invoke(event)) {
+				return;
+			}
+			for (int i = 0; i < values.length; i++) {
+				set.invoke(event, i, values[i]);
+			}
+			commit.invoke(event);
+		} catch (IllegalAccessException e) {
+			//The event is lost, the game goes on
+		} catch (InvocationTargetException e) {
+			//The event is lost, the game goes on
+		}
+	}
+
+	/**
+	 * Records every event of the Swing event thread that takes longer than
+	 * EDT_STALL_THRESHOLD. Can be called more than once and from any thread.
+	 */
+	public static synchronized void watchEventThread() {
+		if (watching || EDT_STALL.type == null) {
+			return;
+		}
+		watching = true;
+		Toolkit.getDefaultToolkit().getSystemEventQueue().push(new EventQueue() {
+			@Override
+			protected void dispatchEvent(AWTEvent event) {
+				Object stall = EDT_STALL.begin();
+				try {
+					super.dispatchEvent(event);
+				} finally {
+					if (stall != null) {
+						Object source = event.getSource();
+						EDT_STALL.commit(stall, event.getClass().getName() + " " + event.getID(),
+								source == null ? null : source.getClass().getName());
+					}
+				}
+			}
+		});
+	}
+
+	//A field of an event: its type, name, label and description (or null).
+	private static Object[] field(Class<?> type, String name, String label, String description) {
+		return new Object[] {type, name, label, description};
+	}
+
+	//Makes the event type with jdk.jfr.EventFactory. Returns its factory and type,
+	//or nulls if there is no Flight Recorder.
+	private static Object[] make(String name, String label, String description, String threshold, Object fields[][]) {
+		try {
+			if (!loadMethods()) {
+				return new Object[2];
+			}
+			List<Object> annotations = new ArrayList<Object>();
+			annotations.add(annotation("jdk.jfr.Name", name));
+			annotations.add(annotation("jdk.jfr.Label", label));
+			annotations.add(annotation("jdk.jfr.Description", description));
+			annotations.add(annotation("jdk.jfr.Category", new String[] {"Connect Four"}));
+			//The stack would only show the reflection the event is written with
+			annotations.add(annotation("jdk.jfr.StackTrace", false));
+			if (threshold != null) {
+				annotations.add(annotation("jdk.jfr.Threshold", threshold));
+			}
+			Class<?> descriptorClass = Class.forName("jdk.jfr.ValueDescriptor");
+			Constructor<?> descriptor = descriptorClass.getConstructor(Class.class, String.class, List.class);
+			List<Object> descriptors = new ArrayList<Object>();
+			for (Object field[] : fields) {
+				List<Object> fieldAnnotations = new ArrayList<Object>();
+				fieldAnnotations.add(annotation("jdk.jfr.Label", field[2]));
+				if (field[3] != null) {
+					fieldAnnotations.add(annotation("jdk.jfr.Description", field[3]));
+				}
+				descriptors.add(descriptor.newInstance(field[0], field[1], fieldAnnotations));
+			}
+			Class<?> factoryClass = Class.forName("jdk.jfr.EventFactory");
+			Object factory = factoryClass.getMethod("create", List.class, List.class).invoke(null, annotations, descriptors);
+			Object type = factoryClass.getMethod("getEventType").invoke(factory);
+			return new Object[] {factory, type};
+		} catch (ReflectiveOperationException e) {
+			return new Object[2];
+		} catch (RuntimeException e) {
+			//Such as a SecurityException, or Flight Recorder refusing the type
+			return new Object[2];
+		}
+	}
+
+	//Finds the methods of jdk.jfr the events use. Returns false if there is no Flight Recorder.
+	private static synchronized boolean loadMethods() throws ReflectiveOperationException {
+		if (commit != null) {
+			return true;
+		}
+		Class<?> event;
+		try {
+			event = Class.forName("jdk.jfr.Event");
+		} catch (ClassNotFoundException e) {
+			return false;
+		}
+		newEvent = Class.forName("jdk.jfr.EventFactory").getMethod("newEvent");
+		isEnabled = Class.forName("jdk.jfr.EventType").getMethod("isEnabled");
+		begin = event.getMethod("begin");
+		end = event.getMethod("end");
+		shouldCommit = event.getMethod("shouldCommit");
+		set = event.getMethod("set", int.class, Object.class);
+		commit = event.getMethod("commit");
+		return true;
+	}
+
+	private static Object annotation(String annotation, Object value) throws ReflectiveOperationException {
+		Class<? extends Annotation> type = Class.forName(annotation).asSubclass(Annotation.class);
+		return Class.forName("jdk.jfr.AnnotationElement").getConstructor(Class.class, Object.class).newInstance(type, value);
+	}
+}
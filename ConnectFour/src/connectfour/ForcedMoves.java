@@ -0,0 +1,59 @@
+package connectfour;
+
+/*
+Finds the moves that need no search, in a handful of bitboard operations: a move
+that wins right away, the one move that blocks the other player's win, or the
+only column left that does not hand the other player a win. Engines check this
+before they start searching, since in a real game many moves are forced.
+*/
+public class ForcedMoves {
+
+	private ForcedMoves() {
+	}
+
+	/**
+	 * The column the player to move has to play on 'board' without searching.
+	 * @return the column, or -1 if there is more than one sensible move.
+	 */
+	public static int find(BitBoard board) {
+		long possible = board.possible();
+		if (possible == 0) {
+			return -1;
+		}
+
+		//Winning right away is always best
+		long wins = board.winningPositions() & possible;
+		if (wins != 0) {
+			return BitBoard.columnOf(wins);
+		}
+
+		//The other player's win has to be blocked. If they have two, the game is lost
+		//whatever is played
+		long threats = board.opponentWinningPositions() & possible;
+		if (threats != 0) {
+			return BitBoard.columnOf(threats);
+		}
+
+		//Only one column does not give the other player a win, or every column does
+		long safe = board.nonLosingMoves();
+		if (safe == 0) {
+			return BitBoard.columnOf(possible);
+		}
+		if (Long.bitCount(safe) == 1) {
+			return BitBoard.columnOf(safe);
+		}
+		return -1;
+	}
+
+	//The columns that do not give the other player a win, as bit 'col' for each column.
+	public static int safeColumns(BitBoard board) {
+		long safe = board.nonLosingMoves();
+		int columns = 0;
+		for (int col = 0; col < BitBoard.WIDTH; col++) {
+			if ((safe & BitBoard.columnMask(col)) != 0) {
+				columns |= 1 << col;
+			}
+		}
+		return columns;
+	}
+}
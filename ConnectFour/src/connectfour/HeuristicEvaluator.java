@@ -0,0 +1,55 @@
+package connectfour;
+
+/*
+The hand-written scoring used by the AI since the beginning: a Connect-Four is
+worth 11, every line of 3 is worth 3 and every line of 2 is worth 1.
+BitBoardEvaluator gives the same scores much faster and is used by default.
+*/
+public class HeuristicEvaluator implements Evaluator {
+
+	//The score to be returned. Wins (connect 4) score the most points, followed
+	//by rows of 3, followed by rows of 2. There is an intervention if the human
+	//can win in the next following move. The score is set to -200 in that case
+	//so the AI doesn't look too far ahead with the possibility that the player can
+	//instantly win
+	@Override
+	public int score(int player, ConnectFourModel Board, int currentPly) {
+
+		//Initialize the score to be returned
+		int theScore = 0;
+
+		//If the board shows red wins, add 11 to the red score
+		int redWin = 0;
+		if (Board.checkWin() == Board.RED)
+			redWin = 11;
+
+		//If the board shows black wins, add 11 to the black score
+		int blackWin = 0;
+		if (Board.checkWin() == Board.BLACK)
+			blackWin = 11;
+
+		//Add the winning score (of 0 or 11) to the number of discs that have 3 aligned and
+		//multiply it by 3 and the number of discs that have 2 aligned
+		int redScore = redWin + Board.checkThree(Board.RED) * 3 + Board.checkTwo(Board.RED);
+		int blackScore = blackWin + Board.checkThree(Board.RED) * 3 + Board.checkTwo(Board.BLACK);
+
+		//Decrement the redScore and Increment the blackScore to total score if the current
+		//player is the Black piece. Reverse if the current player is the Red piece
+		if (player == Board.BLACK) {
+
+			//If the opponenet (the human player) wins, that takes immediate priority
+			//or else AI will think too far ahead on a future win when the human can
+			//immediately end the game
+			if (Board.checkWin() == Board.RED)
+				return -200;
+
+			theScore -= redScore;
+			theScore += blackScore;
+		} else {
+			theScore += redScore;
+			theScore -= blackScore;
+		}
+
+		return theScore;
+	}
+}
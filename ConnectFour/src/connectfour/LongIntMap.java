@@ -0,0 +1,199 @@
+package connectfour;
+
+import java.util.Arrays;
+
+/*
+A map from long keys (such as BitBoard.key()) to int values that stores both in
+plain arrays, so unlike HashMap<Long, Integer> nothing is boxed and no entry
+objects are made. Entries are placed by open addressing: a key goes in the slot
+its hash points to, or the next free slot after it. The arrays double when they
+are 3/4 full.
+
+Key 0 (the empty board) marks free slots in the array, so it is kept on the side.
+Not thread-safe.
+*/
+public class LongIntMap {
+
+	//Represents how full the arrays get before they double, in quarters.
+	private static final int MAX_LOAD_QUARTERS = 3;
+
+	//Represents the keys; 0 is a free slot.
+	private long keys[];
+
+	//Represents the value of the key in the same slot.
+	private int values[];
+
+	//Represents the number of slots minus 1, for wrapping around.
+	private int mask;
+
+	//Represents the number of bits of a slot index.
+	private int bits;
+
+	//Represents the number of keys, including key 0.
+	private int size;
+
+	//Represents whether key 0 is in the map, and its value.
+	private boolean hasZeroKey;
+	private int zeroValue;
+
+	//Initializes a map with room for 16 keys.
+	public LongIntMap() {
+		this(16);
+	}
+
+	//Initializes a map with room for 'expected' keys before it has to grow.
+	public LongIntMap(int expected) {
+		int slots = 4;
+		while (slots * MAX_LOAD_QUARTERS / 4 < expected) {
+			slots <<= 1;
+		}
+		allocate(slots);
+	}
+
+	public int size() {
+		return this.size;
+	}
+
+	public boolean isEmpty() {
+		return this.size == 0;
+	}
+
+	//The value of 'key', or 'missing' if the map does not have it.
+	public int get(long key, int missing) {
+		if (key == 0) {
+			return this.hasZeroKey ? this.zeroValue : missing;
+		}
+		for (int slot = slot(key); ; slot = (slot + 1) & this.mask) {
+			long k = this.keys[slot];
+			if (k == key) {
+				return this.values[slot];
+			}
+			if (k == 0) {
+				return missing;
+			}
+		}
+	}
+
+	public boolean containsKey(long key) {
+		if (key == 0) {
+			return this.hasZeroKey;
+		}
+		for (int slot = slot(key); ; slot = (slot + 1) & this.mask) {
+			long k = this.keys[slot];
+			if (k == key) {
+				return true;
+			}
+			if (k == 0) {
+				return false;
+			}
+		}
+	}
+
+	//Sets the value of 'key', replacing the value it had.
+	public void put(long key, int value) {
+		if (key == 0) {
+			if (!this.hasZeroKey) {
+				this.hasZeroKey = true;
+				this.size++;
+			}
+			this.zeroValue = value;
+			return;
+		}
+		int slot = slot(key);
+		while (this.keys[slot] != 0) {
+			if (this.keys[slot] == key) {
+				this.values[slot] = value;
+				return;
+			}
+			slot = (slot + 1) & this.mask;
+		}
+		this.keys[slot] = key;
+		this.values[slot] = value;
+		if (++this.size > (this.mask + 1) / 4 * MAX_LOAD_QUARTERS) {
+			rehash(this.keys.length * 2);
+		}
+	}
+
+	//Removes 'key'. Returns false if the map did not have it.
+	public boolean remove(long key) {
+		if (key == 0) {
+			if (!this.hasZeroKey) {
+				return false;
+			}
+			this.hasZeroKey = false;
+			this.size--;
+			return true;
+		}
+		int hole = slot(key);
+		while (this.keys[hole] != key) {
+			if (this.keys[hole] == 0) {
+				return false;
+			}
+			hole = (hole + 1) & this.mask;
+		}
+		this.size--;
+
+		//Moves back the keys after the hole that would not be found past it
+		for (int next = (hole + 1) & this.mask; this.keys[next] != 0; next = (next + 1) & this.mask) {
+			int home = slot(this.keys[next]);
+			if (((next - home) & this.mask) >= ((next - hole) & this.mask)) {
+				this.keys[hole] = this.keys[next];
+				this.values[hole] = this.values[next];
+				hole = next;
+			}
+		}
+		this.keys[hole] = 0;
+		return true;
+	}
+
+	//Removes every key, keeping the arrays.
+	public void clear() {
+		Arrays.fill(this.keys, 0);
+		this.hasZeroKey = false;
+		this.size = 0;
+	}
+
+	//Every key in the map, in no particular order.
+	public long[] keys() {
+		long result[] = new long[this.size];
+		int n = 0;
+		if (this.hasZeroKey) {
+			result[n++] = 0;
+		}
+		for (int slot = 0; slot < this.keys.length; slot++) {
+			if (this.keys[slot] != 0) {
+				result[n++] = this.keys[slot];
+			}
+		}
+		return result;
+	}
+
+	//The slot a key's search starts at, from the top bits of the key times the golden ratio.
+	private int slot(long key) {
+		return (int) ((key * 0x9E3779B97F4A7C15L) >>> (64 - this.bits));
+	}
+
+	private void allocate(int slots) {
+		this.keys = new long[slots];
+		this.values = new int[slots];
+		this.mask = slots - 1;
+		this.bits = Integer.numberOfTrailingZeros(slots);
+	}
+
+	private void rehash(int slots) {
+		long oldKeys[] = this.keys;
+		int oldValues[] = this.values;
+		allocate(slots);
+		for (int i = 0; i < oldKeys.length; i++) {
+			long key = oldKeys[i];
+			if (key != 0) {
+				int slot = slot(key);
+				while (this.keys[slot] != 0) {
+					slot = (slot + 1) & this.mask;
+				}
+				this.keys[slot] = key;
+				this.values[slot] = oldValues[i];
+			}
+		}
+	}
+}
@@ -0,0 +1,472 @@
+package connectfour;
+
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/*
+An AI based on Monte Carlo Tree Search instead of Alpha-Beta pruning. Each playout
+walks down the tree by UCT (the child with the best mix of win rate and how rarely
+it was tried), adds the children of the position it reaches, plays random moves
+on a BitBoard until the game ends and counts the result in every position on the
+way back up. The column that was tried most is played. Because it can stop after
+any playout, it plays as well as the time it is given allows.
+
+Given a NetworkEvaluator, it scores the children of a position with one
+scoreBatch() call as it adds them, and a playout that ends at a child counts the
+average of the network's estimate and the random game. The network only sees
+the discs, so the random game still catches the wins and blocks a move away.
+
+Several threads search the same tree at once. A thread counts a visit to every
+position as it walks down, before it knows the result. Until the result is added
+that visit counts as a loss, which steers the other threads to other moves.
+
+The tree is kept in arrays allocated once per engine rather than as objects, so a
+search creates no garbage. Children of a position sit next to each other in the
+arrays. Results are stored as WIN_RESULT for a win, DRAW_RESULT for a draw and 0
+for a loss, for the player who made the move into the position; the steps in
+between hold the network's estimates.
+*/
+public class MctsEngine implements MoveEngine {
+
+	//Represents how much UCT favours moves that were rarely tried.
+	private static final double EXPLORATION = 1.0;
+
+	//Represents the number of playouts when the limits give neither time nor nodes.
+	private static final long DEFAULT_PLAYOUTS = 200000;
+
+	//Represents how many visits a position needs before its children are added.
+	private static final int EXPAND_VISITS = 2;
+
+	//Represents the result of a win. A draw is half of it and a loss 0.
+	private static final int WIN_RESULT = 2048;
+
+	//Represents the result of a draw.
+	private static final int DRAW_RESULT = WIN_RESULT / 2;
+
+	//Represents how many points of the network's score make the player to move
+	//e (2.718) times as likely to win as to lose, fitted to the results of random games.
+	private static final double VALUE_SCALE = 20.0;
+
+	//Represents a position that is not the end of the game.
+	private static final byte NOT_TERMINAL = 0;
+
+	//Represents a position where the player who just moved has won.
+	private static final byte WIN = 1;
+
+	//Represents a position where the game board is full.
+	private static final byte DRAW = 2;
+
+	//Represents a position whose children are not added yet.
+	private static final int UNEXPANDED = -1;
+
+	//Represents a position whose children are being added, or will never be
+	//because the arrays are full.
+	private static final int EXPANDING = -2;
+
+	//Represents the number of positions the arrays can hold.
+	private final int capacity;
+
+	//Represents the number of threads searching the tree.
+	private final int threads;
+
+	//Represents the visits of each position, including visits still being played out.
+	private final AtomicIntegerArray visits;
+
+	//Represents the sum of the results of each position.
+	private final AtomicLongArray results;
+
+	//Represents the index of the first child of each position, UNEXPANDED or EXPANDING.
+	private final AtomicIntegerArray firstChild;
+
+	//Represents the number of children of each position.
+	private final byte childCount[];
+
+	//Represents the column played to reach each position.
+	private final byte move[];
+
+	//Represents whether each position ends the game.
+	private final byte terminal[];
+
+	//Represents the network that scores new positions, or null for random playouts.
+	private final NetworkEvaluator network;
+
+	//Represents the network's estimate of the result of each position, or null
+	//without a network.
+	private final int value[];
+
+	//Represents the arrays each thread scores the children of a position in.
+	private final ThreadLocal<Batch> batches = new ThreadLocal<Batch>() {
+		@Override
+		protected Batch initialValue() {
+			return new Batch();
+		}
+	};
+
+	//Represents the index of the next free position.
+	private final AtomicInteger nextFree;
+
+	//Represents the playouts started by the current search.
+	private final AtomicLong playouts;
+
+	//Represents whether the threads of the current search have to stop, because
+	//the thread that asked for the move was interrupted or another one failed.
+	private volatile boolean stop;
+
+	//Represents the threads the search runs on, or null when it runs on the caller's thread.
+	private final ExecutorService pool;
+
+	//Represents the number of playouts of the last search.
+	private long lastPlayouts;
+
+	//Initializes an engine with room for 2^20 positions using every core.
+	public MctsEngine() {
+		this(1 << 20, Runtime.getRuntime().availableProcessors());
+	}
+
+	public MctsEngine(int capacity, int threads) {
+		this(capacity, threads, null);
+	}
+
+	//Initializes an engine that also scores the positions it adds with 'network'.
+	public MctsEngine(int capacity, int threads, NetworkEvaluator network) {
+		this.capacity = capacity;
+		this.threads = Math.max(1, threads);
+		this.visits = new AtomicIntegerArray(capacity);
+		this.results = new AtomicLongArray(capacity);
+		this.firstChild = new AtomicIntegerArray(capacity);
+		this.childCount = new byte[capacity];
+		this.move = new byte[capacity];
+		this.terminal = new byte[capacity];
+		this.network = network;
+		this.value = network != null ? new int[capacity] : null;
+		this.nextFree = new AtomicInteger();
+		this.playouts = new AtomicLong();
+		if (this.threads == 1) {
+			this.pool = null;
+		} else {
+			this.pool = Executors.newFixedThreadPool(this.threads, new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable r) {
+					Thread thread = new Thread(r, "mcts");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+	}
+
+	//The number of playouts of the last search.
+	public long getPlayouts() {
+		return this.lastPlayouts;
+	}
+
+	@Override
+	public void newGame() {
+		//Every search builds a new tree, so there is nothing to forget
+	}
+
+	//Searches for 'player', who is taken to be the one to move, until the time runs
+	//out or the number of playouts in the limits is reached. The depth in the limits
+	//is not used. If the calling thread is interrupted the search stops, and the
+	//best move so far is returned with the interrupt left set for the caller to see.
+	//The tree arrays belong to the engine, so calls from several threads take
+	//turns; use one engine per thread to search different positions at the same time.
+	@Override
+	public synchronized int chooseMove(ConnectFourModel board, int player, SearchLimits limits) {
+		long discs = board.getDiscBits(board.RED) | board.getDiscBits(board.BLACK);
+		final BitBoard root = new BitBoard(board.getDiscBits(player), discs, board.getDiscCount());
+		if (root.possible() == 0) {
+			return -1;
+		}
+		//A move that is forced needs no search
+		int forced = ForcedMoves.find(root);
+		if (forced >= 0) {
+			this.lastPlayouts = 0;
+			return forced;
+		}
+
+		final long deadline = limits.getTimeMillis() > 0 ? System.nanoTime() + limits.getTimeMillis() * 1000000L : 0;
+		final long maxPlayouts = limits.getNodes() > 0 ? limits.getNodes()
+				: (deadline != 0 ? Long.MAX_VALUE : DEFAULT_PLAYOUTS);
+
+		this.nextFree.set(0);
+		this.playouts.set(0);
+		this.stop = false;
+		int rootIndex = allocate(1);
+		initNode(rootIndex, -1, NOT_TERMINAL);
+		expand(rootIndex, root);
+
+		if (this.pool == null) {
+			searchTree(root, deadline, maxPlayouts, System.nanoTime() | 1);
+		}
+		ArrayList<Future<?>> workers = new ArrayList<Future<?>>();
+		for (int t = 0; this.pool != null && t < this.threads; t++) {
+			final long seed = System.nanoTime() + 0x9E3779B97F4A7C15L * (t + 1);
+			workers.add(this.pool.submit(new Callable<Void>() {
+				@Override
+				public Void call() {
+					searchTree(root, deadline, maxPlayouts, seed);
+					return null;
+				}
+			}));
+		}
+		//Every worker has to have stopped before the tree is read or a new search
+		//resets it. A Future that is cancelled cannot be waited for, so the workers
+		//are cancelled with 'stop', which they check after every playout.
+		boolean interrupted = false;
+		Throwable failure = null;
+		for (Future<?> worker : workers) {
+			while (true) {
+				try {
+					worker.get();
+					break;
+				} catch (InterruptedException e) {
+					interrupted = true;
+					this.stop = true;
+				} catch (ExecutionException e) {
+					if (failure == null) {
+						failure = e.getCause();
+					}
+					this.stop = true;
+					break;
+				}
+			}
+		}
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+		if (failure != null) {
+			throw new IllegalStateException("Monte Carlo search failed", failure);
+		}
+		this.lastPlayouts = this.playouts.get();
+
+		//Play the column that was tried most
+		int first = this.firstChild.get(rootIndex);
+		int best = -1;
+		int bestVisits = -1;
+		for (int c = first; c < first + this.childCount[rootIndex]; c++) {
+			if (this.terminal[c] == WIN) {
+				return this.move[c];
+			}
+			if (this.visits.get(c) > bestVisits) {
+				bestVisits = this.visits.get(c);
+				best = this.move[c];
+			}
+		}
+		return best;
+	}
+
+	//Runs playouts on one thread until the search has to stop.
+	private void searchTree(BitBoard root, long deadline, long maxPlayouts, long seed) {
+		BitBoard board = new BitBoard();
+		int path[] = new int[BitBoard.WIDTH * BitBoard.HEIGHT + 2];
+		long random[] = {seed | 1};
+		int played = 0;
+		while (!this.stop && this.playouts.getAndIncrement() < maxPlayouts) {
+			//The interrupt is left set, for the caller of chooseMove() on its own thread
+			if (Thread.currentThread().isInterrupted()) {
+				this.stop = true;
+				break;
+			}
+			if (deadline != 0 && (played++ & 63) == 0 && System.nanoTime() - deadline > 0) {
+				break;
+			}
+			board.copyFrom(root);
+			playout(board, path, random);
+		}
+	}
+
+	//Walks down the tree from the root, plays the game out and adds the result to
+	//every position on the way.
+	private void playout(BitBoard board, int path[], long random[]) {
+		int node = 0;
+		int depth = 0;
+		path[depth++] = node;
+		this.visits.incrementAndGet(node);
+
+		//The result for the player who moved into 'node'
+		int result;
+		while (true) {
+			if (this.terminal[node] == WIN) {
+				result = WIN_RESULT;
+				break;
+			}
+			if (this.terminal[node] == DRAW) {
+				result = DRAW_RESULT;
+				break;
+			}
+			int first = this.firstChild.get(node);
+			if (first == UNEXPANDED && this.visits.get(node) >= EXPAND_VISITS) {
+				expand(node, board);
+				first = this.firstChild.get(node);
+			}
+			if (first < 0) {
+				result = WIN_RESULT - randomGame(board, random) * DRAW_RESULT;
+				//The root is the one position not scored when it was added
+				if (this.network != null && node != 0) {
+					result = (result + this.value[node]) / 2;
+				}
+				break;
+			}
+
+			node = selectChild(node, first, this.childCount[node]);
+			//Counts as a loss until the result is added
+			this.visits.incrementAndGet(node);
+			board.play(this.move[node]);
+			path[depth++] = node;
+		}
+
+		for (int i = depth - 1; i >= 0; i--) {
+			this.results.addAndGet(path[i], result);
+			result = WIN_RESULT - result;
+		}
+	}
+
+	//Chooses the child with the highest UCT value. Children never tried come first.
+	private int selectChild(int node, int first, int count) {
+		double logVisits = Math.log(Math.max(1, this.visits.get(node)));
+		int best = first;
+		double bestValue = Double.NEGATIVE_INFINITY;
+		for (int c = first; c < first + count; c++) {
+			int n = this.visits.get(c);
+			if (n == 0) {
+				return c;
+			}
+			double value = this.results.get(c) / ((double) WIN_RESULT * n) + EXPLORATION * Math.sqrt(logVisits / n);
+			if (value > bestValue) {
+				bestValue = value;
+				best = c;
+			}
+		}
+		return best;
+	}
+
+	//Adds a child for every column that is not full. Only one thread adds them;
+	//the others play out from the position in the meantime.
+	private void expand(int node, BitBoard board) {
+		if (!this.firstChild.compareAndSet(node, UNEXPANDED, EXPANDING)) {
+			return;
+		}
+		int count = Long.bitCount(board.possible());
+		int first = allocate(count);
+		if (first < 0) {
+			return;
+		}
+		Batch batch = this.network != null ? this.batches.get() : null;
+		int scored = 0;
+		int c = first;
+		for (int col = 0; col < BitBoard.WIDTH; col++) {
+			if (board.canPlay(col)) {
+				byte state = NOT_TERMINAL;
+				if (board.isWinningMove(col)) {
+					state = WIN;
+				} else if (board.getMoves() + 1 == BitBoard.WIDTH * BitBoard.HEIGHT) {
+					state = DRAW;
+				}
+				if (state == NOT_TERMINAL && batch != null) {
+					//The other player moves next, and the disc just played is not theirs
+					long tile = (board.getMask() + BitBoard.bottomMask(col)) & BitBoard.columnMask(col);
+					batch.positions[scored] = board.getPosition() ^ board.getMask();
+					batch.masks[scored] = board.getMask() | tile;
+					batch.nodes[scored++] = c;
+				}
+				initNode(c++, col, state);
+			}
+		}
+		if (scored > 0) {
+			this.network.scoreBatch(batch.positions, batch.masks, scored, batch.scores);
+			for (int i = 0; i < scored; i++) {
+				this.value[batch.nodes[i]] = toResult(batch.scores[i]);
+			}
+		}
+		this.childCount[node] = (byte) count;
+		//Setting the first child last makes the children visible to the other threads
+		this.firstChild.set(node, first);
+	}
+
+	//Reserves 'count' positions next to each other. Returns -1 if the arrays are full.
+	private int allocate(int count) {
+		int first = this.nextFree.getAndAdd(count);
+		if (first + count > this.capacity) {
+			return -1;
+		}
+		return first;
+	}
+
+	private void initNode(int node, int col, byte state) {
+		this.visits.set(node, 0);
+		this.results.set(node, 0);
+		this.childCount[node] = 0;
+		this.move[node] = (byte) col;
+		this.terminal[node] = state;
+		this.firstChild.set(node, UNEXPANDED);
+	}
+
+	//Turns the network's score for the player to move into the expected result
+	//for the player who moved into the position.
+	private static int toResult(int score) {
+		return (int) Math.round(WIN_RESULT / (1 + Math.exp(score / VALUE_SCALE)));
+	}
+
+	//Plays random moves until the game ends, always taking a win and blocking the
+	//other player's win when there is one.
+	//Returns the result in half points for the player to move at the start.
+	private static int randomGame(BitBoard board, long random[]) {
+		int ply = 0;
+		while (!board.isFull()) {
+			long possible = board.possible();
+			if ((board.winningPositions() & possible) != 0) {
+				return (ply & 1) == 0 ? 2 : 0;
+			}
+			long threats = board.opponentWinningPositions() & possible;
+			if (threats != 0) {
+				board.playMove(Long.lowestOneBit(threats));
+			} else {
+				int col;
+				do {
+					col = (int) ((nextRandom(random) >>> 33) % BitBoard.WIDTH);
+				} while (!board.canPlay(col));
+				board.play(col);
+			}
+			ply++;
+		}
+		return 1;
+	}
+
+	//Xorshift random numbers; one state per thread so nothing is shared.
+	private static long nextRandom(long state[]) {
+		long x = state[0];
+		x ^= x << 13;
+		x ^= x >>> 7;
+		x ^= x << 17;
+		state[0] = x;
+		return x;
+	}
+
+	/*
+	The arrays one thread scores the children of a position in.
+	*/
+	private static final class Batch {
+
+		//Represents the discs of the player to move in each child.
+		final long positions[] = new long[BitBoard.WIDTH];
+
+		//Represents every disc in each child.
+		final long masks[] = new long[BitBoard.WIDTH];
+
+		//Represents the network's score of each child.
+		final int scores[] = new int[BitBoard.WIDTH];
+
+		//Represents the index of each child in the tree.
+		final int nodes[] = new int[BitBoard.WIDTH];
+	}
+}
@@ -0,0 +1,17 @@
+package connectfour;
+
+/*
+An AI that chooses moves. The controller asks its engine for a move through
+run(), so any engine can be plugged into the game.
+*/
+public interface MoveEngine {
+
+	/**
+	 * Chooses the column 'player' should drop a disc into. The board is not changed.
+	 * @return the column, or -1 if there is no legal move.
+	 */
+	int chooseMove(ConnectFourModel board, int player, SearchLimits limits);
+
+	//Forgets everything learned about the current game. Called when a new game starts.
+	void newGame();
+}
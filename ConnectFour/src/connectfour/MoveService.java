@@ -0,0 +1,456 @@
+package connectfour;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+Chooses moves for many games at once, for example behind a game server, so that
+players keep getting answers in time however busy it gets.
+
+Every request belongs to a tier with a latency target. Requests wait in one queue,
+the one whose target runs out first taken first, and are searched on a fixed
+number of threads with one AlphaBetaEngine. Instead of always searching to the
+same depth, each request is given a time budget when it starts: the tier's full
+budget when the service is quiet, less when requests are waiting behind it (so
+they get their share of the threads), when it already waited long (so it still
+answers by its target) or when the machine is loaded by other work. A request
+that has no time left is answered by a quick search of MIN_DEPTH plies.
+
+A request is turned away at once when the queue holds more than the tier's share
+of its capacity, or when the requests due before it would take longer than the
+tier's target, rather than answered late. Lower tiers have smaller shares, so they are
+turned away first.
+
+The latency of every answer (from submit() to the move) is kept per tier, to
+report percentiles and how often budgets were cut.
+
+Usage: java connectfour.MoveService [threads] [requests per second] [seconds]
+   plays random positions of every tier at that rate and prints the report
+*/
+public class MoveService {
+
+	//Represents the depth of the quick search made when there is no time left.
+	public static final int MIN_DEPTH = 2;
+
+	//Represents the smallest time budget worth starting a search for, in ms.
+	private static final long MIN_BUDGET_MILLIS = 2;
+
+	//Represents the time kept back from the target for everything but the search, in ms.
+	private static final long SAFETY_MILLIS = 5;
+
+	//Represents how often the load of the machine is read, in ms.
+	private static final long LOAD_SAMPLE_MILLIS = 250;
+
+	//Represents the number of latencies kept for each tier.
+	private static final int LATENCY_SAMPLES = 4096;
+
+	/*
+	A class of requests with the same latency target and budget.
+	*/
+	public static class Tier {
+		private final String name;
+
+		//Represents the time in ms a request should be answered within.
+		private final long targetMillis;
+
+		//Represents the time in ms a request is searched for when the service is quiet.
+		private final long fullMillis;
+
+		//Represents the deepest search, even if there is time left.
+		private final int maxDepth;
+
+		//Represents the share of the queue the tier may fill, between 0 and 1.
+		private final double queueShare;
+
+		//Represents the counts and latencies of the tier, guarded by the tier.
+		private long submitted;
+		private long rejected;
+		private long completed;
+		private long reduced;
+		private long budgetMillis;
+		private final long latencies[] = new long[LATENCY_SAMPLES];
+
+		public Tier(String name, long targetMillis, long fullMillis, int maxDepth, double queueShare) {
+			if (fullMillis <= 0 || targetMillis < fullMillis || maxDepth < MIN_DEPTH || queueShare <= 0 || queueShare > 1) {
+				throw new IllegalArgumentException("Bad tier " + name);
+			}
+			this.name = name;
+			this.targetMillis = targetMillis;
+			this.fullMillis = fullMillis;
+			this.maxDepth = maxDepth;
+			this.queueShare = queueShare;
+		}
+
+		public String getName() {
+			return this.name;
+		}
+
+		public long getTargetMillis() {
+			return this.targetMillis;
+		}
+
+		public synchronized long getSubmitted() {
+			return this.submitted;
+		}
+
+		public synchronized long getRejected() {
+			return this.rejected;
+		}
+
+		public synchronized long getCompleted() {
+			return this.completed;
+		}
+
+		//The share of the answered requests that got less than the full budget.
+		public synchronized double reducedRate() {
+			return this.completed == 0 ? 0 : (double) this.reduced / this.completed;
+		}
+
+		//The average time budget of the answered requests, in ms.
+		public synchronized double averageBudgetMillis() {
+			return this.completed == 0 ? 0 : (double) this.budgetMillis / this.completed;
+		}
+
+		//The latency in ms that 'percent' percent of the last answers were within.
+		public synchronized double latencyPercentile(double percent) {
+			int count = (int) Math.min(this.completed, LATENCY_SAMPLES);
+			if (count == 0) {
+				return 0;
+			}
+			long sorted[] = Arrays.copyOf(this.latencies, count);
+			Arrays.sort(sorted);
+			int index = (int) Math.ceil(percent / 100 * count) - 1;
+			return sorted[Math.max(0, Math.min(count - 1, index))] / 1e6;
+		}
+
+		synchronized void recordAnswer(long latencyNanos, long budget, boolean wasReduced) {
+			this.latencies[(int) (this.completed % LATENCY_SAMPLES)] = latencyNanos;
+			this.completed++;
+			this.budgetMillis += budget;
+			if (wasReduced) {
+				this.reduced++;
+			}
+		}
+
+		@Override
+		public String toString() {
+			synchronized (this) {
+				return String.format("%-12s %7d submitted %6d rejected %7d answered  p50 %6.1f  p95 %6.1f  p99 %6.1f ms"
+						+ "  reduced %5.1f%%  budget %5.1f ms", this.name, this.submitted, this.rejected, this.completed,
+						latencyPercentile(50), latencyPercentile(95), latencyPercentile(99), 100 * reducedRate(),
+						averageBudgetMillis());
+			}
+		}
+	}
+
+	/*
+	A move waiting to be searched.
+	*/
+	private final class Request implements Comparable<Request> {
+		final ConnectFourModel board;
+		final int player;
+		final Tier tier;
+		final long submitted = System.nanoTime();
+		final long deadline;
+		final FutureTask<Integer> task;
+
+		Request(ConnectFourModel board, int player, Tier tier) {
+			this.board = board;
+			this.player = player;
+			this.tier = tier;
+			this.deadline = this.submitted + tier.targetMillis * 1000000L;
+			this.task = new FutureTask<Integer>(new Callable<Integer>() {
+				@Override
+				public Integer call() {
+					return search();
+				}
+			});
+		}
+
+		//Searches the move within the budget the service can give it now.
+		int search() {
+			long budget = budgetMillis(this);
+			boolean wasReduced = budget < this.tier.fullMillis;
+			SearchLimits limits = budget >= MIN_BUDGET_MILLIS
+					? new SearchLimits(this.tier.maxDepth, budget, 0)
+					: SearchLimits.depth(MIN_DEPTH);
+			long start = System.nanoTime();
+			int move = MoveService.this.engine.search(this.player, this.board, limits);
+			long end = System.nanoTime();
+			serviceDone(end - start);
+			this.tier.recordAnswer(end - this.submitted, Math.max(0, budget), wasReduced);
+			return move;
+		}
+
+		@Override
+		public int compareTo(Request other) {
+			return Long.signum(this.deadline - other.deadline);
+		}
+	}
+
+	//Represents the engine all the threads search with.
+	private final AlphaBetaEngine engine;
+
+	//Represents the tiers requests can be made in.
+	private final Tier tiers[];
+
+	//Represents the requests waiting, earliest deadline first, guarded by the queue.
+	private final PriorityQueue<Request> queue = new PriorityQueue<Request>();
+
+	//Represents the most requests that can wait.
+	private final int capacity;
+
+	//Represents the threads that search.
+	private final Thread threads[];
+
+	//Represents the number of threads searching right now, guarded by the queue.
+	private int busy;
+
+	//Represents whether shutdown() was called, guarded by the queue.
+	private boolean stopped;
+
+	//Represents the average time a search takes in ns, updated after every search.
+	private final AtomicLong averageServiceNanos = new AtomicLong(20000000L);
+
+	//Represents the machine's load and when it was last read.
+	private final OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+	private volatile double loadFactor = 1;
+	private volatile long loadSampled;
+
+	//Initializes a service with the default tiers.
+	public MoveService(int threads, int capacity) {
+		this(threads, capacity, defaultTiers());
+	}
+
+	public MoveService(int threads, int capacity, Tier... tiers) {
+		if (threads < 1 || capacity < 1 || tiers.length == 0) {
+			throw new IllegalArgumentException("A service needs threads, room for requests and a tier.");
+		}
+		this.engine = new AlphaBetaEngine(20);
+		this.tiers = tiers.clone();
+		this.capacity = capacity;
+		this.threads = new Thread[threads];
+		for (int t = 0; t < threads; t++) {
+			this.threads[t] = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					serve();
+				}
+			}, "move-service-" + t);
+			this.threads[t].setDaemon(true);
+			this.threads[t].start();
+		}
+	}
+
+	//Players waiting on a move, players of games in the background and batch
+	//analysis: answered within 250 ms, 1 s and 5 s.
+	public static Tier[] defaultTiers() {
+		return new Tier[] {
+			new Tier("interactive", 250, 100, 12, 1.0),
+			new Tier("background", 1000, 200, 14, 0.6),
+			new Tier("batch", 5000, 500, 16, 0.3)
+		};
+	}
+
+	//The tier with the given name.
+	public Tier getTier(String name) {
+		for (Tier tier : this.tiers) {
+			if (tier.name.equals(name)) {
+				return tier;
+			}
+		}
+		throw new IllegalArgumentException("Unknown tier '" + name + "'");
+	}
+
+	public Tier[] getTiers() {
+		return this.tiers.clone();
+	}
+
+	/**
+	 * Queues a move for 'player' on a copy of 'board'. The future gives the column,
+	 * or -1 if there is no legal move.
+	 * @throws RejectedExecutionException if the service is too busy for the tier.
+	 */
+	public FutureTask<Integer> submit(ConnectFourModel board, int player, Tier tier) {
+		Request request = new Request(board.copy(), player, tier);
+		synchronized (this.queue) {
+			synchronized (tier) {
+				tier.submitted++;
+			}
+			if (this.stopped || !admits(request)) {
+				synchronized (tier) {
+					tier.rejected++;
+				}
+				throw new RejectedExecutionException("Too busy for a " + tier.name + " request");
+			}
+			this.queue.add(request);
+			this.queue.notify();
+		}
+		return request.task;
+	}
+
+	//Stops taking requests. Those already queued are still answered.
+	public void shutdown() {
+		synchronized (this.queue) {
+			this.stopped = true;
+			this.queue.notifyAll();
+		}
+	}
+
+	//One line for every tier.
+	public String report() {
+		StringBuilder report = new StringBuilder();
+		for (Tier tier : this.tiers) {
+			report.append(tier).append('\n');
+		}
+		return report.toString();
+	}
+
+	//Whether 'request' can be queued. Only called while holding the queue's lock.
+	private boolean admits(Request request) {
+		if (this.queue.size() >= this.capacity * request.tier.queueShare) {
+			return false;
+		}
+		return expectedWaitNanos(request) <= request.tier.targetMillis * 1000000L;
+	}
+
+	//How long 'request' would wait if queued now: only the requests due before it
+	//are taken before it. Only called while holding the queue's lock.
+	private long expectedWaitNanos(Request request) {
+		int ahead = 0;
+		for (Request queued : this.queue) {
+			if (queued.deadline <= request.deadline) {
+				ahead++;
+			}
+		}
+		return ahead * this.averageServiceNanos.get() / this.threads.length;
+	}
+
+	//The time a request can search for, in ms, when it starts now: the least of the
+	//tier's full budget, its share of the threads and the time left to its target,
+	//scaled down when the machine is loaded. Below MIN_BUDGET_MILLIS only a quick
+	//search is made.
+	private long budgetMillis(Request request) {
+		int waiting;
+		int searching;
+		synchronized (this.queue) {
+			waiting = this.queue.size();
+			searching = this.busy;
+		}
+		double budget = request.tier.fullMillis;
+		int demand = waiting + searching;
+		if (demand > this.threads.length) {
+			budget = budget * this.threads.length / demand;
+		}
+		long left = (request.deadline - System.nanoTime()) / 1000000L - SAFETY_MILLIS;
+		budget = Math.min(budget, left) * loadFactor();
+		return (long) budget;
+	}
+
+	//How much of the machine the service can use: 1, or less when the load average
+	//is above the number of processors.
+	private double loadFactor() {
+		long now = System.nanoTime();
+		if (now - this.loadSampled > LOAD_SAMPLE_MILLIS * 1000000L) {
+			this.loadSampled = now;
+			double load = this.os.getSystemLoadAverage();
+			int processors = this.os.getAvailableProcessors();
+			//The service's own threads count towards the load as well
+			double others = load - Math.min(this.busy, processors);
+			this.loadFactor = load < 0 || others <= processors ? 1 : Math.max(0.25, processors / others);
+		}
+		return this.loadFactor;
+	}
+
+	private void serviceDone(long nanos) {
+		//An average over roughly the last 16 searches
+		long average = this.averageServiceNanos.get();
+		this.averageServiceNanos.set(average + (nanos - average) / 16);
+	}
+
+	//Run by every thread: answers the request whose target runs out first.
+	private void serve() {
+		while (true) {
+			Request request;
+			synchronized (this.queue) {
+				while (this.queue.isEmpty() && !this.stopped) {
+					try {
+						this.queue.wait();
+					} catch (InterruptedException e) {
+						return;
+					}
+				}
+				if (this.queue.isEmpty()) {
+					return;
+				}
+				request = this.queue.poll();
+				this.busy++;
+			}
+			try {
+				request.task.run();
+			} finally {
+				synchronized (this.queue) {
+					this.busy--;
+				}
+			}
+		}
+	}
+
+	public static void main(String args[]) throws Exception {
+		int threads = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+		double rate = args.length > 1 ? Double.parseDouble(args[1]) : 50;
+		int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+
+		Random random = new Random(1);
+		ArrayList<ConnectFourModel> positions = new ArrayList<ConnectFourModel>();
+		while (positions.size() < 1000) {
+			ConnectFourModel board = new ConnectFourModel();
+			int moves = random.nextInt(30);
+			for (int i = 0; i < moves && board.checkWin() == 0 && !board.boardIsFull(); i++) {
+				int col = random.nextInt(board.getCols());
+				if (!board.columnIsFull(col)) {
+					board.dropDisc(col);
+				}
+			}
+			if (board.checkWin() == 0 && !board.boardIsFull()) {
+				positions.add(board);
+			}
+		}
+
+		//Requests arrive at random times, half of them interactive
+		MoveService service = new MoveService(threads, 64);
+		Tier tiers[] = service.getTiers();
+		ArrayList<FutureTask<Integer>> answers = new ArrayList<FutureTask<Integer>>();
+		long end = System.nanoTime() + seconds * 1000000000L;
+		long next = System.nanoTime();
+		while (next < end) {
+			next += (long) (-Math.log(1 - random.nextDouble()) / rate * 1e9);
+			long sleep = next - System.nanoTime();
+			if (sleep > 0) {
+				Thread.sleep(sleep / 1000000L, (int) (sleep % 1000000L));
+			}
+			ConnectFourModel position = positions.get(random.nextInt(positions.size()));
+			Tier tier = tiers[random.nextBoolean() ? 0 : 1 + random.nextInt(tiers.length - 1)];
+			try {
+				answers.add(service.submit(position, position.getCurrentColor(), tier));
+			} catch (RejectedExecutionException e) {
+				//Counted by the tier
+			}
+		}
+		for (FutureTask<Integer> answer : answers) {
+			answer.get();
+		}
+		service.shutdown();
+
+		System.out.printf("%.0f requests a second for %d s on %d threads%n", rate, seconds, threads);
+		System.out.print(service.report());
+	}
+}
@@ -0,0 +1,395 @@
+package connectfour;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+
+/*
+Scores positions with a small neural network instead of counting lines, so that
+a search needs fewer plies to see as much. The network is trained offline (see
+NetworkTrainer) and its weights are read from a file.
+
+The network has three layers:
+- the input is one feature for every tile that has a disc, split by whether the
+  disc belongs to the player to move or to the other player (2 x 49 features, one
+  for each bit of the BitBoard layout). The first layer only ever adds up the
+  weights of the features that are on, so its sums (the accumulator) can be kept
+  up to date as discs are played and taken back, one column of weights at a
+  time, instead of being worked out from the whole board (like NNUE). An
+  Accumulator keeps the sums for both players at once, since the player to move
+  changes with every disc.
+- a hidden layer of 'hidden2' units.
+- one output, the score for the player to move, in the units of BitBoardEvaluator.
+
+Every weight is an integer, scaled from the trained weights: the first layer and the
+units in between by ACTIVATION (127), so a unit is 0 to 127, and the weights of
+the other layers by WEIGHT_SCALE (64). Won, lost and drawn positions are scored
+by BitBoardEvaluator, so the search sees exactly the same end of game scores.
+
+scoreChildren() works out the accumulator of the position once and adds one
+column of weights for each move. AlphaBetaEngine keeps an Accumulator for each
+search and updates it as it plays and takes back moves. scoreBatch() scores the
+children MctsEngine adds to its tree all at once. The weights are stored as
+shorts in the file and widened to ints when they are read, which the JIT turns
+into faster loops. The evaluator keeps nothing between calls but its weights (and
+arrays to work in, one set for each thread), so engines on several threads can
+share it.
+*/
+public class NetworkEvaluator implements Evaluator {
+
+	//Represents the first int of a weights file, "C4NN".
+	static final int MAGIC = 0x43344E4E;
+
+	//Represents the version of the weights file format.
+	static final int VERSION = 1;
+
+	//Represents the number of features of each player: one for each bit of a BitBoard.
+	static final int SQUARES = BitBoard.WIDTH * (BitBoard.HEIGHT + 1);
+
+	//Represents the number of inputs: the player to move's discs, then the other player's.
+	static final int INPUTS = 2 * SQUARES;
+
+	//Represents the value of a unit that is fully on, and the scale of the first layer.
+	static final int ACTIVATION = 127;
+
+	//Represents the scale of the weights of the second and output layers.
+	static final int WEIGHT_SCALE = 64;
+
+	//Represents the number of units of the first and second layer.
+	private final int hidden1;
+	private final int hidden2;
+
+	//Represents the score a raw output of 1.0 stands for.
+	private final int outputScale;
+
+	//Represents the weights of the first layer, 'hidden1' for each input, and its biases.
+	private final int inputWeights[];
+	private final int inputBiases[];
+
+	//Represents the weights of the second layer, 'hidden1' for each unit, and its biases.
+	private final int hiddenWeights[];
+	private final int hiddenBiases[];
+
+	//Represents the weights of the output, one for each unit of the second layer, and its bias.
+	private final int outputWeights[];
+	private final int outputBias;
+
+	//Represents how won, lost and full boards are scored.
+	private final BitBoardEvaluator terminal = new BitBoardEvaluator();
+
+	//Represents the arrays each thread works out positions in.
+	private final ThreadLocal<Scratch> scratch = new ThreadLocal<Scratch>() {
+		@Override
+		protected Scratch initialValue() {
+			return new Scratch();
+		}
+	};
+
+	/*
+	The arrays one thread works out positions in, so that scoring allocates nothing.
+	*/
+	private final class Scratch {
+		//Represents the sums of the first layer of the position being scored, and of its parent.
+		final int sums[] = new int[hidden1];
+		final int parent[] = new int[hidden1];
+
+		//Represents the units of the first layer, between 0 and ACTIVATION, of one
+		//position and of the four positions scoreBatch() works on at once.
+		final int units[] = new int[hidden1];
+		final int batchUnits[] = new int[4 * hidden1];
+	}
+
+	NetworkEvaluator(int hidden1, int hidden2, int outputScale, short inputWeights[], int inputBiases[],
+			short hiddenWeights[], int hiddenBiases[], short outputWeights[], int outputBias) {
+		this.hidden1 = hidden1;
+		this.hidden2 = hidden2;
+		this.outputScale = outputScale;
+		this.inputWeights = widen(inputWeights);
+		this.inputBiases = inputBiases;
+		this.hiddenWeights = widen(hiddenWeights);
+		this.hiddenBiases = hiddenBiases;
+		this.outputWeights = widen(outputWeights);
+		this.outputBias = outputBias;
+	}
+
+	//Reads the weights NetworkTrainer wrote to 'file'.
+	public static NetworkEvaluator load(File file) throws IOException {
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+		try {
+			if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+				throw new IOException(file + " is not a network weights file of version " + VERSION);
+			}
+			if (in.readInt() != INPUTS || in.readInt() != ACTIVATION || in.readInt() != WEIGHT_SCALE) {
+				throw new IOException(file + " was made for another board or scaling");
+			}
+			int hidden1 = in.readInt();
+			int hidden2 = in.readInt();
+			int outputScale = in.readInt();
+			if (hidden1 < 1 || hidden2 < 1 || hidden1 > 4096 || hidden2 > 4096) {
+				throw new IOException(file + " has layers of " + hidden1 + " and " + hidden2 + " units");
+			}
+			int inputBiases[] = readInts(in, hidden1);
+			short inputWeights[] = readShorts(in, INPUTS * hidden1);
+			int hiddenBiases[] = readInts(in, hidden2);
+			short hiddenWeights[] = readShorts(in, hidden2 * hidden1);
+			int outputBias = in.readInt();
+			short outputWeights[] = readShorts(in, hidden2);
+			return new NetworkEvaluator(hidden1, hidden2, outputScale, inputWeights, inputBiases,
+					hiddenWeights, hiddenBiases, outputWeights, outputBias);
+		} finally {
+			in.close();
+		}
+	}
+
+	private static int[] widen(short values[]) {
+		int wide[] = new int[values.length];
+		for (int i = 0; i < values.length; i++) {
+			wide[i] = values[i];
+		}
+		return wide;
+	}
+
+	private static int[] readInts(DataInputStream in, int count) throws IOException {
+		int values[] = new int[count];
+		for (int i = 0; i < count; i++) {
+			values[i] = in.readInt();
+		}
+		return values;
+	}
+
+	private static short[] readShorts(DataInputStream in, int count) throws IOException {
+		short values[] = new short[count];
+		for (int i = 0; i < count; i++) {
+			values[i] = in.readShort();
+		}
+		return values;
+	}
+
+	public int getHidden1() {
+		return this.hidden1;
+	}
+
+	public int getHidden2() {
+		return this.hidden2;
+	}
+
+	/*
+	The sums of the first layer for a position, from the side of both players, kept
+	up to date as discs are played and taken back. Make one with newAccumulator().
+	*/
+	public final class Accumulator {
+		//Represents the sums with the red player's discs as the player to move's.
+		final int red[] = new int[hidden1];
+
+		//Represents the sums with the black player's discs as the player to move's.
+		final int black[] = new int[hidden1];
+
+		Accumulator() {
+			System.arraycopy(inputBiases, 0, this.red, 0, hidden1);
+			System.arraycopy(inputBiases, 0, this.black, 0, hidden1);
+		}
+
+		//Adds a disc of 'color' (1 for red, 2 for black) at bit 'bit' of the BitBoard layout.
+		public void play(int bit, int color) {
+			update(bit, color, 1);
+		}
+
+		//Takes back a disc play() added.
+		public void undo(int bit, int color) {
+			update(bit, color, -1);
+		}
+
+		private void update(int bit, int color, int sign) {
+			boolean isRed = color == 1;
+			addColumn(isRed ? this.red : this.black, bit, sign);
+			addColumn(isRed ? this.black : this.red, SQUARES + bit, sign);
+		}
+
+		public void copyFrom(Accumulator other) {
+			System.arraycopy(other.red, 0, this.red, 0, hidden1);
+			System.arraycopy(other.black, 0, this.black, 0, hidden1);
+		}
+
+		//The score of the position for 'colorToMove', the player to move, from the
+		//network alone. The caller checks for won and full boards.
+		public int evaluate(int colorToMove) {
+			return forward(colorToMove == 1 ? this.red : this.black, scratch.get().units);
+		}
+	}
+
+	//Makes an accumulator of the empty board.
+	public Accumulator newAccumulator() {
+		return new Accumulator();
+	}
+
+	//Makes an accumulator of 'board'.
+	public Accumulator newAccumulator(ConnectFourModel board) {
+		Accumulator accumulator = new Accumulator();
+		BitBoard bits = BitBoard.fromModel(board);
+		int mover = board.getCurrentColor();
+		int other = mover == board.RED ? board.BLACK : board.RED;
+		for (long discs = bits.getPosition(); discs != 0; discs &= discs - 1) {
+			accumulator.play(Long.numberOfTrailingZeros(discs), mover);
+		}
+		for (long discs = bits.getPosition() ^ bits.getMask(); discs != 0; discs &= discs - 1) {
+			accumulator.play(Long.numberOfTrailingZeros(discs), other);
+		}
+		return accumulator;
+	}
+
+	@Override
+	public int score(int player, ConnectFourModel board, int currentPly) {
+		if (board.checkWin() != 0 || board.boardIsFull()) {
+			return this.terminal.score(player, board, currentPly);
+		}
+		BitBoard bits = BitBoard.fromModel(board);
+		Scratch scratch = this.scratch.get();
+		refresh(scratch.sums, bits.getPosition(), bits.getPosition() ^ bits.getMask());
+		int score = forward(scratch.sums, scratch.units);
+		return board.getCurrentColor() == player ? score : -score;
+	}
+
+	@Override
+	public void scoreChildren(int player, ConnectFourModel board, int currentPly, int scores[]) {
+		if (board.checkWin() != 0) {
+			Evaluator.super.scoreChildren(player, board, currentPly, scores);
+			return;
+		}
+		BitBoard bits = BitBoard.fromModel(board);
+		long mover = bits.getPosition();
+		long mask = bits.getMask();
+		//After the move the other player is to move, and the mover's discs are theirs
+		Scratch scratch = this.scratch.get();
+		refresh(scratch.parent, mover ^ mask, mover);
+		int childColor = board.getCurrentColor() == board.RED ? board.BLACK : board.RED;
+		for (int col = 0; col < BitBoard.WIDTH; col++) {
+			if ((mask & BitBoard.topMask(col)) != 0) {
+				scores[col] = NO_MOVE;
+				continue;
+			}
+			long move = (mask + BitBoard.bottomMask(col)) & BitBoard.columnMask(col);
+			if (BitBoard.alignment(mover | move) || Long.bitCount(mask) + 1 == BitBoard.WIDTH * BitBoard.HEIGHT) {
+				scores[col] = scoreChild(player, board, col);
+				continue;
+			}
+			System.arraycopy(scratch.parent, 0, scratch.sums, 0, this.hidden1);
+			addColumn(scratch.sums, SQUARES + Long.numberOfTrailingZeros(move), 1);
+			int score = forward(scratch.sums, scratch.units);
+			scores[col] = childColor == player ? score : -score;
+		}
+	}
+
+	//Scores the board after a move the slow way, for moves that end the game.
+	private int scoreChild(int player, ConnectFourModel board, int col) {
+		ConnectFourModel child = board.copy();
+		int row = board.getRows() - 1;
+		while (board.getGameBoard()[row][col] != board.EMPTY) {
+			row--;
+		}
+		child.placeDisc(row, col);
+		child.switchColor();
+		return this.terminal.score(player, child, 0);
+	}
+
+	/**
+	 * Scores 'count' positions at once, each for its player to move, from the
+	 * network alone; the caller checks for won and full boards. Positions are
+	 * given as in BitBoard: the discs of the player to move and the mask of every
+	 * disc. The second layer is worked out for four positions at a time, so each
+	 * weight is read once for all four, and no board has to be made.
+	 */
+	public void scoreBatch(long positions[], long masks[], int count, int scores[]) {
+		Scratch scratch = this.scratch.get();
+		int units[] = scratch.batchUnits;
+		int h = this.hidden1;
+		int n = 0;
+		for (; n + 4 <= count; n += 4) {
+			for (int k = 0; k < 4; k++) {
+				refresh(scratch.sums, positions[n + k], positions[n + k] ^ masks[n + k]);
+				for (int i = 0; i < h; i++) {
+					units[k * h + i] = clamp(scratch.sums[i]);
+				}
+			}
+			long out0 = this.outputBias, out1 = this.outputBias, out2 = this.outputBias, out3 = this.outputBias;
+			for (int j = 0; j < this.hidden2; j++) {
+				int row = j * h;
+				int sum0 = this.hiddenBiases[j], sum1 = sum0, sum2 = sum0, sum3 = sum0;
+				for (int i = 0; i < h; i++) {
+					int weight = this.hiddenWeights[row + i];
+					sum0 += weight * units[i];
+					sum1 += weight * units[h + i];
+					sum2 += weight * units[2 * h + i];
+					sum3 += weight * units[3 * h + i];
+				}
+				int weight = this.outputWeights[j];
+				out0 += weight * clamp(sum0 / WEIGHT_SCALE);
+				out1 += weight * clamp(sum1 / WEIGHT_SCALE);
+				out2 += weight * clamp(sum2 / WEIGHT_SCALE);
+				out3 += weight * clamp(sum3 / WEIGHT_SCALE);
+			}
+			scores[n] = scale(out0);
+			scores[n + 1] = scale(out1);
+			scores[n + 2] = scale(out2);
+			scores[n + 3] = scale(out3);
+		}
+		for (; n < count; n++) {
+			refresh(scratch.sums, positions[n], positions[n] ^ masks[n]);
+			scores[n] = forward(scratch.sums, scratch.units);
+		}
+	}
+
+	//Works out the sums of the first layer from the discs of the player to move and the other player's.
+	private void refresh(int sums[], long mover, long other) {
+		System.arraycopy(this.inputBiases, 0, sums, 0, this.hidden1);
+		for (long discs = mover; discs != 0; discs &= discs - 1) {
+			addColumn(sums, Long.numberOfTrailingZeros(discs), 1);
+		}
+		for (long discs = other; discs != 0; discs &= discs - 1) {
+			addColumn(sums, SQUARES + Long.numberOfTrailingZeros(discs), 1);
+		}
+	}
+
+	//Adds (sign 1) or takes away (sign -1) the weights of one input.
+	private void addColumn(int sums[], int input, int sign) {
+		int base = input * this.hidden1;
+		if (sign > 0) {
+			for (int i = 0; i < this.hidden1; i++) {
+				sums[i] += this.inputWeights[base + i];
+			}
+		} else {
+			for (int i = 0; i < this.hidden1; i++) {
+				sums[i] -= this.inputWeights[base + i];
+			}
+		}
+	}
+
+	//The score of the player to move from the sums of the first layer. The units of
+	//the second layer go straight into the output, so only the first layer's are kept.
+	private int forward(int sums[], int units[]) {
+		for (int i = 0; i < this.hidden1; i++) {
+			units[i] = clamp(sums[i]);
+		}
+		long output = this.outputBias;
+		for (int j = 0; j < this.hidden2; j++) {
+			int row = j * this.hidden1;
+			int sum = this.hiddenBiases[j];
+			for (int i = 0; i < this.hidden1; i++) {
+				sum += this.hiddenWeights[row + i] * units[i];
+			}
+			output += this.outputWeights[j] * clamp(sum / WEIGHT_SCALE);
+		}
+		return scale(output);
+	}
+
+	//Turns the output of the network into a score.
+	private int scale(long output) {
+		return (int) Math.round((double) output * this.outputScale / (ACTIVATION * WEIGHT_SCALE));
+	}
+
+	//Keeps a unit between off (0) and fully on (ACTIVATION).
+	private static int clamp(int value) {
+		return value < 0 ? 0 : value > ACTIVATION ? ACTIVATION : value;
+	}
+}
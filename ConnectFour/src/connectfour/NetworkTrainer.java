@@ -0,0 +1,360 @@
+package connectfour;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+
+/*
+Trains the network of NetworkEvaluator and writes its weights file.
+
+The network learns to give, from the board alone, the score an Alpha-Beta pruning
+search of 'depth' plies gives it (with BitBoardEvaluator), so that one call of the
+network sees about as much as that search. The positions come from games of
+sensible random moves (always taking a win and blocking the other player's win),
+stopped at a random point, and every position is also learned as its mirror
+image. Scores are cut off at LABEL_LIMIT so that the few won and lost lines do
+not outweigh the rest; the search scores the ends of games itself.
+
+Training runs in floating point (Adam, mean squared error) and the weights are
+then turned into the ints NetworkEvaluator reads. One position in ten is kept
+out of training and used to check the network with int weights, and the static
+score of BitBoardEvaluator, against the search.
+
+Usage: java connectfour.NetworkTrainer <file> [positions] [depth] [epochs] [random seed]
+   positions    the number of positions to label (default 20000)
+   depth        the plies of the search that labels them (default 6)
+   epochs       the passes over the positions (default 30)
+*/
+public class NetworkTrainer {
+
+	//Represents the number of units of the first and second layer.
+	private static final int HIDDEN1 = 32;
+	private static final int HIDDEN2 = 16;
+
+	//Represents the score an output of 1.0 stands for, and the largest score learned.
+	private static final int OUTPUT_SCALE = 64;
+	private static final int LABEL_LIMIT = 60;
+
+	//Represents the positions trained on at once, and the step size of Adam.
+	private static final int BATCH = 128;
+	private static final double LEARNING_RATE = 0.002;
+
+	//Represents the largest weights of the second and output layers, and of the
+	//first, that still fit their ints.
+	private static final double MAX_WEIGHT = 127.0 / NetworkEvaluator.WEIGHT_SCALE;
+	private static final double MAX_INPUT_WEIGHT = 32767.0 / NetworkEvaluator.ACTIVATION;
+
+	//Represents the weights being trained, laid out as in NetworkEvaluator.
+	private final double w1[] = new double[NetworkEvaluator.INPUTS * HIDDEN1];
+	private final double b1[] = new double[HIDDEN1];
+	private final double w2[] = new double[HIDDEN2 * HIDDEN1];
+	private final double b2[] = new double[HIDDEN2];
+	private final double w3[] = new double[HIDDEN2];
+	private final double b3[] = new double[1];
+
+	//Represents the gradients and the two moments of Adam of each group of weights.
+	private final double gradients[][];
+	private final double moments[][];
+	private final double squares[][];
+
+	//Represents the number of steps taken.
+	private int steps;
+
+	public NetworkTrainer(Random random) {
+		double weights[][] = {this.w1, this.b1, this.w2, this.b2, this.w3, this.b3};
+		this.gradients = new double[weights.length][];
+		this.moments = new double[weights.length][];
+		this.squares = new double[weights.length][];
+		for (int k = 0; k < weights.length; k++) {
+			this.gradients[k] = new double[weights[k].length];
+			this.moments[k] = new double[weights[k].length];
+			this.squares[k] = new double[weights[k].length];
+		}
+		for (int i = 0; i < this.w1.length; i++) {
+			this.w1[i] = (random.nextDouble() - 0.5) * 0.2;
+		}
+		for (int i = 0; i < this.w2.length; i++) {
+			this.w2[i] = (random.nextDouble() - 0.5) * 2 / Math.sqrt(HIDDEN1);
+		}
+		for (int i = 0; i < this.w3.length; i++) {
+			this.w3[i] = (random.nextDouble() - 0.5) * 2 / Math.sqrt(HIDDEN2);
+		}
+		Arrays.fill(this.b1, 0.5);
+		Arrays.fill(this.b2, 0.5);
+	}
+
+	public static void main(String args[]) throws IOException {
+		if (args.length < 1) {
+			System.err.println("Usage: java connectfour.NetworkTrainer <file> [positions] [depth] [epochs] [random seed]");
+			System.exit(2);
+		}
+		File file = new File(args[0]);
+		int count = args.length > 1 ? Integer.parseInt(args[1]) : 20000;
+		int depth = args.length > 2 ? Integer.parseInt(args[2]) : 6;
+		int epochs = args.length > 3 ? Integer.parseInt(args[3]) : 30;
+		Random random = new Random(args.length > 4 ? Long.parseLong(args[4]) : 1);
+
+		long start = System.nanoTime();
+		ArrayList<long[]> positions = new ArrayList<long[]>();
+		ArrayList<Integer> labels = new ArrayList<Integer>();
+		ArrayList<Integer> statics = new ArrayList<Integer>();
+		label(count, depth, random, positions, labels, statics);
+		System.out.printf("Labelled %d positions at depth %d in %.1f s%n", positions.size(), depth, (System.nanoTime() - start) / 1e9);
+
+		int validation = positions.size() / 10;
+		NetworkTrainer trainer = new NetworkTrainer(random);
+		int order[] = new int[2 * (positions.size() - validation)];
+		for (int i = 0; i < order.length; i++) {
+			order[i] = i;
+		}
+		for (int epoch = 1; epoch <= epochs; epoch++) {
+			shuffle(order, random);
+			double loss = 0;
+			for (int first = 0; first < order.length; first += BATCH) {
+				int last = Math.min(order.length, first + BATCH);
+				for (int n = first; n < last; n++) {
+					//Every position is learned as it is and as its mirror image
+					int index = validation + order[n] / 2;
+					long position[] = positions.get(index);
+					boolean mirror = (order[n] & 1) != 0;
+					//mirrorKey() turns any bits of the layout round, not only keys
+					long mover = mirror ? BitBoard.mirrorKey(position[0]) : position[0];
+					long mask = mirror ? BitBoard.mirrorKey(position[1]) : position[1];
+					loss += trainer.backward(mover, mask, labels.get(index) / (double) OUTPUT_SCALE, last - first);
+				}
+				trainer.step();
+			}
+			if (epoch == 1 || epoch % 5 == 0 || epoch == epochs) {
+				System.out.printf("epoch %3d  training error %6.2f  validation error %6.2f%n", epoch,
+						Math.sqrt(loss / order.length) * OUTPUT_SCALE, trainer.validationError(positions, labels, validation));
+			}
+		}
+
+		NetworkEvaluator network = trainer.quantize();
+		trainer.write(file);
+		double staticError = 0;
+		double networkError = 0;
+		long movers[] = new long[validation];
+		long masks[] = new long[validation];
+		for (int i = 0; i < validation; i++) {
+			movers[i] = positions.get(i)[0];
+			masks[i] = positions.get(i)[1];
+		}
+		int scores[] = new int[validation];
+		network.scoreBatch(movers, masks, validation, scores);
+		for (int i = 0; i < validation; i++) {
+			staticError += square(statics.get(i) - labels.get(i));
+			networkError += square(scores[i] - labels.get(i));
+		}
+		System.out.printf("On %d positions not trained on, the root mean squared error against the depth %d score is%n", validation, depth);
+		System.out.printf("   %.2f for BitBoardEvaluator and %.2f for the network with int weights%n",
+				Math.sqrt(staticError / validation), Math.sqrt(networkError / validation));
+		System.out.println("Wrote " + file + " in " + (System.nanoTime() - start) / 1000000000 + " s");
+	}
+
+	//Plays sensible random games and labels a position of each with the search score
+	//and the static score of the player to move.
+	private static void label(int count, int depth, Random random, ArrayList<long[]> positions,
+			ArrayList<Integer> labels, ArrayList<Integer> statics) {
+		AlphaBetaEngine engine = new AlphaBetaEngine(20);
+		BitBoardEvaluator evaluator = new BitBoardEvaluator();
+		while (positions.size() < count) {
+			ConnectFourModel board = new ConnectFourModel();
+			int moves = 2 + random.nextInt(34);
+			for (int i = 0; i < moves && board.checkWin() == 0 && !board.boardIsFull(); i++) {
+				int col = ForcedMoves.find(BitBoard.fromModel(board));
+				while (col < 0 || board.columnIsFull(col)) {
+					col = random.nextInt(board.getCols());
+				}
+				board.dropDisc(col);
+			}
+			if (board.checkWin() != 0 || board.boardIsFull()) {
+				continue;
+			}
+			int score = engine.searchLines(board, SearchLimits.depth(depth), 1).get(0).getScore();
+			BitBoard bits = BitBoard.fromModel(board);
+			positions.add(new long[] {bits.getPosition(), bits.getMask()});
+			labels.add(Math.max(-LABEL_LIMIT, Math.min(LABEL_LIMIT, score)));
+			statics.add(Math.max(-LABEL_LIMIT, Math.min(LABEL_LIMIT,
+					evaluator.score(board.getCurrentColor(), board, 0))));
+		}
+	}
+
+	//Runs one position forwards and adds its gradients, for a batch of 'batch'
+	//positions. Returns its squared error.
+	private double backward(long mover, long mask, double target, int batch) {
+		int active[] = new int[Long.bitCount(mask)];
+		int n = 0;
+		for (long discs = mover; discs != 0; discs &= discs - 1) {
+			active[n++] = Long.numberOfTrailingZeros(discs);
+		}
+		for (long discs = mover ^ mask; discs != 0; discs &= discs - 1) {
+			active[n++] = NetworkEvaluator.SQUARES + Long.numberOfTrailingZeros(discs);
+		}
+
+		double sum1[] = this.b1.clone();
+		for (int input : active) {
+			for (int i = 0; i < HIDDEN1; i++) {
+				sum1[i] += this.w1[input * HIDDEN1 + i];
+			}
+		}
+		double unit1[] = new double[HIDDEN1];
+		for (int i = 0; i < HIDDEN1; i++) {
+			unit1[i] = clamp(sum1[i]);
+		}
+		double sum2[] = new double[HIDDEN2];
+		double unit2[] = new double[HIDDEN2];
+		double output = this.b3[0];
+		for (int j = 0; j < HIDDEN2; j++) {
+			sum2[j] = this.b2[j];
+			for (int i = 0; i < HIDDEN1; i++) {
+				sum2[j] += this.w2[j * HIDDEN1 + i] * unit1[i];
+			}
+			unit2[j] = clamp(sum2[j]);
+			output += this.w3[j] * unit2[j];
+		}
+
+		double error = output - target;
+		double gradient = 2 * error / batch;
+		this.gradients[5][0] += gradient;
+		double delta1[] = new double[HIDDEN1];
+		for (int j = 0; j < HIDDEN2; j++) {
+			this.gradients[4][j] += gradient * unit2[j];
+			if (sum2[j] <= 0 || sum2[j] >= 1) continue;
+			double delta2 = gradient * this.w3[j];
+			this.gradients[3][j] += delta2;
+			for (int i = 0; i < HIDDEN1; i++) {
+				this.gradients[2][j * HIDDEN1 + i] += delta2 * unit1[i];
+				delta1[i] += delta2 * this.w2[j * HIDDEN1 + i];
+			}
+		}
+		for (int i = 0; i < HIDDEN1; i++) {
+			if (sum1[i] <= 0 || sum1[i] >= 1) continue;
+			this.gradients[1][i] += delta1[i];
+			for (int input : active) {
+				this.gradients[0][input * HIDDEN1 + i] += delta1[i];
+			}
+		}
+		return error * error;
+	}
+
+	//Moves every weight by Adam's step and clears the gradients.
+	private void step() {
+		this.steps++;
+		double weights[][] = {this.w1, this.b1, this.w2, this.b2, this.w3, this.b3};
+		double correction1 = 1 - Math.pow(0.9, this.steps);
+		double correction2 = 1 - Math.pow(0.999, this.steps);
+		for (int k = 0; k < weights.length; k++) {
+			double limit = k == 2 || k == 4 ? MAX_WEIGHT : k == 0 ? MAX_INPUT_WEIGHT : Double.MAX_VALUE;
+			for (int i = 0; i < weights[k].length; i++) {
+				double g = this.gradients[k][i];
+				this.gradients[k][i] = 0;
+				this.moments[k][i] = 0.9 * this.moments[k][i] + 0.1 * g;
+				this.squares[k][i] = 0.999 * this.squares[k][i] + 0.001 * g * g;
+				double w = weights[k][i] - LEARNING_RATE * (this.moments[k][i] / correction1)
+						/ (Math.sqrt(this.squares[k][i] / correction2) + 1e-8);
+				weights[k][i] = Math.max(-limit, Math.min(limit, w));
+			}
+		}
+	}
+
+	//The root mean squared error, in score units, on the positions kept out of training.
+	private double validationError(ArrayList<long[]> positions, ArrayList<Integer> labels, int validation) {
+		NetworkEvaluator network = quantize();
+		long movers[] = new long[validation];
+		long masks[] = new long[validation];
+		for (int i = 0; i < validation; i++) {
+			movers[i] = positions.get(i)[0];
+			masks[i] = positions.get(i)[1];
+		}
+		int scores[] = new int[validation];
+		network.scoreBatch(movers, masks, validation, scores);
+		double error = 0;
+		for (int i = 0; i < validation; i++) {
+			error += square(scores[i] - labels.get(i));
+		}
+		return Math.sqrt(error / validation);
+	}
+
+	//Rounds the weights to the ints NetworkEvaluator uses.
+	private NetworkEvaluator quantize() {
+		int activation = NetworkEvaluator.ACTIVATION;
+		int hidden = NetworkEvaluator.ACTIVATION * NetworkEvaluator.WEIGHT_SCALE;
+		return new NetworkEvaluator(HIDDEN1, HIDDEN2, OUTPUT_SCALE, shorts(this.w1, activation), ints(this.b1, activation),
+				shorts(this.w2, NetworkEvaluator.WEIGHT_SCALE), ints(this.b2, hidden),
+				shorts(this.w3, NetworkEvaluator.WEIGHT_SCALE), (int) Math.round(this.b3[0] * hidden));
+	}
+
+	//Writes the weights file NetworkEvaluator.load() reads.
+	private void write(File file) throws IOException {
+		int activation = NetworkEvaluator.ACTIVATION;
+		int hidden = NetworkEvaluator.ACTIVATION * NetworkEvaluator.WEIGHT_SCALE;
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+		try {
+			out.writeInt(NetworkEvaluator.MAGIC);
+			out.writeInt(NetworkEvaluator.VERSION);
+			out.writeInt(NetworkEvaluator.INPUTS);
+			out.writeInt(NetworkEvaluator.ACTIVATION);
+			out.writeInt(NetworkEvaluator.WEIGHT_SCALE);
+			out.writeInt(HIDDEN1);
+			out.writeInt(HIDDEN2);
+			out.writeInt(OUTPUT_SCALE);
+			for (int value : ints(this.b1, activation)) {
+				out.writeInt(value);
+			}
+			for (short value : shorts(this.w1, activation)) {
+				out.writeShort(value);
+			}
+			for (int value : ints(this.b2, hidden)) {
+				out.writeInt(value);
+			}
+			for (short value : shorts(this.w2, NetworkEvaluator.WEIGHT_SCALE)) {
+				out.writeShort(value);
+			}
+			out.writeInt((int) Math.round(this.b3[0] * hidden));
+			for (short value : shorts(this.w3, NetworkEvaluator.WEIGHT_SCALE)) {
+				out.writeShort(value);
+			}
+		} finally {
+			out.close();
+		}
+	}
+
+	private static short[] shorts(double weights[], int scale) {
+		short values[] = new short[weights.length];
+		for (int i = 0; i < weights.length; i++) {
+			values[i] = (short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, Math.round(weights[i] * scale)));
+		}
+		return values;
+	}
+
+	private static int[] ints(double weights[], int scale) {
+		int values[] = new int[weights.length];
+		for (int i = 0; i < weights.length; i++) {
+			values[i] = (int) Math.round(weights[i] * scale);
+		}
+		return values;
+	}
+
+	private static double clamp(double value) {
+		return value < 0 ? 0 : value > 1 ? 1 : value;
+	}
+
+	private static double square(double value) {
+		return value * value;
+	}
+
+	private static void shuffle(int values[], Random random) {
+		for (int i = values.length - 1; i > 0; i--) {
+			int j = random.nextInt(i + 1);
+			int swap = values[i];
+			values[i] = values[j];
+			values[j] = swap;
+		}
+	}
+}
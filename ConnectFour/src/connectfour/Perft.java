@@ -0,0 +1,304 @@
+package connectfour;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/*
+Counts the leaves of the game tree to a given depth (perft), to prove that a
+board representation plays exactly the same game as ConnectFourModel and to
+compare how fast each one is.
+
+A leaf is a position at the depth asked for, or an earlier one where the game is
+over: someone has a Connect-Four (checkWin()) or the board is full
+(boardIsFull()). Every move allowed by columnIsFull() is followed. Each
+representation counts the same tree its own way:
+- model: ConnectFourModel, copying the board for every move, as the game's own
+  rules are written. This is the one the others are checked against.
+- undo: one ConnectFourModel, dropping a disc for every move and taking it
+  back with undo().
+- bitboard: BitBoard, playing on one board per ply, and counting the moves of the
+  positions one ply from the depth instead of playing them.
+
+The counts in KNOWN were made with the model and are the oracle: 'check' counts
+every one of them with every representation, on one thread and on several, and
+exits with status 1 if any count differs. The tree is split between threads at
+SPLIT plies from the position.
+
+Positions are the columns played from the empty board, counted from 1, so
+"44" is red and then black in the middle column.
+
+Usage: java connectfour.Perft [depth] [threads] [position]
+       java connectfour.Perft check [threads]
+   depth        the plies to count to (default 8)
+   threads      the threads of the parallel count (default: number of cores)
+*/
+public class Perft {
+
+	//Represents the plies from the position at which the tree is split between threads.
+	private static final int SPLIT = 2;
+
+	//Represents counts made with the model: position, depth, leaves.
+	private static final Object KNOWN[][] = {
+		{"", 1, 7L},
+		{"", 2, 49L},
+		{"", 3, 343L},
+		{"", 4, 2401L},
+		{"", 5, 16807L},
+		{"", 6, 117649L},
+		//The first games that end, after red's fourth disc
+		{"", 7, 823536L},
+		{"", 8, 5686266L},
+		//Red can win at once, either side of its line
+		{"445566", 6, 50164L},
+		//Red has won
+		{"4455667", 5, 1L},
+		{"157723417547", 7, 702037L},
+		{"235672766737365672344165", 10, 1080746L},
+		//To the full board
+		{"5454112255777257115124212673364733", 8, 75L},
+		{"73235643553244222146533471741771661261", 4, 12L},
+	};
+
+	//A way of counting the leaves.
+	public abstract static class Counter {
+
+		//Represents the name the counter is reported by.
+		private final String name;
+
+		protected Counter(String name) {
+			this.name = name;
+		}
+
+		public String getName() {
+			return this.name;
+		}
+
+		//Counts the leaves 'depth' plies from the position 'moves'.
+		public abstract long count(String moves, int depth);
+	}
+
+	//Counts with ConnectFourModel, a copy for every move.
+	public static class ModelCounter extends Counter {
+
+		public ModelCounter() {
+			super("model");
+		}
+
+		@Override
+		public long count(String moves, int depth) {
+			return leaves(play(moves), depth);
+		}
+
+		private static long leaves(ConnectFourModel board, int depth) {
+			if (depth == 0 || board.checkWin() != 0 || board.boardIsFull()) {
+				return 1;
+			}
+			long leaves = 0;
+			for (int col = 0; col < board.getCols(); col++) {
+				if (!board.columnIsFull(col)) {
+					ConnectFourModel child = board.copy();
+					child.dropDisc(col);
+					leaves += leaves(child, depth - 1);
+				}
+			}
+			return leaves;
+		}
+	}
+
+	//Counts with one ConnectFourModel, taking every move back with undo().
+	public static class UndoCounter extends Counter {
+
+		public UndoCounter() {
+			super("undo");
+		}
+
+		@Override
+		public long count(String moves, int depth) {
+			return leaves(play(moves), depth);
+		}
+
+		private static long leaves(ConnectFourModel board, int depth) {
+			if (depth == 0 || board.checkWin() != 0 || board.boardIsFull()) {
+				return 1;
+			}
+			long leaves = 0;
+			for (int col = 0; col < board.getCols(); col++) {
+				if (!board.columnIsFull(col)) {
+					board.dropDisc(col);
+					leaves += leaves(board, depth - 1);
+					board.undo();
+				}
+			}
+			return leaves;
+		}
+	}
+
+	//Counts with BitBoard, on one board per ply.
+	public static class BitBoardCounter extends Counter {
+
+		public BitBoardCounter() {
+			super("bitboard");
+		}
+
+		@Override
+		public long count(String moves, int depth) {
+			BitBoard boards[] = new BitBoard[depth + 1];
+			for (int i = 0; i <= depth; i++) {
+				boards[i] = new BitBoard();
+			}
+			boards[0].copyFrom(BitBoard.fromModel(play(moves)));
+			return leaves(boards, 0, depth);
+		}
+
+		private static long leaves(BitBoard boards[], int ply, int depth) {
+			BitBoard board = boards[ply];
+			if (depth == 0 || board.isFull() || board.lastMoveWon()) {
+				return 1;
+			}
+			long possible = board.possible();
+			//Every move from here is a leaf, whether or not it ends the game
+			if (depth == 1) {
+				return Long.bitCount(possible);
+			}
+			long leaves = 0;
+			BitBoard child = boards[ply + 1];
+			for (int col = 0; col < BitBoard.WIDTH; col++) {
+				if ((possible & BitBoard.columnMask(col)) != 0) {
+					child.copyFrom(board);
+					child.play(col);
+					leaves += leaves(boards, ply + 1, depth - 1);
+				}
+			}
+			return leaves;
+		}
+	}
+
+	//Every representation, the model first.
+	public static Counter[] counters() {
+		return new Counter[] {new ModelCounter(), new UndoCounter(), new BitBoardCounter()};
+	}
+
+	//Plays 'moves' on a new model.
+	public static ConnectFourModel play(String moves) {
+		ConnectFourModel board = new ConnectFourModel();
+		for (int i = 0; i < moves.length(); i++) {
+			int col = moves.charAt(i) - '1';
+			if (col < 0 || col >= board.getCols() || board.columnIsFull(col)) {
+				throw new IllegalArgumentException("Move " + (i + 1) + " of " + moves + " cannot be played");
+			}
+			if (board.checkWin() != 0) {
+				throw new IllegalArgumentException("The game " + moves + " is over before move " + (i + 1));
+			}
+			board.dropDisc(col);
+		}
+		return board;
+	}
+
+	/**
+	 * Counts the leaves with 'counter' on 'threads' threads. The positions SPLIT plies
+	 * from 'moves' are counted each on its own, as the threads get to them.
+	 */
+	public static long count(final Counter counter, String moves, int depth, int threads) throws InterruptedException {
+		if (depth <= SPLIT) {
+			return counter.count(moves, depth);
+		}
+		ArrayList<String> splits = new ArrayList<String>();
+		long leaves = split(moves, SPLIT, splits);
+		final int rest = depth - SPLIT;
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		try {
+			ArrayList<Future<Long>> parts = new ArrayList<Future<Long>>();
+			for (final String split : splits) {
+				parts.add(pool.submit(new Callable<Long>() {
+					@Override
+					public Long call() {
+						return counter.count(split, rest);
+					}
+				}));
+			}
+			for (Future<Long> part : parts) {
+				leaves += part.get();
+			}
+		} catch (ExecutionException e) {
+			throw new IllegalStateException(counter.getName() + " failed", e.getCause());
+		} finally {
+			pool.shutdown();
+		}
+		return leaves;
+	}
+
+	//Adds the positions 'depth' plies from 'moves' where the game goes on to 'splits'.
+	//Returns the number of leaves found before that, where the game ended.
+	private static long split(String moves, int depth, ArrayList<String> splits) {
+		ConnectFourModel board = play(moves);
+		if (board.checkWin() != 0 || board.boardIsFull()) {
+			return 1;
+		}
+		if (depth == 0) {
+			splits.add(moves);
+			return 0;
+		}
+		long leaves = 0;
+		for (int col = 0; col < board.getCols(); col++) {
+			if (!board.columnIsFull(col)) {
+				leaves += split(moves + (char) ('1' + col), depth - 1, splits);
+			}
+		}
+		return leaves;
+	}
+
+	public static void main(String args[]) throws InterruptedException {
+		boolean check = args.length > 0 && args[0].equals("check");
+		int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+		PrintStream out = System.out;
+
+		if (check) {
+			int failures = 0;
+			for (Counter counter : counters()) {
+				long start = System.nanoTime();
+				long total = 0;
+				for (Object known[] : KNOWN) {
+					String moves = (String) known[0];
+					int depth = (Integer) known[1];
+					long expected = (Long) known[2];
+					long single = counter.count(moves, depth);
+					long parallel = count(counter, moves, depth, threads);
+					if (single != expected || parallel != expected) {
+						out.printf("%-9s \"%s\" depth %d: %d on one thread, %d on %d, expected %d%n",
+								counter.getName(), moves, depth, single, parallel, threads, expected);
+						failures++;
+					}
+					total += 2 * expected;
+				}
+				out.printf("%-9s %d counts checked, %.0f leaves/s%n", counter.getName(), KNOWN.length,
+						total / ((System.nanoTime() - start) / 1e9));
+			}
+			out.println(failures == 0 ? "Every count matches" : failures + " counts differ");
+			System.exit(failures == 0 ? 0 : 1);
+		}
+
+		int depth = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+		String moves = args.length > 2 ? args[2] : "";
+		play(moves);
+		long expected = -1;
+		for (Counter counter : counters()) {
+			long start = System.nanoTime();
+			long single = counter.count(moves, depth);
+			long singleTime = System.nanoTime() - start;
+			start = System.nanoTime();
+			long parallel = count(counter, moves, depth, threads);
+			long parallelTime = System.nanoTime() - start;
+			if (expected < 0) {
+				expected = single;
+			}
+			out.printf("%-9s depth %d: %d leaves, %12.0f/s on one thread, %12.0f/s on %d%s%n", counter.getName(),
+					depth, single, single / (singleTime / 1e9), parallel / (parallelTime / 1e9), threads,
+					single == expected && parallel == expected ? "" : "  DIFFERS FROM THE MODEL");
+		}
+	}
+}
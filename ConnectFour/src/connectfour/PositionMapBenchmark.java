@@ -0,0 +1,108 @@
+package connectfour;
+
+import java.util.HashMap;
+import java.util.Random;
+
+/*
+Compares LongIntMap with HashMap<Long, Integer> on the keys of positions from
+random games: the memory each takes, the time to add every key and the time to
+look every key up again (half of the lookups miss). Also checks that keys can be
+turned back into boards.
+
+Usage: java connectfour.PositionMapBenchmark [positions] [rounds]
+*/
+public class PositionMapBenchmark {
+
+	public static void main(String args[]) {
+		int count = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+		int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+		long keys[] = randomKeys(count, new Random(42));
+		long misses[] = randomKeys(count, new Random(7));
+		checkKeys(keys);
+
+		long hashMapBytes = 0, primitiveBytes = 0;
+		long hashMapPut = Long.MAX_VALUE, primitivePut = Long.MAX_VALUE;
+		long hashMapGet = Long.MAX_VALUE, primitiveGet = Long.MAX_VALUE;
+		//Adding up the values keeps the JIT from dropping the lookups
+		long sink = 0;
+		for (int round = 0; round < rounds; round++) {
+			long before = usedMemory();
+			long start = System.nanoTime();
+			HashMap<Long, Integer> hashMap = new HashMap<Long, Integer>();
+			for (int i = 0; i < keys.length; i++) {
+				hashMap.put(keys[i], i);
+			}
+			hashMapPut = Math.min(hashMapPut, System.nanoTime() - start);
+			hashMapBytes = usedMemory() - before;
+			start = System.nanoTime();
+			for (int i = 0; i < keys.length; i++) {
+				Integer value = hashMap.get(keys[i]);
+				Integer miss = hashMap.get(misses[i]);
+				sink += (value == null ? 0 : value) + (miss == null ? 0 : miss);
+			}
+			hashMapGet = Math.min(hashMapGet, System.nanoTime() - start);
+			hashMap = null;
+
+			before = usedMemory();
+			start = System.nanoTime();
+			LongIntMap primitive = new LongIntMap();
+			for (int i = 0; i < keys.length; i++) {
+				primitive.put(keys[i], i);
+			}
+			primitivePut = Math.min(primitivePut, System.nanoTime() - start);
+			primitiveBytes = usedMemory() - before;
+			start = System.nanoTime();
+			for (int i = 0; i < keys.length; i++) {
+				sink += primitive.get(keys[i], 0) + primitive.get(misses[i], 0);
+			}
+			primitiveGet = Math.min(primitiveGet, System.nanoTime() - start);
+		}
+
+		System.out.println("Positions: " + keys.length + ", checksum: " + sink);
+		System.out.printf("HashMap<Long, Integer>  %6.1f bytes a key  put %7.1f ns  get %7.1f ns%n",
+				(double) hashMapBytes / keys.length, (double) hashMapPut / keys.length, hashMapGet / 2.0 / keys.length);
+		System.out.printf("LongIntMap              %6.1f bytes a key  put %7.1f ns  get %7.1f ns%n",
+				(double) primitiveBytes / keys.length, (double) primitivePut / keys.length, primitiveGet / 2.0 / keys.length);
+	}
+
+	//The keys of the positions of random games, without repeats.
+	private static long[] randomKeys(int count, Random random) {
+		LongIntMap seen = new LongIntMap(count);
+		long keys[] = new long[count];
+		int n = 0;
+		while (n < count) {
+			BitBoard board = new BitBoard();
+			while (n < count && !board.isFull()) {
+				int col = random.nextInt(BitBoard.WIDTH);
+				if (!board.canPlay(col)) continue;
+				if (board.isWinningMove(col)) break;
+				board.play(col);
+				if (!seen.containsKey(board.key())) {
+					seen.put(board.key(), n);
+					keys[n++] = board.key();
+				}
+			}
+		}
+		return keys;
+	}
+
+	//Checks that every key gives back its board and that mirroring twice changes nothing.
+	private static void checkKeys(long keys[]) {
+		for (long key : keys) {
+			BitBoard board = BitBoard.fromKey(key);
+			if (board.key() != key || BitBoard.mirrorKey(BitBoard.mirrorKey(key)) != key
+					|| BitBoard.fromKey(BitBoard.mirrorKey(key)).getMoves() != board.getMoves()) {
+				throw new IllegalStateException("Key " + Long.toHexString(key) + " does not round-trip");
+			}
+		}
+	}
+
+	private static long usedMemory() {
+		Runtime runtime = Runtime.getRuntime();
+		for (int i = 0; i < 3; i++) {
+			System.gc();
+		}
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+}
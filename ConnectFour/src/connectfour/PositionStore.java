@@ -0,0 +1,596 @@
+package connectfour;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+
+/*
+Positions with their labels (the result of the game they were played in, a search
+score and the best move), stored in a folder for training and tuning to read back.
+
+The store is columnar: rows are written in chunks of up to CHUNK_ROWS, and each
+chunk keeps its keys (BitBoard.key(), player to move first), results, scores and
+moves one column after the other, so reading one column never reads the others.
+Each chunk is memory-mapped on its own, so opening a store only reads the chunk
+headers, only the chunks that are read are paged in, and a store is not limited
+to the 2 GB one mapping can hold.
+
+Writing is append-only and every Writer has a file of its own, so any number of
+threads (or processes) can write at once without locking. A store that is opened
+sees the chunks that were complete at that moment; a chunk cut short by a writer
+that stopped is skipped.
+
+A compressed chunk is sorted by key, and its keys are stored as in Tablebase: the
+first in full and every later one as the difference from the one before, 7 bits a
+byte. Its scores are stored 7 bits a byte as well, with the sign in the lowest bit.
+That takes a row from 12 bytes to about 6, but a compressed chunk has to be
+decoded to be read.
+
+   file:   MAGIC, VERSION, chunks
+   chunk:  rows, flags, bytes of keys, bytes of scores, keys, results, scores, moves
+*/
+public class PositionStore implements Closeable {
+
+	//Represents "C4DS", the first 4 bytes of every file of a store.
+	public static final int MAGIC = 0x43344453;
+
+	//Represents the version of the file layout.
+	public static final int VERSION = 1;
+
+	//Represents the size of the file header and of each chunk header in bytes.
+	public static final int HEADER_SIZE = 8;
+	public static final int CHUNK_HEADER_SIZE = 16;
+
+	//Represents the most rows of a chunk. A key is at most 49 bits, so a key and the
+	//row it came from fit in one long, and a chunk is sorted without boxing.
+	public static final int CHUNK_ROWS = 1 << 15;
+
+	//Represents the end of the files of a store.
+	public static final String EXTENSION = ".c4ds";
+
+	//Represents the results, for the player to move.
+	public static final int WIN = 1;
+	public static final int DRAW = 0;
+	public static final int LOSS = -1;
+
+	//Represents a row without a best move.
+	public static final int NO_MOVE = -1;
+
+	//Represents the flag of a compressed chunk.
+	private static final int COMPRESSED = 1;
+
+	//Represents the bits a key can use.
+	private static final int KEY_BITS = BitBoard.WIDTH * (BitBoard.HEIGHT + 1);
+
+	//Represents the folder of the store.
+	private final File folder;
+
+	//Represents every complete chunk of every file, in the order the files are named.
+	private final Chunk chunks[];
+
+	//Represents the row each chunk starts at, and the number of rows after the last.
+	private final long starts[];
+
+	//Represents the bytes the chunks take in the files.
+	private final long bytes;
+
+	//Represents the chunk each thread decoded last for getKey() and the others.
+	private final ThreadLocal<Columns> decoded = new ThreadLocal<Columns>() {
+		@Override
+		protected Columns initialValue() {
+			return new Columns();
+		}
+	};
+
+	//Opens the store in 'folder', making the folder if it does not exist yet.
+	public PositionStore(File folder) throws IOException {
+		if (!folder.isDirectory() && !folder.mkdirs()) {
+			throw new IOException("Could not make " + folder);
+		}
+		this.folder = folder;
+		File files[] = folder.listFiles(new FileFilter() {
+			@Override
+			public boolean accept(File file) {
+				return file.isFile() && file.getName().endsWith(EXTENSION);
+			}
+		});
+		Arrays.sort(files);
+
+		ArrayList<Chunk> found = new ArrayList<Chunk>();
+		long total = 0;
+		for (File file : files) {
+			total += map(file, found);
+		}
+		this.bytes = total;
+		this.chunks = found.toArray(new Chunk[found.size()]);
+		this.starts = new long[this.chunks.length + 1];
+		for (int i = 0; i < this.chunks.length; i++) {
+			this.starts[i + 1] = this.starts[i] + this.chunks[i].rows;
+		}
+	}
+
+	//Maps every complete chunk of 'file'. Returns the bytes they take.
+	private static long map(File file, ArrayList<Chunk> found) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			FileChannel channel = raf.getChannel();
+			long length = channel.size();
+			if (length == 0) {
+				//A writer that has just been made
+				return 0;
+			}
+			ByteBuffer header = ByteBuffer.allocate(CHUNK_HEADER_SIZE);
+			if (length < HEADER_SIZE || read(channel, header, 0, HEADER_SIZE).getInt(0) != MAGIC
+					|| header.getInt(4) != VERSION) {
+				throw new IOException(file + " is not a position store file");
+			}
+			long pos = HEADER_SIZE;
+			while (pos + CHUNK_HEADER_SIZE <= length) {
+				read(channel, header, pos, CHUNK_HEADER_SIZE);
+				int rows = header.getInt(0);
+				int flags = header.getInt(4);
+				int keyBytes = header.getInt(8);
+				int scoreBytes = header.getInt(12);
+				long size = CHUNK_HEADER_SIZE + (long) keyBytes + scoreBytes + 2L * rows;
+				if (rows <= 0 || rows > CHUNK_ROWS || keyBytes < 0 || scoreBytes < 0 || pos + size > length) {
+					break;
+				}
+				MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, pos + CHUNK_HEADER_SIZE,
+						size - CHUNK_HEADER_SIZE);
+				found.add(new Chunk(buffer, rows, (flags & COMPRESSED) != 0, keyBytes, scoreBytes));
+				pos += size;
+			}
+			return pos - HEADER_SIZE;
+		} finally {
+			raf.close();
+		}
+	}
+
+	private static ByteBuffer read(FileChannel channel, ByteBuffer buffer, long pos, int size) throws IOException {
+		buffer.clear();
+		buffer.limit(size);
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer, pos + buffer.position()) < 0) {
+				throw new IOException("Unexpected end of file");
+			}
+		}
+		return buffer;
+	}
+
+	/**
+	 * Makes a writer that appends to a new file of the store. Every writer is used by
+	 * one thread at a time, but several writers can write at once. What a writer
+	 * writes is seen by stores opened after it was flushed.
+	 * @param compress whether to compress the chunks.
+	 */
+	public Writer newWriter(boolean compress) throws IOException {
+		return new Writer(this.folder, compress);
+	}
+
+	//The number of rows.
+	public long size() {
+		return this.starts[this.chunks.length];
+	}
+
+	public int getChunks() {
+		return this.chunks.length;
+	}
+
+	//The bytes the rows take on disk.
+	public long getBytes() {
+		return this.bytes;
+	}
+
+	/**
+	 * Reads the rows of some of the chunks, one after the other, without keeping them.
+	 * @param shard which part of the store to read, from 0 to shards - 1. Every
+	 * shards-th chunk is in the same part, so that several threads or machines can
+	 * each read their own part.
+	 * @param shards the number of parts the store is split into; 1 reads all of it.
+	 * @param shuffle if not null, the chunks are read in a random order and the rows
+	 * of each chunk in a random order.
+	 */
+	public Cursor cursor(int shard, int shards, Random shuffle) {
+		if (shards < 1 || shard < 0 || shard >= shards) {
+			throw new IllegalArgumentException("No shard " + shard + " of " + shards);
+		}
+		int count = (this.chunks.length - shard + shards - 1) / shards;
+		int order[] = new int[count];
+		for (int i = 0; i < count; i++) {
+			order[i] = shard + i * shards;
+		}
+		if (shuffle != null) {
+			shuffle(order, order.length, shuffle);
+		}
+		return new Cursor(order, shuffle);
+	}
+
+	/**
+	 * The key of row 'row', from 0 to size() - 1. Rows of uncompressed chunks are read
+	 * where they are; a compressed chunk is decoded and kept for the next row asked
+	 * for by the same thread, so random rows of a compressed store are slow.
+	 */
+	public long getKey(long row) {
+		int chunk = chunkOf(row);
+		int index = (int) (row - this.starts[chunk]);
+		if (!this.chunks[chunk].compressed) {
+			return this.chunks[chunk].buffer.getLong(8 * index);
+		}
+		return columns(chunk).keys[index];
+	}
+
+	public int getResult(long row) {
+		int chunk = chunkOf(row);
+		int index = (int) (row - this.starts[chunk]);
+		if (!this.chunks[chunk].compressed) {
+			return this.chunks[chunk].buffer.get(this.chunks[chunk].keyBytes + index);
+		}
+		return columns(chunk).results[index];
+	}
+
+	public int getScore(long row) {
+		int chunk = chunkOf(row);
+		int index = (int) (row - this.starts[chunk]);
+		if (!this.chunks[chunk].compressed) {
+			Chunk c = this.chunks[chunk];
+			return c.buffer.getShort(c.keyBytes + c.rows + 2 * index);
+		}
+		return columns(chunk).scores[index];
+	}
+
+	public int getMove(long row) {
+		int chunk = chunkOf(row);
+		int index = (int) (row - this.starts[chunk]);
+		if (!this.chunks[chunk].compressed) {
+			Chunk c = this.chunks[chunk];
+			return c.buffer.get(c.keyBytes + c.rows + c.scoreBytes + index);
+		}
+		return columns(chunk).moves[index];
+	}
+
+	//Binary search for the chunk of 'row'.
+	private int chunkOf(long row) {
+		if (row < 0 || row >= size()) {
+			throw new IllegalArgumentException("No row " + row + " in a store of " + size());
+		}
+		int low = 0;
+		int high = this.chunks.length - 1;
+		while (low < high) {
+			int mid = (low + high + 1) >>> 1;
+			if (this.starts[mid] <= row) {
+				low = mid;
+			} else {
+				high = mid - 1;
+			}
+		}
+		return low;
+	}
+
+	//The decoded columns of a compressed chunk, for this thread.
+	private Columns columns(int chunk) {
+		Columns columns = this.decoded.get();
+		if (columns.chunk != chunk) {
+			this.chunks[chunk].decode(columns);
+			columns.chunk = chunk;
+		}
+		return columns;
+	}
+
+	//Lets go of the mappings. They are unmapped when they are garbage collected.
+	@Override
+	public void close() {
+		Arrays.fill(this.chunks, null);
+		this.decoded.remove();
+	}
+
+	private static void shuffle(int values[], int count, Random random) {
+		for (int i = count - 1; i > 0; i--) {
+			int j = random.nextInt(i + 1);
+			int value = values[i];
+			values[i] = values[j];
+			values[j] = value;
+		}
+	}
+
+	//A mapped chunk.
+	private static class Chunk {
+
+		//Represents the columns of the chunk, after its header.
+		final MappedByteBuffer buffer;
+
+		final int rows;
+		final boolean compressed;
+		final int keyBytes;
+		final int scoreBytes;
+
+		Chunk(MappedByteBuffer buffer, int rows, boolean compressed, int keyBytes, int scoreBytes) {
+			this.buffer = buffer;
+			this.rows = rows;
+			this.compressed = compressed;
+			this.keyBytes = keyBytes;
+			this.scoreBytes = scoreBytes;
+		}
+
+		//Copies the columns into 'columns', decoding them if they are compressed.
+		void decode(Columns columns) {
+			//A view of its own, so that threads decoding the same chunk do not share a position
+			ByteBuffer in = this.buffer.duplicate();
+			in.order(ByteOrder.BIG_ENDIAN);
+			if (!this.compressed) {
+				in.asLongBuffer().get(columns.keys, 0, this.rows);
+				in.position(this.keyBytes);
+				in.get(columns.results, 0, this.rows);
+				in.asShortBuffer().get(columns.scores, 0, this.rows);
+				in.position(this.keyBytes + this.rows + this.scoreBytes);
+				in.get(columns.moves, 0, this.rows);
+			} else {
+				long key = 0;
+				for (int i = 0; i < this.rows; i++) {
+					key += readVarLong(in);
+					columns.keys[i] = key;
+				}
+				in.get(columns.results, 0, this.rows);
+				for (int i = 0; i < this.rows; i++) {
+					long value = readVarLong(in);
+					columns.scores[i] = (short) ((value >>> 1) ^ -(value & 1));
+				}
+				in.get(columns.moves, 0, this.rows);
+			}
+			columns.rows = this.rows;
+		}
+
+		private static long readVarLong(ByteBuffer in) {
+			long value = 0;
+			int shift = 0;
+			int b;
+			do {
+				b = in.get();
+				value |= (long) (b & 0x7f) << shift;
+				shift += 7;
+			} while ((b & 0x80) != 0);
+			return value;
+		}
+	}
+
+	//The columns of one chunk on the heap.
+	private static class Columns {
+		final long keys[] = new long[CHUNK_ROWS];
+		final byte results[] = new byte[CHUNK_ROWS];
+		final short scores[] = new short[CHUNK_ROWS];
+		final byte moves[] = new byte[CHUNK_ROWS];
+		int rows;
+
+		//Represents the chunk that was decoded, for the random access of the store.
+		int chunk = -1;
+	}
+
+	/**
+	 * Reads rows one at a time. Only the chunk being read is on the heap.
+	 */
+	public class Cursor {
+
+		//Represents the chunks to read, in order.
+		private final int order[];
+
+		//Represents the random order of the rows, or null to read them in order.
+		private final Random shuffle;
+		private final int rowOrder[];
+
+		//Represents the chunk being read.
+		private final Columns columns = new Columns();
+
+		//Represents the next chunk of 'order' and the row of the chunk being read.
+		private int next;
+		private int index;
+		private int row = -1;
+
+		private Cursor(int order[], Random shuffle) {
+			this.order = order;
+			this.shuffle = shuffle;
+			this.rowOrder = shuffle != null ? new int[CHUNK_ROWS] : null;
+		}
+
+		//Moves to the next row. Returns false when there are no more.
+		public boolean next() {
+			while (this.index + 1 >= this.columns.rows) {
+				if (this.next == this.order.length) {
+					this.row = -1;
+					return false;
+				}
+				chunks[this.order[this.next++]].decode(this.columns);
+				this.index = -1;
+				if (this.shuffle != null) {
+					for (int i = 0; i < this.columns.rows; i++) {
+						this.rowOrder[i] = i;
+					}
+					shuffle(this.rowOrder, this.columns.rows, this.shuffle);
+				}
+			}
+			this.index++;
+			this.row = this.shuffle != null ? this.rowOrder[this.index] : this.index;
+			return true;
+		}
+
+		public long getKey() {
+			return this.columns.keys[this.row];
+		}
+
+		public int getResult() {
+			return this.columns.results[this.row];
+		}
+
+		public int getScore() {
+			return this.columns.scores[this.row];
+		}
+
+		public int getMove() {
+			return this.columns.moves[this.row];
+		}
+	}
+
+	/**
+	 * Appends rows to a file of its own. Rows are written a chunk at a time, when
+	 * CHUNK_ROWS have been added, on flush() and on close().
+	 */
+	public static class Writer implements Closeable {
+
+		//Represents the file being written.
+		private final File file;
+		private final RandomAccessFile raf;
+
+		private final boolean compress;
+
+		//Represents the rows that are not written yet.
+		private final long keys[] = new long[CHUNK_ROWS];
+		private final byte results[] = new byte[CHUNK_ROWS];
+		private final short scores[] = new short[CHUNK_ROWS];
+		private final byte moves[] = new byte[CHUNK_ROWS];
+		private int rows;
+
+		//Represents the chunk being written, up to the largest a chunk can take.
+		private final ByteBuffer out = ByteBuffer.allocate(CHUNK_HEADER_SIZE + CHUNK_ROWS * (10 + 1 + 3 + 1));
+
+		//Represents the rows written.
+		private long written;
+
+		private Writer(File folder, boolean compress) throws IOException {
+			this.compress = compress;
+			//Another writer, even in another process, may be picking a name at the same time
+			File file;
+			int number = 0;
+			do {
+				file = new File(folder, String.format("part-%05d%s", number++, EXTENSION));
+			} while (!file.createNewFile());
+			this.file = file;
+			this.raf = new RandomAccessFile(file, "rw");
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+			header.putInt(MAGIC).putInt(VERSION).flip();
+			this.raf.getChannel().write(header);
+		}
+
+		public File getFile() {
+			return this.file;
+		}
+
+		//The rows added so far.
+		public long size() {
+			return this.written + this.rows;
+		}
+
+		/**
+		 * Adds a row.
+		 * @param key the BitBoard.key() of the position.
+		 * @param result WIN, DRAW or LOSS for the player to move.
+		 * @param score the search score for the player to move.
+		 * @param move the best column, or NO_MOVE.
+		 */
+		public void add(long key, int result, int score, int move) throws IOException {
+			if (key >>> KEY_BITS != 0) {
+				throw new IllegalArgumentException(key + " is not a position key");
+			}
+			if (result < LOSS || result > WIN) {
+				throw new IllegalArgumentException("No result " + result);
+			}
+			if (score != (short) score) {
+				throw new IllegalArgumentException("Score " + score + " does not fit in 16 bits");
+			}
+			if (move < NO_MOVE || move >= BitBoard.WIDTH) {
+				throw new IllegalArgumentException("No column " + move);
+			}
+			this.keys[this.rows] = key;
+			this.results[this.rows] = (byte) result;
+			this.scores[this.rows] = (short) score;
+			this.moves[this.rows] = (byte) move;
+			if (++this.rows == CHUNK_ROWS) {
+				flush();
+			}
+		}
+
+		//Writes the rows added since the last chunk as a chunk of their own.
+		public void flush() throws IOException {
+			if (this.rows == 0) {
+				return;
+			}
+			int count = this.rows;
+			ByteBuffer out = this.out;
+			out.clear();
+			out.position(CHUNK_HEADER_SIZE);
+			int keyBytes;
+			int scoreBytes;
+			if (!this.compress) {
+				for (int i = 0; i < count; i++) {
+					out.putLong(this.keys[i]);
+				}
+				out.put(this.results, 0, count);
+				for (int i = 0; i < count; i++) {
+					out.putShort(this.scores[i]);
+				}
+				out.put(this.moves, 0, count);
+				keyBytes = 8 * count;
+				scoreBytes = 2 * count;
+			} else {
+				//Sorted by key, with the row each key came from in the low bits. The top
+				//bit is flipped so that keys that use it sort after those that do not
+				long sorted[] = new long[count];
+				for (int i = 0; i < count; i++) {
+					sorted[i] = (this.keys[i] << 15 | i) ^ Long.MIN_VALUE;
+				}
+				Arrays.sort(sorted);
+				long previous = 0;
+				for (int i = 0; i < count; i++) {
+					sorted[i] ^= Long.MIN_VALUE;
+					long key = sorted[i] >>> 15;
+					writeVarLong(out, key - previous);
+					previous = key;
+				}
+				keyBytes = out.position() - CHUNK_HEADER_SIZE;
+				for (int i = 0; i < count; i++) {
+					out.put(this.results[(int) (sorted[i] & (CHUNK_ROWS - 1))]);
+				}
+				int scoresStart = out.position();
+				for (int i = 0; i < count; i++) {
+					int score = this.scores[(int) (sorted[i] & (CHUNK_ROWS - 1))];
+					writeVarLong(out, (score << 1) ^ (score >> 31));
+				}
+				scoreBytes = out.position() - scoresStart;
+				for (int i = 0; i < count; i++) {
+					out.put(this.moves[(int) (sorted[i] & (CHUNK_ROWS - 1))]);
+				}
+			}
+			out.putInt(0, count).putInt(4, this.compress ? COMPRESSED : 0).putInt(8, keyBytes).putInt(12, scoreBytes);
+			out.flip();
+			FileChannel channel = this.raf.getChannel();
+			while (out.hasRemaining()) {
+				channel.write(out);
+			}
+			this.written += count;
+			this.rows = 0;
+		}
+
+		private static void writeVarLong(ByteBuffer out, long value) {
+			while ((value & ~0x7fL) != 0) {
+				out.put((byte) ((value & 0x7f) | 0x80));
+				value >>>= 7;
+			}
+			out.put((byte) value);
+		}
+
+		@Override
+		public void close() throws IOException {
+			try {
+				flush();
+			} finally {
+				this.raf.close();
+			}
+		}
+	}
+}
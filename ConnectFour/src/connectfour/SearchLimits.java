@@ -0,0 +1,64 @@
+package connectfour;
+
+/*
+How much work an engine may do for one move: a depth in plies, a time in
+milliseconds and a number of nodes (positions for Alpha-Beta pruning, playouts
+for Monte Carlo). A value of 0 means no limit of that kind. An engine stops at
+whichever limit it reaches first.
+*/
+public class SearchLimits {
+
+	//Represents the maximum depth in plies.
+	private final int depth;
+
+	//Represents the maximum time in milliseconds.
+	private final long timeMillis;
+
+	//Represents the maximum number of nodes.
+	private final long nodes;
+
+	public SearchLimits(int depth, long timeMillis, long nodes) {
+		if (depth < 0 || timeMillis < 0 || nodes < 0) {
+			throw new IllegalArgumentException("Search limits cannot be negative.");
+		}
+		this.depth = depth;
+		this.timeMillis = timeMillis;
+		this.nodes = nodes;
+	}
+
+	//Limits the search to 'depth' plies only.
+	public static SearchLimits depth(int depth) {
+		return new SearchLimits(depth, 0, 0);
+	}
+
+	//Limits the search to 'timeMillis' milliseconds only.
+	public static SearchLimits time(long timeMillis) {
+		return new SearchLimits(0, timeMillis, 0);
+	}
+
+	//Limits the search to 'nodes' nodes only.
+	public static SearchLimits nodes(long nodes) {
+		return new SearchLimits(0, 0, nodes);
+	}
+
+	public int getDepth() {
+		return this.depth;
+	}
+
+	public long getTimeMillis() {
+		return this.timeMillis;
+	}
+
+	public long getNodes() {
+		return this.nodes;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder str = new StringBuilder();
+		if (this.depth > 0) str.append("depth=").append(this.depth).append(' ');
+		if (this.timeMillis > 0) str.append("time=").append(this.timeMillis).append("ms ");
+		if (this.nodes > 0) str.append("nodes=").append(this.nodes).append(' ');
+		return str.length() == 0 ? "unlimited" : str.toString().trim();
+	}
+}
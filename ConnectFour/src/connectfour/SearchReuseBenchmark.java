@@ -0,0 +1,74 @@
+package connectfour;
+
+import java.util.ArrayList;
+
+/*
+Compares the total time the AI spends thinking over a full game when the engine
+keeps its state between moves against an engine that starts from nothing on every
+move, the way run() used to. One game is played engine against engine and then
+every position of that game is searched again by both kinds of engines, so both
+are timed on exactly the same positions.
+
+Usage: java connectfour.SearchReuseBenchmark [depth] [rounds]
+*/
+public class SearchReuseBenchmark {
+
+	public static void main(String args[]) {
+		int depth = args.length > 0 ? Integer.parseInt(args[0]) : 6;
+		int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+		ArrayList<ConnectFourModel> game = playGame(depth);
+
+		long bestWarm = Long.MAX_VALUE;
+		long bestCold = Long.MAX_VALUE;
+		long warmNodes = 0;
+		long coldNodes = 0;
+		for (int round = 0; round < rounds; round++) {
+			long start = System.nanoTime();
+			warmNodes = replay(game, depth, true);
+			bestWarm = Math.min(bestWarm, System.nanoTime() - start);
+
+			start = System.nanoTime();
+			coldNodes = replay(game, depth, false);
+			bestCold = Math.min(bestCold, System.nanoTime() - start);
+		}
+
+		System.out.println("Positions searched: " + game.size() + " at depth " + depth);
+		System.out.printf("Stateless: %8.1f ms  %10d nodes%n", bestCold / 1e6, coldNodes);
+		System.out.printf("Reused:    %8.1f ms  %10d nodes%n", bestWarm / 1e6, warmNodes);
+		System.out.printf("Speedup:   %8.2fx%n", (double) bestCold / bestWarm);
+	}
+
+	//Plays a game engine against engine and returns every position a move was searched in.
+	private static ArrayList<ConnectFourModel> playGame(int depth) {
+		ArrayList<ConnectFourModel> positions = new ArrayList<ConnectFourModel>();
+		AlphaBetaEngine red = new AlphaBetaEngine();
+		AlphaBetaEngine black = new AlphaBetaEngine();
+		ConnectFourModel board = new ConnectFourModel();
+
+		while (board.checkWin() == 0 && !board.boardIsFull()) {
+			positions.add(board.copy());
+			int player = board.getCurrentColor();
+			int col = (player == board.RED ? red : black).search(player, board, depth);
+			board.dropDisc(col);
+		}
+		return positions;
+	}
+
+	//Searches every position of the game again with one engine per color.
+	private static long replay(ArrayList<ConnectFourModel> game, int depth, boolean keepState) {
+		AlphaBetaEngine red = new AlphaBetaEngine();
+		AlphaBetaEngine black = new AlphaBetaEngine();
+		red.setKeepState(keepState);
+		black.setKeepState(keepState);
+
+		long nodes = 0;
+		for (ConnectFourModel position : game) {
+			int player = position.getCurrentColor();
+			AlphaBetaEngine engine = (player == position.RED) ? red : black;
+			engine.search(player, position, depth);
+			nodes += engine.getNodes();
+		}
+		return nodes;
+	}
+}
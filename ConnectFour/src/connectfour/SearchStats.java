@@ -0,0 +1,193 @@
+package connectfour;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/*
+Counts what the Alpha-Beta pruning search does at each ply, to see the shape of
+the tree: how many positions are visited and expanded, how many moves are tried
+in each (the branching factor), how often the first move tried already causes a
+cutoff (how good the move ordering is) and how many positions of each iteration
+of the deepening there are (how the tree grows with depth).
+
+The counters are atomic so that one SearchStats can add up the searches of many
+engines on many threads without locks, for example over a whole tournament. The
+results can be written as CSV or JSON.
+*/
+public class SearchStats {
+
+	//Represents the positions visited at a ply.
+	public static final int NODES = 0;
+
+	//Represents the positions at a ply whose moves were searched.
+	public static final int EXPANDED = 1;
+
+	//Represents the moves searched from positions at a ply.
+	public static final int MOVES = 2;
+
+	//Represents the positions at a ply where a move caused a cutoff.
+	public static final int CUTOFFS = 3;
+
+	//Represents the cutoffs at a ply caused by the first move searched.
+	public static final int FIRST_MOVE_CUTOFFS = 4;
+
+	//Represents the positions at a ply answered by the transposition table.
+	public static final int TABLE_HITS = 5;
+
+	//Represents the positions at a ply that were scored by the evaluator.
+	public static final int LEAVES = 6;
+
+	//Represents the positions visited by the iteration that searched this many plies deep.
+	public static final int ITERATION_NODES = 7;
+
+	//Represents the forced moves played past the last ply by the threat extension,
+	//counted at the ply the extension started from.
+	public static final int EXTENDED = 8;
+
+	//Represents the moves from positions at a ply that were searched less deep.
+	public static final int REDUCED = 9;
+
+	//Represents the reduced moves at a ply searched again to the full depth.
+	public static final int RESEARCHED = 10;
+
+	//Represents the positions at a ply pruned or razored near the last ply.
+	public static final int PRUNED = 11;
+
+	//Represents the names of the counters, used as CSV columns and JSON fields.
+	private static final String NAMES[] = {"nodes", "expanded", "moves", "cutoffs",
+			"first_move_cutoffs", "table_hits", "leaves", "iteration_nodes", "extended",
+			"reduced", "researched", "pruned"};
+
+	//Represents the number of plies counted.
+	private final int plies;
+
+	//Represents the counters, NAMES.length for each ply.
+	private final AtomicLongArray counts;
+
+	//Represents the number of searches counted.
+	private final AtomicLong searches = new AtomicLong();
+
+	public SearchStats(int plies) {
+		this.plies = plies;
+		this.counts = new AtomicLongArray(plies * NAMES.length);
+	}
+
+	public int getPlies() {
+		return this.plies;
+	}
+
+	public long getSearches() {
+		return this.searches.get();
+	}
+
+	//Adds 1 to a counter at a ply.
+	public void increment(int ply, int counter) {
+		this.counts.incrementAndGet(ply * NAMES.length + counter);
+	}
+
+	//Adds 'amount' to a counter at a ply.
+	public void add(int ply, int counter, long amount) {
+		this.counts.addAndGet(ply * NAMES.length + counter, amount);
+	}
+
+	public long get(int ply, int counter) {
+		return this.counts.get(ply * NAMES.length + counter);
+	}
+
+	//Adds every counter of 'other' and its searches to this.
+	public void addAll(SearchStats other) {
+		int plies = Math.min(this.plies, other.plies);
+		for (int i = 0; i < plies * NAMES.length; i++) {
+			long value = other.counts.get(i);
+			if (value != 0) {
+				this.counts.addAndGet(i, value);
+			}
+		}
+		this.searches.addAndGet(other.searches.get());
+	}
+
+	//Counts one more search.
+	public void searchDone() {
+		this.searches.incrementAndGet();
+	}
+
+	//Sets every counter back to 0.
+	public void reset() {
+		for (int i = 0; i < this.counts.length(); i++) {
+			this.counts.set(i, 0);
+		}
+		this.searches.set(0);
+	}
+
+	//The average number of moves searched from the positions expanded at a ply.
+	public double branchingFactor(int ply) {
+		long expanded = get(ply, EXPANDED);
+		return expanded == 0 ? 0 : (double) get(ply, MOVES) / expanded;
+	}
+
+	//The share of the cutoffs at a ply that the first move searched caused.
+	public double firstMoveCutoffRate(int ply) {
+		long cutoffs = get(ply, CUTOFFS);
+		return cutoffs == 0 ? 0 : (double) get(ply, FIRST_MOVE_CUTOFFS) / cutoffs;
+	}
+
+	//How many times more positions the iteration 'depth' plies deep visited than
+	//the one before it.
+	public double growth(int depth) {
+		long previous = depth > 0 ? get(depth - 1, ITERATION_NODES) : 0;
+		return previous == 0 ? 0 : (double) get(depth, ITERATION_NODES) / previous;
+	}
+
+	//The number of moves a position would need for a full tree of 'depth' plies to
+	//have as many positions as the iteration that searched that deep.
+	public double effectiveBranchingFactor(int depth) {
+		long nodes = get(depth, ITERATION_NODES);
+		return depth == 0 || nodes == 0 ? 0 : Math.pow((double) nodes / Math.max(1, this.searches.get()), 1.0 / depth);
+	}
+
+	//One line for every ply that was reached, after a line of column names.
+	public String toCsv() {
+		StringBuilder csv = new StringBuilder("ply");
+		for (String name : NAMES) {
+			csv.append(',').append(name);
+		}
+		csv.append(",branching_factor,first_move_cutoff_rate,growth,effective_branching_factor\n");
+		for (int ply = 0; ply < lastPly(); ply++) {
+			csv.append(ply);
+			for (int counter = 0; counter < NAMES.length; counter++) {
+				csv.append(',').append(get(ply, counter));
+			}
+			csv.append(String.format(Locale.ROOT, ",%.4f,%.4f,%.4f,%.4f\n", branchingFactor(ply), firstMoveCutoffRate(ply),
+					growth(ply), effectiveBranchingFactor(ply)));
+		}
+		return csv.toString();
+	}
+
+	//An object with the number of searches and the counters of every ply that was reached.
+	public String toJson() {
+		StringBuilder json = new StringBuilder("{\"searches\":").append(getSearches()).append(",\"plies\":[");
+		for (int ply = 0; ply < lastPly(); ply++) {
+			json.append(ply == 0 ? "" : ",").append("{\"ply\":").append(ply);
+			for (int counter = 0; counter < NAMES.length; counter++) {
+				json.append(",\"").append(NAMES[counter]).append("\":").append(get(ply, counter));
+			}
+			json.append(String.format(Locale.ROOT, ",\"branching_factor\":%.4f,\"first_move_cutoff_rate\":%.4f,\"growth\":%.4f"
+					+ ",\"effective_branching_factor\":%.4f}", branchingFactor(ply), firstMoveCutoffRate(ply), growth(ply),
+					effectiveBranchingFactor(ply)));
+		}
+		return json.append("]}").toString();
+	}
+
+	//One more than the deepest ply with any counts.
+	private int lastPly() {
+		for (int ply = this.plies - 1; ply >= 0; ply--) {
+			for (int counter = 0; counter < NAMES.length; counter++) {
+				if (get(ply, counter) != 0) {
+					return ply + 1;
+				}
+			}
+		}
+		return 0;
+	}
+}
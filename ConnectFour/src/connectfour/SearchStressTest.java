@@ -0,0 +1,193 @@
+package connectfour;
+
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+Searches random positions from many threads at once and checks the results
+against searches made one at a time by a fresh engine.
+
+- pooled: every thread borrows an engine from a pool that does not keep state
+  between searches, so each search has to give exactly the column the fresh
+  engine gives
+- shared: every thread searches with the same engine, which keeps its state and
+  transposition table. Entries left by other searches can change which of two
+  equally good columns is chosen, so here every column has to be legal, has to
+  win at once when a win is there, has to block a win of the other player and
+  must not let the other player win right after when that can be avoided; how often it is the same as the fresh engine's is
+  printed
+
+Exits with status 1 if any check fails.
+
+Usage: java connectfour.SearchStressTest [threads] [positions] [depth] [rounds]
+*/
+public class SearchStressTest {
+
+	public static void main(String args[]) throws InterruptedException {
+		int threads = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+		int count = args.length > 1 ? Integer.parseInt(args[1]) : 400;
+		int depth = args.length > 2 ? Integer.parseInt(args[2]) : 6;
+		int rounds = args.length > 3 ? Integer.parseInt(args[3]) : 3;
+
+		ArrayList<ConnectFourModel> positions = randomPositions(count, new Random(11));
+		int expected[] = new int[positions.size()];
+		for (int i = 0; i < expected.length; i++) {
+			ConnectFourModel position = positions.get(i);
+			expected[i] = new AlphaBetaEngine().search(position.getCurrentColor(), position, depth);
+		}
+
+		final BlockingQueue<AlphaBetaEngine> pool = new ArrayBlockingQueue<AlphaBetaEngine>(threads);
+		for (int t = 0; t < threads; t++) {
+			AlphaBetaEngine engine = new AlphaBetaEngine();
+			engine.setKeepState(false);
+			pool.add(engine);
+		}
+		final AlphaBetaEngine shared = new AlphaBetaEngine();
+
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		int failures = 0;
+		int sharedSame = 0;
+		int searches = 0;
+		long start = System.nanoTime();
+		try {
+			for (int round = 0; round < rounds; round++) {
+				int pooled[] = run(executor, threads, positions, depth, new EngineSource() {
+					@Override
+					public AlphaBetaEngine take() throws InterruptedException {
+						return pool.take();
+					}
+
+					@Override
+					public void give(AlphaBetaEngine engine) {
+						pool.add(engine);
+					}
+				});
+				int together[] = run(executor, threads, positions, depth, new EngineSource() {
+					@Override
+					public AlphaBetaEngine take() {
+						return shared;
+					}
+
+					@Override
+					public void give(AlphaBetaEngine engine) {}
+				});
+
+				for (int i = 0; i < expected.length; i++) {
+					if (pooled[i] != expected[i]) {
+						System.out.println("pooled: position " + i + " gave column " + pooled[i] + ", expected " + expected[i]);
+						failures++;
+					}
+					String problem = check(positions.get(i), together[i]);
+					if (problem != null) {
+						System.out.println("shared: position " + i + " gave column " + together[i] + ": " + problem);
+						failures++;
+					}
+					if (together[i] == expected[i]) {
+						sharedSame++;
+					}
+				}
+				searches += 2 * expected.length;
+			}
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("A search failed", e.getCause());
+		} finally {
+			executor.shutdown();
+		}
+
+		System.out.printf("%d searches on %d threads at depth %d in %.1f ms%n",
+				searches, threads, depth, (System.nanoTime() - start) / 1e6);
+		System.out.printf("Shared engine chose the fresh engine's column %.1f%% of the time%n",
+				100.0 * sharedSame / (rounds * expected.length));
+		System.out.println(failures == 0 ? "All checks passed" : failures + " checks failed");
+		if (failures != 0) {
+			System.exit(1);
+		}
+	}
+
+	//Where the threads get an engine for each search and give it back after.
+	private interface EngineSource {
+		AlphaBetaEngine take() throws InterruptedException;
+
+		void give(AlphaBetaEngine engine);
+	}
+
+	//Searches every position, all threads at once, and returns the column of each.
+	private static int[] run(ExecutorService executor, int threads, final ArrayList<ConnectFourModel> positions,
+			final int depth, final EngineSource engines) throws InterruptedException, ExecutionException {
+		final int columns[] = new int[positions.size()];
+		final AtomicInteger next = new AtomicInteger();
+		ArrayList<Future<?>> workers = new ArrayList<Future<?>>();
+		for (int t = 0; t < threads; t++) {
+			workers.add(executor.submit(new Callable<Void>() {
+				@Override
+				public Void call() throws InterruptedException {
+					for (int i = next.getAndIncrement(); i < columns.length; i = next.getAndIncrement()) {
+						ConnectFourModel position = positions.get(i);
+						AlphaBetaEngine engine = engines.take();
+						try {
+							columns[i] = engine.search(position.getCurrentColor(), position, depth);
+						} finally {
+							engines.give(engine);
+						}
+					}
+					return null;
+				}
+			}));
+		}
+		for (Future<?> worker : workers) {
+			worker.get();
+		}
+		return columns;
+	}
+
+	//What is wrong with playing 'col', or null if nothing is.
+	private static String check(ConnectFourModel position, int col) {
+		BitBoard board = BitBoard.fromModel(position);
+		if (col < 0 || col >= BitBoard.WIDTH || !board.canPlay(col)) {
+			return "not a legal move";
+		}
+		long wins = board.winningPositions() & board.possible();
+		if (wins != 0 && !board.isWinningMove(col)) {
+			return "misses a win";
+		}
+		if (wins != 0) {
+			return null;
+		}
+		long threats = board.opponentWinningPositions() & board.possible();
+		if (threats != 0 && (threats & BitBoard.columnMask(col)) == 0) {
+			return "does not block";
+		}
+		int safe = ForcedMoves.safeColumns(board);
+		if (threats == 0 && safe != 0 && (safe & (1 << col)) == 0) {
+			return "lets the other player win";
+		}
+		return null;
+	}
+
+	//Positions of random games that are not over yet, after 4 to 30 moves.
+	private static ArrayList<ConnectFourModel> randomPositions(int count, Random random) {
+		ArrayList<ConnectFourModel> positions = new ArrayList<ConnectFourModel>();
+		while (positions.size() < count) {
+			ConnectFourModel board = new ConnectFourModel();
+			int moves = 4 + random.nextInt(27);
+			for (int i = 0; i < moves && board.checkWin() == 0 && !board.boardIsFull(); i++) {
+				int col = random.nextInt(board.getCols());
+				if (!board.columnIsFull(col)) {
+					board.dropDisc(col);
+				}
+			}
+			if (board.checkWin() == 0 && !board.boardIsFull()) {
+				positions.add(board);
+			}
+		}
+		return positions;
+	}
+}
@@ -0,0 +1,165 @@
+package connectfour;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+Plays Alpha-Beta pruning against itself and adds every position it searched to a
+PositionStore, with the result of the game, the search score and the move played,
+for the player to move.
+
+Each game starts with a few sensible random moves (always taking a win and
+blocking the other player's win) so that the games are not all the same, and
+only the positions after them are recorded. Every thread plays its own games
+and writes its own file of the store, so the threads never wait for each other.
+Running it again adds to the store.
+
+The games often reach the same positions, most of all in the first moves. Within
+one run a position is searched and written once: a game that reaches it again
+plays the move that was found before, and only the result of the first game that
+reached it is recorded. The positions of earlier runs are not looked at, so the
+store is never loaded onto the heap, and a position can be written once per run.
+The positions remembered are forgotten all at once when there are MAX_SEARCHED
+of them.
+
+Usage: java connectfour.SelfPlayRecorder <store folder> [games] [depth] [threads] [compress] [random seed]
+   games        the number of games (default 1000)
+   depth        the plies of every search (default 6)
+   threads      the games played at once (default: number of cores)
+   compress     true to compress the chunks (default false)
+*/
+public class SelfPlayRecorder {
+
+	//Represents the most random moves a game starts with.
+	private static final int OPENING_MOVES = 8;
+
+	//Represents the most positions remembered before they are all forgotten.
+	private static final int MAX_SEARCHED = 1 << 22;
+
+	//Represents the search of every position written by this run, by BitBoard.key(),
+	//packed as (score << 8) | move. Only used while holding its lock.
+	private final LongLongMap searched = new LongLongMap(1 << 16);
+
+	//Represents the positions that were reached again and not written.
+	private final AtomicLong repeated = new AtomicLong();
+
+	public static void main(String args[]) throws IOException, InterruptedException {
+		if (args.length < 1) {
+			System.err.println("Usage: java connectfour.SelfPlayRecorder <store folder> [games] [depth] [threads] [compress] [random seed]");
+			System.exit(2);
+		}
+		final PositionStore store = new PositionStore(new File(args[0]));
+		int games = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+		final int depth = args.length > 2 ? Integer.parseInt(args[2]) : 6;
+		int threads = args.length > 3 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+		final boolean compress = args.length > 4 && Boolean.parseBoolean(args[4]);
+		long seed = args.length > 5 ? Long.parseLong(args[5]) : System.nanoTime();
+
+		long start = System.nanoTime();
+		final SelfPlayRecorder recorder = new SelfPlayRecorder();
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		ArrayList<Future<Long>> rows = new ArrayList<Future<Long>>();
+		for (int t = 0; t < threads; t++) {
+			final int count = games / threads + (t < games % threads ? 1 : 0);
+			final Random random = new Random(seed + t);
+			rows.add(pool.submit(new Callable<Long>() {
+				@Override
+				public Long call() throws IOException {
+					PositionStore.Writer writer = store.newWriter(compress);
+					try {
+						AlphaBetaEngine engine = new AlphaBetaEngine(20);
+						for (int game = 0; game < count; game++) {
+							recorder.record(engine, depth, random, writer);
+						}
+						return writer.size();
+					} finally {
+						writer.close();
+					}
+				}
+			}));
+		}
+		pool.shutdown();
+		long total = 0;
+		try {
+			for (Future<Long> future : rows) {
+				total += future.get();
+			}
+		} catch (ExecutionException e) {
+			throw e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause());
+		}
+		store.close();
+
+		PositionStore written = new PositionStore(new File(args[0]));
+		System.out.printf("Recorded %d positions of %d games in %.1f s (%d more were reached again);"
+				+ " the store has %d positions in %d chunks, %.1f bytes each%n",
+				total, games, (System.nanoTime() - start) / 1e9, recorder.repeated.get(), written.size(), written.getChunks(),
+				written.size() == 0 ? 0.0 : written.getBytes() / (double) written.size());
+		written.close();
+	}
+
+	private static long pack(int score, int move) {
+		return ((long) score << 8) | (move & 0xff);
+	}
+
+	//Plays one game and writes the positions it reached that this run has not written yet.
+	private void record(AlphaBetaEngine engine, int depth, Random random, PositionStore.Writer writer)
+			throws IOException {
+		ConnectFourModel board = new ConnectFourModel();
+		int opening = random.nextInt(OPENING_MOVES + 1);
+		for (int i = 0; i < opening && board.checkWin() == 0; i++) {
+			int col = ForcedMoves.find(BitBoard.fromModel(board));
+			while (col < 0 || board.columnIsFull(col)) {
+				col = random.nextInt(board.getCols());
+			}
+			board.dropDisc(col);
+		}
+
+		ArrayList<long[]> positions = new ArrayList<long[]>();
+		while (board.checkWin() == 0 && !board.boardIsFull()) {
+			long key = BitBoard.fromModel(board).key();
+			long search;
+			synchronized (searched) {
+				search = searched.get(key, Long.MIN_VALUE);
+			}
+			if (search == Long.MIN_VALUE) {
+				AlphaBetaEngine.Line line = engine.searchLines(board, SearchLimits.depth(depth), 1).get(0);
+				int score = Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, line.getScore()));
+				search = pack(score, line.getColumn());
+				boolean found;
+				//Another thread may have searched it in the meantime
+				synchronized (searched) {
+					found = searched.containsKey(key);
+					if (!found) {
+						if (searched.size() >= MAX_SEARCHED) {
+							searched.clear();
+						}
+						searched.put(key, search);
+					}
+				}
+				if (!found) {
+					positions.add(new long[] {key, board.getCurrentColor(), score, line.getColumn()});
+				} else {
+					repeated.incrementAndGet();
+				}
+			} else {
+				repeated.incrementAndGet();
+			}
+			board.dropDisc((int) (search & 0xff));
+		}
+
+		int winner = board.checkWin();
+		for (long position[] : positions) {
+			int result = winner == 0 ? PositionStore.DRAW
+					: winner == position[1] ? PositionStore.WIN : PositionStore.LOSS;
+			writer.add(position[0], result, (int) position[2], (int) position[3]);
+		}
+	}
+}
@@ -0,0 +1,221 @@
+package connectfour;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.Socket;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/*
+A worker of DistributedSolver. It connects to the coordinator, says how many
+threads it has and then solves the positions it is sent, one per thread at a
+time, each thread with its own EndgameSolver so the caches are kept from job to
+job. Jobs it has not started yet can be taken back by the coordinator (to give
+to a worker that has run out), and jobs whose result is no longer needed are
+cancelled, even half way through.
+
+Every job gets exactly one RESULT back: solved, cancelled or returned. The
+worker stops when the coordinator says so or the connection closes.
+
+Usage: java connectfour.SolveWorker <host:port> [threads]
+*/
+public class SolveWorker {
+
+	//Represents the connection to the coordinator.
+	private final Socket socket;
+	private final DataInputStream in;
+	private final DataOutputStream out;
+
+	//Represents the number of jobs solved at once.
+	private final int threads;
+
+	//Represents the jobs received and not started yet, oldest first.
+	private final ArrayDeque<long[]> queue = new ArrayDeque<long[]>();
+
+	//Represents the cancel flag of every job being solved, by id.
+	private final HashMap<Integer, AtomicBoolean> running = new HashMap<Integer, AtomicBoolean>();
+
+	//Represents whether the worker has been told to stop.
+	private boolean stopped;
+
+	public SolveWorker(String host, int port, int threads) throws IOException {
+		this.socket = new Socket(host, port);
+		this.socket.setTcpNoDelay(true);
+		this.in = new DataInputStream(new BufferedInputStream(this.socket.getInputStream()));
+		this.out = new DataOutputStream(new BufferedOutputStream(this.socket.getOutputStream()));
+		this.threads = Math.max(1, threads);
+	}
+
+	public static void main(String args[]) throws IOException {
+		if (args.length < 1 || args[0].indexOf(':') < 0) {
+			System.err.println("Usage: java connectfour.SolveWorker <host:port> [threads]");
+			System.exit(2);
+		}
+		int colon = args[0].lastIndexOf(':');
+		int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+		SolveWorker worker;
+		try {
+			worker = new SolveWorker(args[0].substring(0, colon), Integer.parseInt(args[0].substring(colon + 1)), threads);
+		} catch (IOException e) {
+			System.err.println("Could not connect to " + args[0] + ": " + e.getMessage());
+			System.exit(1);
+			return;
+		}
+		worker.run();
+	}
+
+	//Solves jobs until the coordinator says to stop or goes away.
+	public void run() throws IOException {
+		synchronized (this.out) {
+			this.out.writeByte(DistributedSolver.HELLO);
+			this.out.writeInt(this.threads);
+			this.out.flush();
+		}
+		Thread solvers[] = new Thread[this.threads];
+		for (int t = 0; t < this.threads; t++) {
+			solvers[t] = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					solveJobs();
+				}
+			}, "solve-worker-" + t);
+			solvers[t].setDaemon(true);
+			solvers[t].start();
+		}
+
+		try {
+			readMessages();
+		} finally {
+			synchronized (this) {
+				this.stopped = true;
+				for (AtomicBoolean cancelled : this.running.values()) {
+					cancelled.set(true);
+				}
+				notifyAll();
+			}
+			this.socket.close();
+		}
+	}
+
+	//Reads what the coordinator sends until it says to stop.
+	private void readMessages() throws IOException {
+		try {
+			while (true) {
+				int type = this.in.readByte();
+				if (type == DistributedSolver.JOB) {
+					int id = this.in.readInt();
+					long key = this.in.readLong();
+					boolean weak = this.in.readBoolean();
+					synchronized (this) {
+						this.queue.addLast(new long[] {id, key, weak ? 1 : 0});
+						notify();
+					}
+				} else if (type == DistributedSolver.CANCEL) {
+					int id = this.in.readInt();
+					if (removeQueued(id)) {
+						sendResult(id, DistributedSolver.CANCELLED, 0, 0);
+					} else {
+						synchronized (this) {
+							AtomicBoolean cancelled = this.running.get(id);
+							if (cancelled != null) {
+								cancelled.set(true);
+							}
+						}
+					}
+				} else if (type == DistributedSolver.STEAL) {
+					int id = this.in.readInt();
+					if (removeQueued(id)) {
+						sendResult(id, DistributedSolver.RETURNED, 0, 0);
+					}
+				} else if (type == DistributedSolver.SHUTDOWN) {
+					return;
+				} else {
+					throw new IOException("Unknown message " + type);
+				}
+			}
+		} catch (EOFException e) {
+			//The coordinator went away
+		}
+	}
+
+	//Takes a job out of the queue if it has not been started. Returns whether it was there.
+	private synchronized boolean removeQueued(int id) {
+		for (long job[] : this.queue) {
+			if ((int) job[0] == id) {
+				this.queue.remove(job);
+				return true;
+			}
+		}
+		return false;
+	}
+
+	//Run by every solving thread: takes the oldest job and solves it.
+	private void solveJobs() {
+		EndgameSolver solver = new EndgameSolver();
+		while (true) {
+			long job[];
+			AtomicBoolean cancelled = new AtomicBoolean();
+			synchronized (this) {
+				while (this.queue.isEmpty() && !this.stopped) {
+					try {
+						wait();
+					} catch (InterruptedException e) {
+						return;
+					}
+				}
+				if (this.stopped) {
+					return;
+				}
+				job = this.queue.removeFirst();
+				this.running.put((int) job[0], cancelled);
+			}
+			int id = (int) job[0];
+			try {
+				sendStarted(id);
+				BitBoard board = BitBoard.fromKey(job[1]);
+				solver.setCancelFlag(cancelled);
+				long before = solver.getNodes();
+				int score;
+				byte status = DistributedSolver.SOLVED;
+				try {
+					score = job[2] != 0 ? solver.solveWeak(board) : solver.solve(board);
+				} catch (CancellationException e) {
+					score = 0;
+					status = DistributedSolver.CANCELLED;
+				}
+				synchronized (this) {
+					this.running.remove(id);
+				}
+				sendResult(id, status, score, solver.getNodes() - before);
+			} catch (IOException e) {
+				//The connection is closed; readMessages() stops the worker
+				return;
+			}
+		}
+	}
+
+	private void sendStarted(int id) throws IOException {
+		synchronized (this.out) {
+			this.out.writeByte(DistributedSolver.STARTED);
+			this.out.writeInt(id);
+			this.out.flush();
+		}
+	}
+
+	private void sendResult(int id, byte status, int score, long nodes) throws IOException {
+		synchronized (this.out) {
+			this.out.writeByte(DistributedSolver.RESULT);
+			this.out.writeInt(id);
+			this.out.writeByte(status);
+			this.out.writeInt(score);
+			this.out.writeLong(nodes);
+			this.out.flush();
+		}
+	}
+}
@@ -0,0 +1,238 @@
+package connectfour;
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Graphics;
+import java.awt.GridLayout;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import javax.swing.JComponent;
+import javax.swing.JFrame;
+import javax.swing.JPanel;
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
+import javax.swing.WindowConstants;
+
+/*
+A window that shows many engine-vs-engine games at once, laid out in a grid.
+
+Games run on background threads and publish the board after every move with
+publish(). Publishing only stores the newest board of that game; it never posts
+anything to the event thread. Once per frame a Swing timer picks up the boards
+that were published since the previous frame and repaints only those, so however
+many moves are played between two frames each board is drawn at most once.
+Every board is drawn with one shared SpriteSet scaled to the dashboard's tile size.
+
+Usage: java connectfour.SpectatorDashboard [boards] [depth] [delay between moves in ms]
+*/
+public class SpectatorDashboard extends JFrame implements ActionListener {
+
+	/*
+	One published position of a game. Never changed once published.
+	*/
+	static class Snapshot {
+		//Represents the color of every tile, row by row.
+		final byte cells[];
+
+		//Represents the color that won, or 0.
+		final int winner;
+
+		Snapshot(int board[][], int winner) {
+			this.cells = new byte[board.length * board[0].length];
+			for (int i = 0; i < board.length; i++) {
+				for (int j = 0; j < board[i].length; j++) {
+					this.cells[i * board[i].length + j] = (byte) board[i][j];
+				}
+			}
+			this.winner = winner;
+		}
+	}
+
+	//Represents the # of rows in a game board.
+	private static final int ROWS = 6;
+
+	//Represents the # of columns in a game board.
+	private static final int COLS = 7;
+
+	//Represents the boards published since the previous frame, or null.
+	private final AtomicReferenceArray<Snapshot> pending;
+
+	//Represents the board drawn in each cell of the grid.
+	private final BoardTile tiles[];
+
+	//Represents the images every board is drawn with.
+	private final SpriteSet sprites;
+
+	//Represents the timer that picks up published boards once per frame.
+	private final Timer frameTimer;
+
+	//Initializes a dashboard of 'boards' games, each drawn with tiles of tileSize pixels.
+	public SpectatorDashboard(int boards, int tileSize, int framesPerSecond) {
+		this.pending = new AtomicReferenceArray<Snapshot>(boards);
+		this.tiles = new BoardTile[boards];
+		this.sprites = SpriteSet.forTileSize(tileSize);
+
+		int gridCols = (int) Math.ceil(Math.sqrt(boards));
+		int gridRows = (boards + gridCols - 1) / gridCols;
+		JPanel grid = new JPanel(new GridLayout(gridRows, gridCols, tileSize / 4, tileSize / 4));
+		grid.setBackground(Color.DARK_GRAY);
+		for (int i = 0; i < boards; i++) {
+			this.tiles[i] = new BoardTile();
+			grid.add(this.tiles[i]);
+		}
+
+		this.setTitle("Connect Four Spectator Dashboard");
+		this.setContentPane(grid);
+		this.pack();
+		this.setDefaultCloseOperation(WindowConstants.EXIT_ON_CLOSE);
+		this.setLocationRelativeTo(null);
+
+		this.frameTimer = new Timer(Math.max(1, 1000 / framesPerSecond), this);
+		this.frameTimer.setCoalesce(true);
+		this.frameTimer.start();
+	}
+
+	//Publishes the board of game 'index'. Can be called from any thread, as often
+	//as the game likes; only the newest board is drawn.
+	public void publish(int index, int board[][], int winner) {
+		this.pending.set(index, new Snapshot(board, winner));
+	}
+
+	@Override
+	/**
+	 * Called once per frame on the event thread. Repaints only the boards that
+	 * were published since the previous frame.
+	 */
+	public void actionPerformed(ActionEvent e) {
+		for (int i = 0; i < this.tiles.length; i++) {
+			Snapshot snapshot = this.pending.getAndSet(i, null);
+			if (snapshot != null) {
+				this.tiles[i].snapshot = snapshot;
+				this.tiles[i].repaint();
+			}
+		}
+	}
+
+	/*
+	Draws one game of the dashboard.
+	*/
+	class BoardTile extends JComponent {
+
+		//Represents the board being drawn. Only used on the event thread.
+		private Snapshot snapshot;
+
+		BoardTile() {
+			int size = sprites.getTileSize();
+			this.setPreferredSize(new Dimension(COLS * size, ROWS * size));
+			this.setOpaque(true);
+		}
+
+		@Override
+		public void paintComponent(Graphics g) {
+			int size = sprites.getTileSize();
+			g.setColor(Color.WHITE);
+			g.fillRect(0, 0, getWidth(), getHeight());
+			for (int i = 0; i < ROWS; i++) {
+				for (int j = 0; j < COLS; j++) {
+					int cell = this.snapshot == null ? 0 : this.snapshot.cells[i * COLS + j];
+					if (cell == 1) {
+						g.drawImage(sprites.getRedDisc(), j * size, i * size, null);
+					} else if (cell == 2) {
+						g.drawImage(sprites.getBlackDisc(), j * size, i * size, null);
+					}
+					g.drawImage(sprites.getTile(), j * size, i * size, null);
+				}
+			}
+			//Outline finished games in the color that won
+			if (this.snapshot != null && this.snapshot.winner != 0) {
+				g.setColor(this.snapshot.winner == 1 ? Color.RED : Color.BLACK);
+				g.drawRect(0, 0, getWidth() - 1, getHeight() - 1);
+				g.drawRect(1, 1, getWidth() - 3, getHeight() - 3);
+			}
+		}
+	}
+
+	/*
+	Plays engine-vs-engine games one after the other on a background thread and
+	publishes every move to the dashboard.
+	*/
+	static class GameRunner implements Runnable {
+
+		//Represents the dashboard the games are shown on.
+		private final SpectatorDashboard dashboard;
+
+		//Represents the board of the dashboard the games are shown in.
+		private final int index;
+
+		//Represents the depth both engines search.
+		private final int depth;
+
+		//Represents the pause between moves in milliseconds.
+		private final int delay;
+
+		GameRunner(SpectatorDashboard dashboard, int index, int depth, int delay) {
+			this.dashboard = dashboard;
+			this.index = index;
+			this.depth = depth;
+			this.delay = delay;
+		}
+
+		@Override
+		public void run() {
+			Random random = new Random(this.index);
+			AlphaBetaEngine red = new AlphaBetaEngine(14);
+			AlphaBetaEngine black = new AlphaBetaEngine(14);
+			try {
+				while (true) {
+					red.clear();
+					black.clear();
+					ConnectFourModel board = new ConnectFourModel();
+					int winner = 0;
+					int moves = 0;
+					while (winner == 0 && !board.boardIsFull()) {
+						int player = board.getCurrentColor();
+						int col;
+						//Random first moves so that the games are not all the same
+						if (moves < 2) {
+							col = random.nextInt(board.getCols());
+						} else {
+							col = (player == board.RED ? red : black).search(player, board, this.depth);
+						}
+						if (board.dropDisc(col) < 0) {
+							continue;
+						}
+						moves++;
+						winner = board.checkWin();
+						this.dashboard.publish(this.index, board.getGameBoard(), winner);
+						Thread.sleep(this.delay);
+					}
+					Thread.sleep(1000);
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	//Opens a dashboard and starts one background game for every board.
+	public static void main(String args[]) {
+		final int boards = args.length > 0 ? Integer.parseInt(args[0]) : 36;
+		final int depth = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+		final int delay = args.length > 2 ? Integer.parseInt(args[2]) : 20;
+
+		SwingUtilities.invokeLater(new Runnable() {
+			@Override
+			public void run() {
+				SpectatorDashboard dashboard = new SpectatorDashboard(boards, 20, 30);
+				dashboard.setVisible(true);
+				for (int i = 0; i < boards; i++) {
+					Thread thread = new Thread(new GameRunner(dashboard, i, depth, delay), "game-" + i);
+					thread.setDaemon(true);
+					thread.start();
+				}
+			}
+		});
+	}
+}
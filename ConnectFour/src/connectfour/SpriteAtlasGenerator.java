@@ -0,0 +1,67 @@
+package connectfour;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import javax.imageio.ImageIO;
+
+/*
+Makes the sprite atlas SpriteSet starts the game with: the disc and tile images
+scaled to one tile size and put side by side in one PNG, and a properties file
+with the tile size and where each sprite is in the PNG. The restart button is
+put in at its own size.
+
+Run it again whenever an image in the folder changes or the game's tile size
+does, and put both files in src/images.
+
+Usage: java connectfour.SpriteAtlasGenerator <images folder> <tileSize> <output folder>
+*/
+public class SpriteAtlasGenerator {
+
+	public static void main(String args[]) throws IOException {
+		if (args.length < 3) {
+			System.err.println("Usage: java connectfour.SpriteAtlasGenerator <images folder> <tileSize> <output folder>");
+			System.exit(2);
+		}
+		File folder = new File(args[0]);
+		int tileSize = Integer.parseInt(args[1]);
+		File output = new File(args[2]);
+		if (tileSize < 1) {
+			throw new IllegalArgumentException("The tile size must be greater than 0.");
+		}
+
+		BufferedImage sprites[] = new BufferedImage[SpriteSet.NAMES.length];
+		int width = 0;
+		int height = 0;
+		for (int i = 0; i < sprites.length; i++) {
+			BufferedImage image = ImageIO.read(new File(folder, SpriteSet.NAMES[i] + ".png"));
+			if (image == null) {
+				throw new IOException(SpriteSet.NAMES[i] + ".png is not an image");
+			}
+			boolean keepSize = i == sprites.length - 1;
+			sprites[i] = keepSize ? image : SpriteSet.scale(image, tileSize, tileSize);
+			width += sprites[i].getWidth();
+			height = Math.max(height, sprites[i].getHeight());
+		}
+
+		//The layout is written by hand, in order and without a date, so that making
+		//the atlas again from the same images gives the same files
+		BufferedImage atlas = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+		PrintWriter layout = new PrintWriter(new File(output, "sprites.properties"), "ISO-8859-1");
+		try {
+			layout.println("#Made by SpriteAtlasGenerator, do not edit");
+			layout.println("tileSize=" + tileSize);
+			int x = 0;
+			for (int i = 0; i < sprites.length; i++) {
+				atlas.getGraphics().drawImage(sprites[i], x, 0, null);
+				layout.println(SpriteSet.NAMES[i] + "=" + x + ",0," + sprites[i].getWidth() + "," + sprites[i].getHeight());
+				x += sprites[i].getWidth();
+			}
+		} finally {
+			layout.close();
+		}
+		ImageIO.write(atlas, "png", new File(output, "sprites.png"));
+		System.out.println("Wrote a " + width + "x" + height + " atlas of " + sprites.length + " sprites to " + output);
+	}
+}
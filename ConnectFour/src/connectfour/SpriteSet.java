@@ -0,0 +1,251 @@
+package connectfour;
+
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.GraphicsEnvironment;
+import java.awt.Image;
+import java.awt.RenderingHints;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import javax.imageio.ImageIO;
+
+/*
+The disc and tile images scaled to one tile size. The images are loaded and
+scaled once per size and the same set is shared by every board drawn at that
+size, so drawing a board never scales an image.
+
+The images are read from the classpath, not from the working directory. The
+game's own tile size comes from one atlas (images/sprites.png, made by
+SpriteAtlasGenerator), which holds every sprite already scaled to that size
+side by side, so starting the game decodes one small image and scales nothing.
+Smaller sizes are scaled down from the atlas; bigger ones from the full size
+images, which are then decoded at the same time on several threads.
+
+preload() starts loading a size on a background thread, so that the images are
+decoded while the window is being made instead of after.
+*/
+public class SpriteSet {
+
+	//Represents where the atlas and the full size images are on the classpath.
+	private static final String ATLAS = "/images/sprites.png";
+	private static final String ATLAS_LAYOUT = "/images/sprites.properties";
+	private static final String IMAGES = "/images/";
+
+	//Represents the name of each sprite in the atlas layout and of its full size image.
+	static final String NAMES[] = {"RedDisc", "BlackDisc", "DefaultGameBoardPiece", "WinFlashTile", "RestartButton"};
+
+	//Represents the sets that were made or are being made, by tile size.
+	private static final HashMap<Integer, Future<SpriteSet>> SETS = new HashMap<Integer, Future<SpriteSet>>();
+
+	//Represents the size the images are scaled to.
+	private final int tileSize;
+
+	//Represents the Red Disc.
+	private final BufferedImage redDisc;
+
+	//Represents the Black Disc.
+	private final BufferedImage blackDisc;
+
+	//Represents a tile of the game board.
+	private final BufferedImage tile;
+
+	//Represents the image drawn over the winning Connect-Four.
+	private final BufferedImage winFlashTile;
+
+	//Represents the image of the restart button, which is never scaled.
+	private final BufferedImage restartButton;
+
+	private SpriteSet(int tileSize, BufferedImage images[]) {
+		this.tileSize = tileSize;
+		this.redDisc = images[0];
+		this.blackDisc = images[1];
+		this.tile = images[2];
+		this.winFlashTile = images[3];
+		this.restartButton = images[4];
+	}
+
+	//Starts loading the images of tileSize on a background thread, if they are not loaded yet.
+	public static void preload(int tileSize) {
+		FutureTask<SpriteSet> task = newTask(tileSize);
+		if (task != null) {
+			Thread loader = new Thread(task, "sprite-loader");
+			loader.setDaemon(true);
+			loader.start();
+		}
+	}
+
+	//Returns the images scaled to tileSize, loading them the first time that size is
+	//asked for, or waiting for preload() to finish loading them.
+	public static SpriteSet forTileSize(int tileSize) {
+		FutureTask<SpriteSet> task = newTask(tileSize);
+		if (task != null) {
+			task.run();
+		}
+		Future<SpriteSet> set;
+		synchronized (SETS) {
+			set = SETS.get(tileSize);
+		}
+		boolean interrupted = false;
+		try {
+			while (true) {
+				try {
+					return set.get();
+				} catch (InterruptedException e) {
+					interrupted = true;
+				}
+			}
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("Could not load the images", e.getCause());
+		} finally {
+			if (interrupted) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	//Makes the task that loads tileSize, or returns null if it was already made.
+	private static FutureTask<SpriteSet> newTask(final int tileSize) {
+		synchronized (SETS) {
+			if (SETS.containsKey(tileSize)) {
+				return null;
+			}
+			FutureTask<SpriteSet> task = new FutureTask<SpriteSet>(new Callable<SpriteSet>() {
+				@Override
+				public SpriteSet call() throws IOException {
+					return load(tileSize);
+				}
+			});
+			SETS.put(tileSize, task);
+			return task;
+		}
+	}
+
+	//Cuts the sprites out of the atlas, scaling them down if tileSize is smaller than
+	//the atlas's, or scales the full size images if it is bigger.
+	private static SpriteSet load(int tileSize) throws IOException {
+		Properties layout = new Properties();
+		InputStream in = SpriteSet.class.getResourceAsStream(ATLAS_LAYOUT);
+		if (in == null) {
+			throw new IOException(ATLAS_LAYOUT + " is not on the classpath");
+		}
+		try {
+			layout.load(in);
+		} finally {
+			in.close();
+		}
+		int atlasSize = Integer.parseInt(layout.getProperty("tileSize"));
+
+		ImageIO.setUseCache(false);
+		BufferedImage atlas = ImageIO.read(resource(ATLAS));
+		BufferedImage images[] = new BufferedImage[NAMES.length];
+		for (int i = 0; i < NAMES.length; i++) {
+			String cell[] = layout.getProperty(NAMES[i]).split(",");
+			BufferedImage sprite = atlas.getSubimage(Integer.parseInt(cell[0]), Integer.parseInt(cell[1]),
+					Integer.parseInt(cell[2]), Integer.parseInt(cell[3]));
+			//The restart button keeps its size
+			if (i == NAMES.length - 1) {
+				images[i] = scale(sprite, sprite.getWidth(), sprite.getHeight());
+			} else if (tileSize <= atlasSize) {
+				images[i] = scale(sprite, tileSize, tileSize);
+			}
+		}
+		if (tileSize > atlasSize) {
+			readFullSize(images, tileSize);
+		}
+		return new SpriteSet(tileSize, images);
+	}
+
+	//Decodes the full size images of the sprites that are still missing, each on its
+	//own thread, and scales them to tileSize.
+	private static void readFullSize(BufferedImage images[], final int tileSize) throws IOException {
+		ExecutorService decoders = Executors.newFixedThreadPool(NAMES.length - 1);
+		try {
+			//The image of each sprite being decoded, or null for those already read
+			ArrayList<Future<BufferedImage>> decoded = new ArrayList<Future<BufferedImage>>();
+			for (int i = 0; i < NAMES.length; i++) {
+				decoded.add(null);
+				if (images[i] != null) continue;
+				final URL url = resource(IMAGES + NAMES[i] + ".png");
+				decoded.set(i, decoders.submit(new Callable<BufferedImage>() {
+					@Override
+					public BufferedImage call() throws IOException {
+						return scale(ImageIO.read(url), tileSize, tileSize);
+					}
+				}));
+			}
+			for (int i = 0; i < NAMES.length; i++) {
+				if (decoded.get(i) != null) {
+					images[i] = decoded.get(i).get();
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while decoding the images");
+		} catch (ExecutionException e) {
+			throw e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause());
+		} finally {
+			decoders.shutdown();
+		}
+	}
+
+	private static URL resource(String name) throws IOException {
+		URL url = SpriteSet.class.getResource(name);
+		if (url == null) {
+			throw new IOException(name + " is not on the classpath");
+		}
+		return url;
+	}
+
+	//Draws the image once at the given size into an image the screen can draw quickly.
+	static BufferedImage scale(Image source, int width, int height) {
+		BufferedImage image;
+		if (GraphicsEnvironment.isHeadless()) {
+			image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+		} else {
+			GraphicsConfiguration config = GraphicsEnvironment.getLocalGraphicsEnvironment()
+					.getDefaultScreenDevice().getDefaultConfiguration();
+			image = config.createCompatibleImage(width, height, Transparency.TRANSLUCENT);
+		}
+		Graphics2D g = image.createGraphics();
+		g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+		g.drawImage(source, 0, 0, width, height, null);
+		g.dispose();
+		return image;
+	}
+
+	public int getTileSize() {
+		return this.tileSize;
+	}
+
+	public BufferedImage getRedDisc() {
+		return this.redDisc;
+	}
+
+	public BufferedImage getBlackDisc() {
+		return this.blackDisc;
+	}
+
+	public BufferedImage getTile() {
+		return this.tile;
+	}
+
+	public BufferedImage getWinFlashTile() {
+		return this.winFlashTile;
+	}
+
+	public BufferedImage getRestartButton() {
+		return this.restartButton;
+	}
+}
@@ -0,0 +1,120 @@
+package connectfour;
+
+import java.awt.EventQueue;
+import java.awt.Graphics2D;
+import java.awt.GraphicsEnvironment;
+import java.awt.Toolkit;
+import java.awt.image.BufferedImage;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.InvocationTargetException;
+import javax.swing.ImageIcon;
+import javax.swing.JButton;
+import javax.swing.JPanel;
+
+/*
+Measures the time to first frame: how long after the JVM starts the board is
+first drawn. Startup only happens once per JVM, so every run measures one start
+and exits; run it several times and compare.
+
+- window: starts the game like ConnectFourView.main() does and waits until its
+  window has been painted. Needs a display.
+- offscreen: loads the images the way the game does, makes the restart button
+  and draws the empty board and the button into an image, the way the window
+  would. Used when there is no display.
+- files: the same as offscreen, but loads the five images from the 'images'
+  folder of the working directory with ImageIcon and scales them, the way the
+  game used to, to compare against.
+
+The window mode is used when there is a display and the offscreen mode
+otherwise. The 'cds' target of build.xml runs this to find the classes the game
+loads when it starts.
+
+Usage: java connectfour.StartupBenchmark [window | offscreen | files]
+*/
+public class StartupBenchmark {
+
+	public static void main(String args[]) throws InterruptedException, InvocationTargetException {
+		long mainMillis = System.currentTimeMillis();
+		String mode = args.length > 0 ? args[0] : GraphicsEnvironment.isHeadless() ? "offscreen" : "window";
+		final ConnectFourModel model = new ConnectFourModel();
+		//Represents when the images were ready, or the window made
+		long imagesMillis;
+
+		if (mode.equals("window")) {
+			SpriteSet.preload(model.getTileSize());
+			final ConnectFourView view[] = new ConnectFourView[1];
+			EventQueue.invokeAndWait(new Runnable() {
+				@Override
+				public void run() {
+					view[0] = new ConnectFourView();
+					new ConnectFourController(view[0], model);
+				}
+			});
+			imagesMillis = System.currentTimeMillis();
+			//The first paint is queued when the window is shown; it is done once the
+			//event thread gets to what is queued after it
+			for (int i = 0; i < 2; i++) {
+				EventQueue.invokeAndWait(new Runnable() {
+					@Override
+					public void run() {
+						Toolkit.getDefaultToolkit().sync();
+					}
+				});
+			}
+		} else if (mode.equals("offscreen") || mode.equals("files")) {
+			BufferedImage tile;
+			ImageIcon restart;
+			JPanel panel;
+			JButton button;
+			if (mode.equals("files")) {
+				int size = model.getTileSize();
+				tile = SpriteSet.scale(new ImageIcon("images/DefaultGameBoardPiece.png").getImage(), size, size);
+				SpriteSet.scale(new ImageIcon("images/RedDisc.png").getImage(), size, size);
+				SpriteSet.scale(new ImageIcon("images/BlackDisc.png").getImage(), size, size);
+				SpriteSet.scale(new ImageIcon("images/WinFlashTile.png").getImage(), size, size);
+				restart = new ImageIcon("images/RestartButton.png");
+				panel = new JPanel();
+				button = new JButton(restart);
+			} else {
+				//The components are made while the images are decoded, as in the game
+				SpriteSet.preload(model.getTileSize());
+				panel = new JPanel();
+				button = new JButton();
+				SpriteSet sprites = SpriteSet.forTileSize(model.getTileSize());
+				tile = sprites.getTile();
+				button.setIcon(new ImageIcon(sprites.getRestartButton()));
+			}
+			imagesMillis = System.currentTimeMillis();
+			drawOffscreen(model, panel, button, tile);
+		} else {
+			throw new IllegalArgumentException("Unknown mode " + mode);
+		}
+
+		long frameMillis = System.currentTimeMillis();
+		long startMillis = ManagementFactory.getRuntimeMXBean().getStartTime();
+		System.out.printf("%s: JVM start to main %d ms, images %d ms, first frame %d ms, time to first frame %d ms%n",
+				mode, mainMillis - startMillis, imagesMillis - mainMillis, frameMillis - imagesMillis,
+				frameMillis - startMillis);
+		System.exit(0);
+	}
+
+	//Draws the empty board and the restart button into an image, like the window does.
+	private static void drawOffscreen(ConnectFourModel model, JPanel panel, JButton button, BufferedImage tile) {
+		int size = model.getTileSize();
+		int width = 2 * model.getMargin() + model.getCols() * size;
+		int height = 3 * model.getMargin() + model.getRows() * size;
+		BufferedImage frame = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+		Graphics2D g = frame.createGraphics();
+		panel.setSize(width, height);
+		panel.paint(g);
+		for (int i = 0; i < model.getRows(); i++) {
+			for (int j = 0; j < model.getCols(); j++) {
+				g.drawImage(tile, model.getMargin() + j * size, 2 * model.getMargin() + i * size, null);
+			}
+		}
+		button.setSize(2 * model.getMargin(), model.getMargin() / 2);
+		g.translate((width - button.getWidth()) / 2, height - button.getHeight());
+		button.paint(g);
+		g.dispose();
+	}
+}
@@ -0,0 +1,153 @@
+package connectfour;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/*
+Exact results of endgame positions, read from a file written by TablebaseGenerator.
+The file is memory-mapped rather than loaded, so opening it is instant and only the
+parts that are probed are read from disk.
+
+The positions are sorted by BitBoard.canonicalKey() and stored in blocks. Each block starts
+with its first key and score in full; every later key is stored as the difference
+from the key before it in as few bytes as it needs (7 bits a byte), followed by its
+score. An index of the first key of every block is used to binary search for the
+block a position would be in, and only that block is read.
+
+   header: MAGIC, VERSION, max empty tiles, entries (long), blocks, block size
+   index:  for every block, its first key (long) and where it starts (long)
+   blocks
+*/
+public class Tablebase {
+
+	//Represents "C4TB", the first 4 bytes of every tablebase file.
+	public static final int MAGIC = 0x43345442;
+
+	//Represents the version of the file layout.
+	public static final int VERSION = 2;
+
+	//Represents the size of the header in bytes.
+	public static final int HEADER_SIZE = 28;
+
+	//Represents the size of each entry of the index in bytes.
+	public static final int INDEX_ENTRY_SIZE = 16;
+
+	//Represents a position that is not in the tablebase.
+	public static final int MISSING = Integer.MIN_VALUE;
+
+	//Represents the mapped file.
+	private final MappedByteBuffer buffer;
+
+	//Represents the most empty tiles a position in the file has.
+	private final int maxEmpty;
+
+	//Represents the number of positions in the file.
+	private final long entries;
+
+	//Represents the number of blocks.
+	private final int blocks;
+
+	//Opens a tablebase file.
+	public Tablebase(File file) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			this.buffer = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+		} finally {
+			raf.close();
+		}
+		if (this.buffer.getInt(0) != MAGIC || this.buffer.getInt(4) != VERSION) {
+			throw new IOException(file + " is not a tablebase file");
+		}
+		this.maxEmpty = this.buffer.getInt(8);
+		this.entries = this.buffer.getLong(12);
+		this.blocks = this.buffer.getInt(20);
+	}
+
+	public int getMaxEmpty() {
+		return this.maxEmpty;
+	}
+
+	public long getEntries() {
+		return this.entries;
+	}
+
+	/**
+	 * Looks up the exact score of the position with the given canonical key, for
+	 * the player to move, as EndgameSolver scores it. Safe to call from several threads.
+	 * @return the score, or MISSING if the position is not in the tablebase.
+	 */
+	public int probe(long key) {
+		//Binary search for the last block whose first key is not greater than 'key'
+		int low = 0;
+		int high = this.blocks - 1;
+		int block = -1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			if (this.buffer.getLong(HEADER_SIZE + mid * INDEX_ENTRY_SIZE) <= key) {
+				block = mid;
+				low = mid + 1;
+			} else {
+				high = mid - 1;
+			}
+		}
+		if (block < 0) {
+			return MISSING;
+		}
+
+		int pos = (int) this.buffer.getLong(HEADER_SIZE + block * INDEX_ENTRY_SIZE + 8);
+		int count = this.buffer.getInt(pos);
+		pos += 4;
+		long current = this.buffer.getLong(pos);
+		pos += 8;
+		int score = this.buffer.get(pos++);
+		for (int i = 1; i < count && current < key; i++) {
+			long delta = 0;
+			int shift = 0;
+			int b;
+			do {
+				b = this.buffer.get(pos++);
+				delta |= (long) (b & 0x7f) << shift;
+				shift += 7;
+			} while ((b & 0x80) != 0);
+			current += delta;
+			score = this.buffer.get(pos++);
+		}
+		return current == key ? score : MISSING;
+	}
+
+	/**
+	 * Chooses the best column on 'board' from the tablebase, if every position the
+	 * player to move can reach is in it.
+	 * @return the column, or -1 if the tablebase cannot tell.
+	 */
+	public int bestMove(BitBoard board) {
+		int best = -1;
+		int bestScore = Integer.MIN_VALUE;
+		for (int col = 0; col < BitBoard.WIDTH; col++) {
+			if (!board.canPlay(col)) continue;
+			if (board.isWinningMove(col)) {
+				return col;
+			}
+			BitBoard child = board.copy();
+			child.play(col);
+			int score;
+			if (child.isFull()) {
+				score = 0;
+			} else {
+				int childScore = probe(child.canonicalKey());
+				if (childScore == MISSING) {
+					return -1;
+				}
+				score = -childScore;
+			}
+			if (score > bestScore) {
+				bestScore = score;
+				best = col;
+			}
+		}
+		return best;
+	}
+}
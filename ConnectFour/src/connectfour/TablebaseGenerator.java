@@ -0,0 +1,170 @@
+package connectfour;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/*
+Builds a tablebase file for Tablebase to read.
+
+Every position with few enough empty tiles would be far too many to solve, so the
+generator starts from seed positions instead: it plays games of sensible random
+moves (always taking a win and blocking the other player's win) until 'empty'
+tiles are left. Every position that can be reached from a seed is solved exactly
+with EndgameSolver and written to the file, sorted by key and in blocks. A position
+and its mirror image have the same result, so only one of them is kept.
+
+Usage: java connectfour.TablebaseGenerator <file> [empty] [seeds] [random seed]
+   empty        the most empty tiles of a position in the file (default 12)
+   seeds        the number of seed games; those that end early are skipped (default 1000)
+*/
+public class TablebaseGenerator {
+
+	//Represents the number of positions in each block of the file.
+	public static final int BLOCK_SIZE = 256;
+
+	//Represents the most empty tiles of a position to solve.
+	private final int maxEmpty;
+
+	//Represents the exact score of every position found so far, by canonical key.
+	private final LongIntMap scores = new LongIntMap(1 << 16);
+
+	//Represents the solver that scores the positions.
+	private final EndgameSolver solver = new EndgameSolver();
+
+	public TablebaseGenerator(int maxEmpty) {
+		this.maxEmpty = maxEmpty;
+	}
+
+	public int size() {
+		return this.scores.size();
+	}
+
+	public long getSolverNodes() {
+		return this.solver.getNodes();
+	}
+
+	//Plays a random game from the start until 'maxEmpty' tiles are left.
+	//Returns null if the game ended before that.
+	public BitBoard randomSeed(long random[]) {
+		BitBoard board = new BitBoard();
+		while (BitBoard.WIDTH * BitBoard.HEIGHT - board.getMoves() > this.maxEmpty) {
+			long possible = board.possible();
+			if ((board.winningPositions() & possible) != 0) {
+				return null;
+			}
+			long threats = board.opponentWinningPositions() & possible;
+			if (threats != 0) {
+				board.playMove(Long.lowestOneBit(threats));
+			} else {
+				int col;
+				do {
+					random[0] ^= random[0] << 13;
+					random[0] ^= random[0] >>> 7;
+					random[0] ^= random[0] << 17;
+					col = (int) ((random[0] >>> 33) % BitBoard.WIDTH);
+				} while (!board.canPlay(col));
+				board.play(col);
+			}
+		}
+		return board;
+	}
+
+	//Solves 'board' and every position that can be reached from it, unless the
+	//game is already over there.
+	public void addAll(BitBoard board) {
+		if (board.isFull() || this.scores.containsKey(board.canonicalKey())) {
+			return;
+		}
+		this.scores.put(board.canonicalKey(), this.solver.solve(board));
+		for (int col = 0; col < BitBoard.WIDTH; col++) {
+			if (board.canPlay(col) && !board.isWinningMove(col)) {
+				BitBoard child = board.copy();
+				child.play(col);
+				addAll(child);
+			}
+		}
+	}
+
+	//Writes every position found to 'file' in the format Tablebase reads.
+	public void write(File file) throws IOException {
+		long keys[] = this.scores.keys();
+		Arrays.sort(keys);
+
+		//The blocks are written first so that where each one starts is known for the index
+		int blocks = (keys.length + BLOCK_SIZE - 1) / BLOCK_SIZE;
+		ByteArrayOutputStream data = new ByteArrayOutputStream();
+		DataOutputStream dataOut = new DataOutputStream(data);
+		ArrayList<Long> offsets = new ArrayList<Long>();
+		long dataStart = Tablebase.HEADER_SIZE + (long) blocks * Tablebase.INDEX_ENTRY_SIZE;
+		for (int b = 0; b < blocks; b++) {
+			int first = b * BLOCK_SIZE;
+			int count = Math.min(BLOCK_SIZE, keys.length - first);
+			offsets.add(dataStart + dataOut.size());
+			dataOut.writeInt(count);
+			dataOut.writeLong(keys[first]);
+			dataOut.writeByte(this.scores.get(keys[first], 0));
+			for (int i = first + 1; i < first + count; i++) {
+				long delta = keys[i] - keys[i - 1];
+				while ((delta & ~0x7fL) != 0) {
+					dataOut.writeByte((int) (delta & 0x7f) | 0x80);
+					delta >>>= 7;
+				}
+				dataOut.writeByte((int) delta);
+				dataOut.writeByte(this.scores.get(keys[i], 0));
+			}
+		}
+		dataOut.flush();
+
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+		try {
+			out.writeInt(Tablebase.MAGIC);
+			out.writeInt(Tablebase.VERSION);
+			out.writeInt(this.maxEmpty);
+			out.writeLong(keys.length);
+			out.writeInt(blocks);
+			out.writeInt(BLOCK_SIZE);
+			for (int b = 0; b < blocks; b++) {
+				out.writeLong(keys[b * BLOCK_SIZE]);
+				out.writeLong(offsets.get(b));
+			}
+			data.writeTo(out);
+		} finally {
+			out.close();
+		}
+	}
+
+	public static void main(String args[]) throws IOException {
+		if (args.length < 1) {
+			System.err.println("Usage: java connectfour.TablebaseGenerator <file> [empty] [seeds] [random seed]");
+			System.exit(2);
+		}
+		File file = new File(args[0]);
+		int maxEmpty = args.length > 1 ? Integer.parseInt(args[1]) : 12;
+		int seeds = args.length > 2 ? Integer.parseInt(args[2]) : 1000;
+		long random[] = {args.length > 3 ? Long.parseLong(args[3]) | 1 : 0x2545F4914F6CDD1DL};
+
+		TablebaseGenerator generator = new TablebaseGenerator(maxEmpty);
+		long start = System.nanoTime();
+		int used = 0;
+		for (int i = 0; i < seeds; i++) {
+			BitBoard seed = generator.randomSeed(random);
+			if (seed != null) {
+				generator.addAll(seed);
+				used++;
+			}
+		}
+		generator.write(file);
+		long elapsed = System.nanoTime() - start;
+
+		System.out.printf("%d positions with at most %d empty tiles from %d seeds, %d solver nodes, %.1f s%n",
+				generator.size(), maxEmpty, used, generator.getSolverNodes(), elapsed / 1e9);
+		System.out.printf("%s: %d bytes, %.2f bytes a position%n", file, file.length(),
+				(double) file.length() / Math.max(1, generator.size()));
+	}
+}
@@ -0,0 +1,390 @@
+package connectfour;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/*
+Plays two engine configs against each other without a window, to tell whether a
+change makes the AI play better and not only search faster.
+
+Games are played in pairs from the same opening (every position the first few
+moves can reach), once with each engine playing red, so neither engine gets the
+better openings or the first move more often. An engine with a depth or node
+limit plays the same game every time it is given the same opening, so no opening
+is played twice: when more games are asked for than there are openings, the
+openings are made longer, up to MAX_OPENING_PLIES moves. Pairs are played on several threads
+at once. After every game the Elo difference is updated, and a sequential
+probability ratio test (SPRT) decides as soon as the results are clear enough
+whether the candidate is at least elo1 better (H1) or no better than elo0 (H0).
+
+Usage: java connectfour.Tournament <candidate> <baseline> [options]
+   --games N           most games to play (default 2 x the number of openings)
+   --threads N         games played at once (default: number of cores)
+   --openings N        moves of each opening (default 2, giving 49 openings), made
+                       longer if --games needs more openings
+   --elo0 E --elo1 E   the SPRT hypotheses (default 0 and 20)
+   --alpha A --beta B  the SPRT error rates (default 0.05 and 0.05)
+   --stats FILE        writes the per-ply search statistics of the candidate, if it
+                       is Alpha-Beta pruning, as JSON if FILE ends in .json or else CSV
+Engines are given as EngineConfig strings such as ab:depth=4 or mcts:time=50.
+The exit code is 1 if the SPRT accepts H0, so it can gate a change.
+*/
+public class Tournament {
+
+	/*
+	The results of the candidate against the baseline so far.
+	*/
+	static class Results {
+		//Represents the smallest variance of one game the SPRT uses.
+		static final double MIN_VARIANCE = 0.05;
+
+		int wins;
+		int draws;
+		int losses;
+
+		//Represents the time each engine spent on its moves, and the number of moves.
+		long candidateNanos;
+		long baselineNanos;
+		int candidateMoves;
+		int baselineMoves;
+
+		int games() {
+			return this.wins + this.draws + this.losses;
+		}
+
+		//The candidate's average points per game.
+		double score() {
+			return (this.wins + 0.5 * this.draws) / games();
+		}
+
+		//The variance of the points of one game.
+		double variance() {
+			double p = score();
+			return (this.wins * (1 - p) * (1 - p) + this.draws * (0.5 - p) * (0.5 - p)
+					+ this.losses * p * p) / games();
+		}
+
+		//The variance used by the SPRT. While every game has had the same result
+		//the variance is 0, so it is kept from going below a small floor.
+		double sprtVariance() {
+			return Math.max(variance(), MIN_VARIANCE);
+		}
+
+		//The Elo difference between the candidate and the baseline.
+		double elo() {
+			return eloOf(score());
+		}
+
+		//Half the width of the 95% confidence interval of elo().
+		double eloError() {
+			double margin = 1.96 * Math.sqrt(variance() / games());
+			return (eloOf(Math.min(score() + margin, 0.999)) - eloOf(Math.max(score() - margin, 0.001))) / 2;
+		}
+
+		//The log-likelihood ratio of H1 (elo1) against H0 (elo0), using the normal
+		//approximation of the results (the generalized SPRT).
+		double llr(double elo0, double elo1) {
+			if (games() == 0) {
+				return 0;
+			}
+			double variance = sprtVariance();
+			double s0 = scoreOf(elo0);
+			double s1 = scoreOf(elo1);
+			return games() * (s1 - s0) * (2 * score() - s0 - s1) / (2 * variance);
+		}
+
+		static double eloOf(double score) {
+			score = Math.min(Math.max(score, 0.001), 0.999);
+			return -400 * Math.log10(1 / score - 1);
+		}
+
+		static double scoreOf(double elo) {
+			return 1 / (1 + Math.pow(10, -elo / 400));
+		}
+	}
+
+	//Represents the most moves an opening is made longer to.
+	public static final int MAX_OPENING_PLIES = 8;
+
+	//Represents the engine being tested.
+	private final EngineConfig candidate;
+
+	//Represents the engine it is compared with.
+	private final EngineConfig baseline;
+
+	//Represents the SPRT hypotheses and error rates.
+	private final double elo0;
+	private final double elo1;
+	private final double lowerBound;
+	private final double upperBound;
+
+	//Represents the results so far. Only changed while holding its lock.
+	private final Results results = new Results();
+
+	//Represents where the progress is printed.
+	private final PrintStream out;
+
+	//Represents where the candidate's searches are counted, or null to not count them.
+	private SearchStats stats;
+
+	//Represents whether the SPRT has decided, so no more games are started.
+	private volatile boolean decided;
+
+	//Represents the engines of each thread, by side and config, reused from game to game.
+	private final ThreadLocal<HashMap<String, MoveEngine>> engines = new ThreadLocal<HashMap<String, MoveEngine>>() {
+		@Override
+		protected HashMap<String, MoveEngine> initialValue() {
+			return new HashMap<String, MoveEngine>();
+		}
+	};
+
+	public Tournament(EngineConfig candidate, EngineConfig baseline, double elo0, double elo1,
+			double alpha, double beta, PrintStream out) {
+		this.candidate = candidate;
+		this.baseline = baseline;
+		this.elo0 = elo0;
+		this.elo1 = elo1;
+		this.lowerBound = Math.log(beta / (1 - alpha));
+		this.upperBound = Math.log((1 - beta) / alpha);
+		this.out = out;
+	}
+
+	//Counts the searches of the candidate into 'stats', if it is Alpha-Beta pruning.
+	public void setStats(SearchStats stats) {
+		this.stats = stats;
+	}
+
+	//The openings the games start from: one sequence of 'plies' columns for every
+	//position they reach. Sequences that reach the same position (such as red in
+	//columns 1 and 3 in either order) would play the same games, and sequences
+	//that fill a column or end the game are not openings, so both are left out.
+	public static ArrayList<int[]> openings(int plies) {
+		ArrayList<int[]> openings = new ArrayList<int[]>();
+		LongIntMap seen = new LongIntMap();
+		int count = (int) Math.pow(BitBoard.WIDTH, plies);
+		for (int i = 0; i < count; i++) {
+			int opening[] = new int[plies];
+			int n = i;
+			for (int p = plies - 1; p >= 0; p--) {
+				opening[p] = n % BitBoard.WIDTH;
+				n /= BitBoard.WIDTH;
+			}
+			BitBoard board = new BitBoard();
+			boolean playable = true;
+			for (int p = 0; p < plies && playable; p++) {
+				playable = board.canPlay(opening[p]) && !board.isWinningMove(opening[p]);
+				if (playable) {
+					board.play(opening[p]);
+				}
+			}
+			if (playable && !seen.containsKey(board.key())) {
+				seen.put(board.key(), i);
+				openings.add(opening);
+			}
+		}
+		return openings;
+	}
+
+	//The fewest moves, from 'plies' up to MAX_OPENING_PLIES, that give an opening for
+	//every pair of 'games'.
+	public static int openingPlies(int games, int plies) {
+		while (plies < MAX_OPENING_PLIES && 2L * openings(plies).size() < games) {
+			plies++;
+		}
+		return plies;
+	}
+
+	//Plays up to 'games' games on 'threads' threads and returns the results. The
+	//games are cut to two from each opening of 'openingPlies' moves, so that no game
+	//is counted twice. When 'games' is odd the last opening is only played with the
+	//candidate as red, so no more than 'games' games are played. Throws IllegalStateException if a game fails, such as when
+	//an engine cannot be made.
+	public Results play(int games, int threads, int openingPlies) throws InterruptedException {
+		final ArrayList<int[]> openings = openings(openingPlies);
+		if (games > 2 * openings.size()) {
+			this.out.println("Only " + 2 * openings.size() + " games are played, two from each opening of "
+					+ openingPlies + " moves");
+			games = 2 * openings.size();
+		}
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		ArrayList<Future<?>> pairs = new ArrayList<Future<?>>();
+		int count = (games + 1) / 2;
+		for (int i = 0; i < count; i++) {
+			//Spread over all the openings, not only those that start in the first columns
+			final int opening[] = openings.get((int) ((long) i * openings.size() / count));
+			final boolean swapped = 2 * i + 2 <= games;
+			pairs.add(pool.submit(new Runnable() {
+				@Override
+				public void run() {
+					if (decided) return;
+					//The same opening with the candidate as red, then as black
+					record(playGame(opening, true));
+					if (decided || !swapped) return;
+					record(playGame(opening, false));
+				}
+			}));
+		}
+		pool.shutdown();
+		try {
+			for (Future<?> pair : pairs) {
+				pair.get();
+			}
+		} catch (ExecutionException e) {
+			pool.shutdownNow();
+			throw new IllegalStateException("A game failed", e.getCause());
+		}
+		return this.results;
+	}
+
+	//Plays one game. Returns the candidate's result in half points (2, 1 or 0),
+	//the time the candidate and the baseline spent in nanoseconds, and the number
+	//of moves each of them made.
+	private long[] playGame(int opening[], boolean candidateIsRed) {
+		MoveEngine candidateEngine = engine("candidate", this.candidate);
+		MoveEngine baselineEngine = engine("baseline", this.baseline);
+		candidateEngine.newGame();
+		baselineEngine.newGame();
+
+		ConnectFourModel board = new ConnectFourModel();
+		for (int col : opening) {
+			board.dropDisc(col);
+		}
+
+		long game[] = new long[5];
+		int candidateColor = candidateIsRed ? board.RED : board.BLACK;
+		while (board.checkWin() == 0 && !board.boardIsFull()) {
+			int player = board.getCurrentColor();
+			boolean candidateToMove = player == candidateColor;
+			EngineConfig config = candidateToMove ? this.candidate : this.baseline;
+			MoveEngine engine = candidateToMove ? candidateEngine : baselineEngine;
+
+			long start = System.nanoTime();
+			int col = engine.chooseMove(board, player, config.getLimits());
+			long elapsed = System.nanoTime() - start;
+			game[candidateToMove ? 1 : 2] += elapsed;
+			game[candidateToMove ? 3 : 4]++;
+
+			//An illegal move loses the game
+			if (col < 0 || col >= board.getCols() || board.columnIsFull(col)) {
+				game[0] = candidateToMove ? 0 : 2;
+				return game;
+			}
+			board.dropDisc(col);
+		}
+		if (board.checkWin() == 0) {
+			game[0] = 1;
+		} else {
+			game[0] = board.checkWin() == candidateColor ? 2 : 0;
+		}
+		return game;
+	}
+
+	private MoveEngine engine(String side, EngineConfig config) {
+		HashMap<String, MoveEngine> mine = this.engines.get();
+		String key = side + " " + config.getName();
+		MoveEngine engine = mine.get(key);
+		if (engine == null) {
+			engine = config.create();
+			if (this.stats != null && side.equals("candidate") && engine instanceof AlphaBetaEngine) {
+				((AlphaBetaEngine) engine).setStats(this.stats, 1);
+			}
+			mine.put(key, engine);
+		}
+		return engine;
+	}
+
+	//Adds a game to the results and checks whether the SPRT has decided.
+	private void record(long game[]) {
+		synchronized (this.results) {
+			if (this.decided) return;
+			if (game[0] == 2) this.results.wins++;
+			else if (game[0] == 1) this.results.draws++;
+			else this.results.losses++;
+			this.results.candidateNanos += game[1];
+			this.results.baselineNanos += game[2];
+			this.results.candidateMoves += game[3];
+			this.results.baselineMoves += game[4];
+
+			double llr = this.results.llr(this.elo0, this.elo1);
+			if (llr >= this.upperBound || llr <= this.lowerBound) {
+				this.decided = true;
+			}
+			if (this.decided || this.results.games() % 10 == 0) {
+				this.out.printf("Games %4d  +%d =%d -%d  Elo %+6.1f +/- %5.1f  LLR %5.2f [%.2f, %.2f]%n",
+						this.results.games(), this.results.wins, this.results.draws, this.results.losses,
+						this.results.elo(), this.results.eloError(), llr, this.lowerBound, this.upperBound);
+			}
+		}
+	}
+
+	public static void main(String args[]) throws InterruptedException, IOException {
+		if (args.length < 2) {
+			System.err.println("Usage: java connectfour.Tournament <candidate> <baseline> [--games N] [--threads N]"
+					+ " [--openings N] [--elo0 E] [--elo1 E] [--alpha A] [--beta B] [--stats FILE]");
+			System.exit(2);
+		}
+		EngineConfig candidate = EngineConfig.parse(args[0]);
+		EngineConfig baseline = EngineConfig.parse(args[1]);
+		int openingPlies = 2;
+		int games = -1;
+		int threads = Runtime.getRuntime().availableProcessors();
+		double elo0 = 0, elo1 = 20, alpha = 0.05, beta = 0.05;
+		String statsFile = null;
+		for (int i = 2; i + 1 < args.length; i += 2) {
+			String value = args[i + 1];
+			if (args[i].equals("--games")) games = Integer.parseInt(value);
+			else if (args[i].equals("--threads")) threads = Integer.parseInt(value);
+			else if (args[i].equals("--openings")) openingPlies = Integer.parseInt(value);
+			else if (args[i].equals("--elo0")) elo0 = Double.parseDouble(value);
+			else if (args[i].equals("--elo1")) elo1 = Double.parseDouble(value);
+			else if (args[i].equals("--alpha")) alpha = Double.parseDouble(value);
+			else if (args[i].equals("--beta")) beta = Double.parseDouble(value);
+			else if (args[i].equals("--stats")) statsFile = value;
+			else throw new IllegalArgumentException("Unknown option " + args[i]);
+		}
+		if (games < 0) {
+			games = 2 * openings(openingPlies).size();
+		}
+		int plies = openingPlies(games, openingPlies);
+		if (plies != openingPlies) {
+			System.out.println(games + " games need more openings than " + openingPlies + " moves give, so they have "
+					+ plies + " moves");
+			openingPlies = plies;
+		}
+
+		System.out.println(candidate + " vs " + baseline + ", up to " + games + " games on " + threads + " threads");
+		long start = System.nanoTime();
+		Tournament tournament = new Tournament(candidate, baseline, elo0, elo1, alpha, beta, System.out);
+		SearchStats stats = statsFile == null ? null : new SearchStats(BitBoard.WIDTH * BitBoard.HEIGHT + 2);
+		tournament.setStats(stats);
+		Results results = tournament.play(games, threads, openingPlies);
+		long elapsed = System.nanoTime() - start;
+
+		double llr = results.llr(elo0, elo1);
+		System.out.printf("Finished %d games in %.1f s%n", results.games(), elapsed / 1e9);
+		System.out.printf("Candidate: %.2f ms a move, baseline: %.2f ms a move%n",
+				results.candidateNanos / 1e6 / Math.max(1, results.candidateMoves),
+				results.baselineNanos / 1e6 / Math.max(1, results.baselineMoves));
+		System.out.printf("Elo %+.1f +/- %.1f, LLR %.2f: %s%n", results.elo(), results.eloError(), llr,
+				llr >= tournament.upperBound ? "H1 accepted" : llr <= tournament.lowerBound ? "H0 accepted" : "inconclusive");
+		if (stats != null) {
+			Writer writer = new OutputStreamWriter(new FileOutputStream(statsFile), "UTF-8");
+			try {
+				writer.write(statsFile.endsWith(".json") ? stats.toJson() : stats.toCsv());
+			} finally {
+				writer.close();
+			}
+			System.out.println("Search statistics of " + stats.getSearches() + " searches written to " + statsFile);
+		}
+		System.exit(llr <= tournament.lowerBound ? 1 : 0);
+	}
+}
@@ -0,0 +1,173 @@
+package connectfour;
+
+import java.util.Random;
+
+/*
+Remembers the scores of positions the Alpha-Beta pruning algorithm has already
+searched so they do not have to be searched again. Positions are identified by a
+Zobrist hash of the board. The table is kept for a whole game, so every search
+is given a new age and entries left over from older searches are the first to be
+replaced when two positions want the same slot.
+
+Several searches can use the table at the same time without locks: each slot is
+two longs, the entry and the key XORed with the entry, and a slot only matches a
+key if both were written together.
+*/
+public class TranspositionTable {
+
+	//Represents a score that is exact.
+	public static final int EXACT = 0;
+
+	//Represents a score that is at least the stored value (the search was cut off).
+	public static final int LOWER = 1;
+
+	//Represents a score that is at most the stored value (no move raised alpha).
+	public static final int UPPER = 2;
+
+	//Represents the random keys for every color of disc on every tile.
+	private static final long PIECE_KEYS[][][] = new long[6][7][3];
+
+	//Represents the key added when it is black's turn.
+	private static final long BLACK_TO_MOVE;
+
+	//Represents the key added when the search is for black.
+	private static final long BLACK_PLAYER;
+
+	static {
+		//Fixed seed so that hashes are the same every time the game is run
+		Random random = new Random(0x4C75CAL);
+		for (int row = 0; row < 6; row++) {
+			for (int col = 0; col < 7; col++) {
+				for (int color = 1; color < 3; color++) {
+					PIECE_KEYS[row][col][color] = random.nextLong();
+				}
+			}
+		}
+		BLACK_TO_MOVE = random.nextLong();
+		BLACK_PLAYER = random.nextLong();
+	}
+
+	//Represents an entry that was not found.
+	public static final long MISSING = -1;
+
+	//Represents the bit set in every entry, so an empty slot is never mistaken for one.
+	private static final long VALID = 1L << 62;
+
+	//Represents each slot's key XORed with its entry, so a slot whose key and entry
+	//were written by two searches at once does not match either key.
+	private final long checks[];
+
+	//Represents the entry of each slot: the score, the remaining depth it was searched
+	//to, whether it is EXACT, LOWER or UPPER, the best column and the search that
+	//stored it, packed together (see pack()).
+	private final long entries[];
+
+	//Represents the mask used to turn a hash into a slot.
+	private final int mask;
+
+	//Represents the age of the current search.
+	private volatile int age;
+
+	//Initializes a table with 2^bits slots.
+	public TranspositionTable(int bits) {
+		int size = 1 << bits;
+		this.checks = new long[size];
+		this.entries = new long[size];
+		this.mask = size - 1;
+		clear();
+	}
+
+	//Computes the hash of a whole board from scratch.
+	public static long hash(int board[][], int currentColor) {
+		long key = 0;
+		for (int row = 0; row < board.length; row++) {
+			for (int col = 0; col < board[row].length; col++) {
+				if (board[row][col] != 0) {
+					key ^= PIECE_KEYS[row][col][board[row][col]];
+				}
+			}
+		}
+		if (currentColor == 2) {
+			key ^= BLACK_TO_MOVE;
+		}
+		return key;
+	}
+
+	//Returns the hash after 'color' drops a disc into (row, col) and the turn switches.
+	public static long play(long key, int row, int col, int color) {
+		return key ^ PIECE_KEYS[row][col][color] ^ BLACK_TO_MOVE;
+	}
+
+	//Adds a key that makes the hashes of searches for black different from those for
+	//red, since scores are stored from the point of view of the player searched for.
+	public static long forPlayer(long key, int player) {
+		return player == 2 ? key ^ BLACK_PLAYER : key;
+	}
+
+	//Starts a new search. Entries from older searches are now stale.
+	public void newSearch() {
+		this.age++;
+	}
+
+	//Empties every slot.
+	public void clear() {
+		for (int i = 0; i < this.entries.length; i++) {
+			this.checks[i] = 0;
+			this.entries[i] = 0;
+		}
+	}
+
+	//Returns the entry stored for 'key', or MISSING if the position is not stored.
+	public long probe(long key) {
+		int slot = (int) key & this.mask;
+		long entry = this.entries[slot];
+		if ((entry & VALID) != 0 && (this.checks[slot] ^ entry) == key) {
+			return entry;
+		}
+		return MISSING;
+	}
+
+	public static int getValue(long entry) {
+		return (int) entry;
+	}
+
+	public static int getDepth(long entry) {
+		return (int) (entry >>> 32) & 0xff;
+	}
+
+	public static int getFlag(long entry) {
+		return (int) (entry >>> 40) & 0x3;
+	}
+
+	public static int getMove(long entry) {
+		return ((int) (entry >>> 42) & 0xf) - 1;
+	}
+
+	private static int getAge(long entry) {
+		return (int) (entry >>> 46) & 0xff;
+	}
+
+	private static long pack(int depth, int value, int flag, int move, int age) {
+		return VALID | (long) (age & 0xff) << 46 | (long) (move + 1) << 42 | (long) flag << 40
+				| (long) (depth & 0xff) << 32 | (value & 0xffffffffL);
+	}
+
+	//Stores a position. An entry for another position is only kept if it was
+	//stored by the current search and was searched deeper. Several searches can
+	//store at once; the check in probe() throws away a slot they both wrote to.
+	public void store(long key, int depth, int value, int flag, int move) {
+		int slot = (int) key & this.mask;
+		long old = this.entries[slot];
+		boolean same = (old & VALID) != 0 && (this.checks[slot] ^ old) == key;
+		if ((old & VALID) != 0 && !same && getAge(old) == (this.age & 0xff) && getDepth(old) > depth) {
+			return;
+		}
+		//Keep the best column of a position that is searched again without finding one
+		if (move < 0 && same) {
+			move = getMove(old);
+		}
+		long entry = pack(depth, value, flag, move, this.age);
+		this.entries[slot] = entry;
+		this.checks[slot] = key ^ entry;
+	}
+}
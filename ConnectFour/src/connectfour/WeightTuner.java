@@ -0,0 +1,175 @@
+package connectfour;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/*
+Tunes the weights score() gives lines of 3 and lines of 2 (3 and 1 in
+HeuristicEvaluator and BitBoardEvaluator) from the positions of a PositionStore.
+
+Two fits are made, each with the difference between the lines of the player to
+move and of the other player as the features:
+- against the search scores, by least squares, cut off at SCORE_LIMIT as in
+  NetworkTrainer, which gives weights on the scale of score() itself;
+- against the results of the games, by logistic regression (a win counts 1, a
+  draw 1/2), which says how much each line is worth for winning.
+
+The store is read a pass at a time and never loaded: each thread reads its own
+shard and only adds up sums, so a store of any size is tuned in the memory of
+one chunk per thread. Logistic regression takes a few passes of Newton's method.
+
+Usage: java connectfour.WeightTuner <store folder> [threads]
+   threads      the shards read at once (default: number of cores)
+*/
+public class WeightTuner {
+
+	//Represents the largest search score fitted.
+	private static final int SCORE_LIMIT = 60;
+
+	//Represents the most passes of Newton's method, and the step that is small enough to stop.
+	private static final int MAX_PASSES = 25;
+	private static final double TOLERANCE = 1e-6;
+
+	public static void main(String args[]) throws IOException, InterruptedException {
+		if (args.length < 1) {
+			System.err.println("Usage: java connectfour.WeightTuner <store folder> [threads]");
+			System.exit(2);
+		}
+		File folder = new File(args[0]);
+		if (!folder.isDirectory()) {
+			throw new IOException(folder + " is not a folder");
+		}
+		PositionStore store = new PositionStore(folder);
+		int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+		if (store.size() == 0) {
+			throw new IllegalStateException("The store in " + folder + " is empty");
+		}
+
+		long start = System.nanoTime();
+		//Least squares: the sums of the normal equations, and the error of score() as it is
+		double sums[] = sum(store, threads, new Pass(7) {
+			@Override
+			void add(double sums[], double threes, double twos, PositionStore.Cursor cursor) {
+				double score = Math.max(-SCORE_LIMIT, Math.min(SCORE_LIMIT, cursor.getScore()));
+				BitBoard board = BitBoard.fromKey(cursor.getKey());
+				long mover = board.getPosition();
+				double current = BitBoardEvaluator.score(true, mover, mover ^ board.getMask(), 0);
+				sums[0] += threes * threes;
+				sums[1] += threes * twos;
+				sums[2] += twos * twos;
+				sums[3] += threes * score;
+				sums[4] += twos * score;
+				sums[5] += score * score;
+				sums[6] += (current - score) * (current - score);
+			}
+		});
+		double fit[] = solve(sums[0], sums[1], sums[2], sums[3], sums[4]);
+		double residual = sums[5] - 2 * (fit[0] * sums[3] + fit[1] * sums[4])
+				+ fit[0] * fit[0] * sums[0] + 2 * fit[0] * fit[1] * sums[1] + fit[1] * fit[1] * sums[2];
+		long rows = store.size();
+		System.out.printf("%d positions in %d chunks, %.1f MB%n", rows, store.getChunks(), store.getBytes() / 1e6);
+		System.out.printf("Against the search scores: lines of 3 %.3f, lines of 2 %.3f (%.2f : 1)%n",
+				fit[0], fit[1], fit[0] / fit[1]);
+		System.out.printf("   root mean squared error %.2f, against %.2f for score() as it is%n",
+				Math.sqrt(Math.max(0, residual) / rows), Math.sqrt(sums[6] / rows));
+
+		//Logistic regression, starting from no weights
+		final double weights[] = new double[2];
+		int passes = 0;
+		double loss = 0;
+		while (passes < MAX_PASSES) {
+			passes++;
+			double newton[] = sum(store, threads, new Pass(6) {
+				@Override
+				void add(double sums[], double threes, double twos, PositionStore.Cursor cursor) {
+					double target = (cursor.getResult() + 1) / 2.0;
+					double p = 1 / (1 + Math.exp(-(weights[0] * threes + weights[1] * twos)));
+					double slope = p * (1 - p);
+					sums[0] += threes * threes * slope;
+					sums[1] += threes * twos * slope;
+					sums[2] += twos * twos * slope;
+					sums[3] += threes * (target - p);
+					sums[4] += twos * (target - p);
+					sums[5] -= target * Math.log(Math.max(p, 1e-12)) + (1 - target) * Math.log(Math.max(1 - p, 1e-12));
+				}
+			});
+			double step[] = solve(newton[0], newton[1], newton[2], newton[3], newton[4]);
+			weights[0] += step[0];
+			weights[1] += step[1];
+			loss = newton[5] / rows;
+			if (Math.abs(step[0]) + Math.abs(step[1]) < TOLERANCE) {
+				break;
+			}
+		}
+		System.out.printf("Against the results: lines of 3 %.4f, lines of 2 %.4f (%.2f : 1), log loss %.4f after %d passes%n",
+				weights[0], weights[1], weights[0] / weights[1], loss, passes);
+		System.out.printf("Read %d passes of %d positions in %.1f s%n", passes + 1, rows, (System.nanoTime() - start) / 1e9);
+		store.close();
+	}
+
+	//Solves [a b; b c] x = [d e].
+	private static double[] solve(double a, double b, double c, double d, double e) {
+		double determinant = a * c - b * b;
+		if (determinant == 0) {
+			throw new IllegalStateException("The lines of 3 and of 2 cannot be told apart in this store");
+		}
+		return new double[] {(c * d - b * e) / determinant, (a * e - b * d) / determinant};
+	}
+
+	//Reads every row once, each shard on its own thread, and adds up the sums of 'pass'.
+	private static double[] sum(final PositionStore store, final int threads, final Pass pass)
+			throws IOException, InterruptedException {
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		ArrayList<Future<double[]>> parts = new ArrayList<Future<double[]>>();
+		for (int t = 0; t < threads; t++) {
+			final int shard = t;
+			parts.add(pool.submit(new Callable<double[]>() {
+				@Override
+				public double[] call() {
+					double sums[] = new double[pass.size];
+					PositionStore.Cursor cursor = store.cursor(shard, threads, null);
+					while (cursor.next()) {
+						BitBoard board = BitBoard.fromKey(cursor.getKey());
+						long mover = board.getPosition();
+						long other = mover ^ board.getMask();
+						pass.add(sums, BitBoardEvaluator.countThree(mover) - BitBoardEvaluator.countThree(other),
+								BitBoardEvaluator.countTwo(mover) - BitBoardEvaluator.countTwo(other), cursor);
+					}
+					return sums;
+				}
+			}));
+		}
+		pool.shutdown();
+		double total[] = new double[pass.size];
+		try {
+			for (Future<double[]> part : parts) {
+				double sums[] = part.get();
+				for (int i = 0; i < total.length; i++) {
+					total[i] += sums[i];
+				}
+			}
+		} catch (ExecutionException e) {
+			throw new IOException(e.getCause());
+		}
+		return total;
+	}
+
+	//What one pass adds up for every row.
+	private abstract static class Pass {
+
+		//Represents the number of sums.
+		final int size;
+
+		Pass(int size) {
+			this.size = size;
+		}
+
+		abstract void add(double sums[], double threes, double twos, PositionStore.Cursor cursor);
+	}
+}
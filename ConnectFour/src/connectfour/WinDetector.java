@@ -0,0 +1,80 @@
+package connectfour;
+
+import java.awt.Point;
+
+/*
+Finds Connect-Fours. A Connect-Four can only be made by the disc that was placed
+last, so instead of comparing every possible starting location on the board only
+the four lines (horizontal, vertical and both diagonals) through that disc are
+checked. This takes the same few steps on any board and creates no objects.
+
+The tiles of the winning line are only worked out when the game asks for them
+to draw the win sequence.
+*/
+public class WinDetector {
+
+	//Represents the row and column steps of the horizontal, vertical and both diagonal lines.
+	private static final int DIRECTIONS[][] = {{0, 1}, {1, 0}, {1, 1}, {1, -1}};
+
+	private WinDetector() {}
+
+	/**
+	 * Checks if the disc at (row, col) is part of a Connect-Four.
+	 * @return true if there are 4 or more discs of its color in a line through it.
+	 */
+	public static boolean isWin(int board[][], int row, int col) {
+		int color = board[row][col];
+		if (color == 0) {
+			return false;
+		}
+		for (int d = 0; d < DIRECTIONS.length; d++) {
+			int dRow = DIRECTIONS[d][0];
+			int dCol = DIRECTIONS[d][1];
+			if (countLine(board, row, col, dRow, dCol, color) + countLine(board, row, col, -dRow, -dCol, color) >= 3) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Fills 'line' with the four tiles of the Connect-Four through (row, col), as
+	 * Points of (row, column). The points are changed, not replaced.
+	 * @return false if the disc at (row, col) is not part of a Connect-Four.
+	 */
+	public static boolean findLine(int board[][], int row, int col, Point line[]) {
+		int color = board[row][col];
+		if (color == 0) {
+			return false;
+		}
+		for (int d = 0; d < DIRECTIONS.length; d++) {
+			int dRow = DIRECTIONS[d][0];
+			int dCol = DIRECTIONS[d][1];
+			int back = countLine(board, row, col, -dRow, -dCol, color);
+			int forward = countLine(board, row, col, dRow, dCol, color);
+			if (back + forward >= 3) {
+				int startRow = row - back * dRow;
+				int startCol = col - back * dCol;
+				for (int i = 0; i < line.length; i++) {
+					line[i].setLocation(startRow + i * dRow, startCol + i * dCol);
+				}
+				return true;
+			}
+		}
+		return false;
+	}
+
+	//Counts the discs of 'color' next to (row, col) going in one direction, up to 3.
+	private static int countLine(int board[][], int row, int col, int dRow, int dCol, int color) {
+		int count = 0;
+		int r = row + dRow;
+		int c = col + dCol;
+		while (count < 3 && r >= 0 && r < board.length && c >= 0 && c < board[r].length
+				&& board[r][c] == color) {
+			count++;
+			r += dRow;
+			c += dCol;
+		}
+		return count;
+	}
+}